@@ -0,0 +1,110 @@
+// @author joas47
+
+import graphbench.BenchGraph;
+import graphbench.BenchGraphFactory;
+import graphbench.GeneratedGraph;
+
+import java.util.List;
+
+/**
+ * Connects the graph classes, which live in the default package, to the
+ * named-package JMH benchmarks. Add new UndirectedGraph implementations to
+ * {@link #implementations()} and {@link #create} to include them in every
+ * benchmark.
+ */
+public class UndirectedGraphBenchFactory implements BenchGraphFactory {
+
+    @Override
+    public List<String> implementations() {
+        return List.of("MyUndirectedGraph", "CompactUndirectedGraph", "ConcurrentUndirectedGraph", "OffHeapUndirectedGraph");
+    }
+
+    @Override
+    public BenchGraph create(String implementation, GeneratedGraph graph, boolean withEdges) {
+        Integer[] nodes = new Integer[graph.nodes];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = i;
+        }
+        switch (implementation) {
+            case "MyUndirectedGraph":
+                return new Adapter(fill(new MyUndirectedGraph<>(), nodes, graph, withEdges), nodes);
+            case "ConcurrentUndirectedGraph":
+                return new Adapter(fill(new ConcurrentUndirectedGraph<>(), nodes, graph, withEdges), nodes);
+            case "OffHeapUndirectedGraph":
+                return new Adapter(fill(new OffHeapUndirectedGraph<>(), nodes, graph, withEdges), nodes);
+            case "CompactUndirectedGraph":
+                CompactUndirectedGraph.Builder<Integer> builder = new CompactUndirectedGraph.Builder<>(graph.nodes, withEdges ? graph.edges() : 0);
+                for (Integer node : nodes) {
+                    builder.add(node);
+                }
+                if (withEdges) {
+                    for (int e = 0; e < graph.edges(); e++) {
+                        builder.connect(nodes[graph.from[e]], nodes[graph.to[e]], graph.cost[e]);
+                    }
+                }
+                return new Adapter(builder.build(), nodes);
+            default:
+                throw new IllegalArgumentException("Unknown implementation: " + implementation);
+        }
+    }
+
+    private static UndirectedGraph<Integer> fill(UndirectedGraph<Integer> target, Integer[] nodes, GeneratedGraph graph, boolean withEdges) {
+        for (Integer node : nodes) {
+            target.add(node);
+        }
+        if (withEdges) {
+            for (int e = 0; e < graph.edges(); e++) {
+                target.connect(nodes[graph.from[e]], nodes[graph.to[e]], graph.cost[e]);
+            }
+        }
+        return target;
+    }
+
+    private static final class Adapter implements BenchGraph {
+
+        private final UndirectedGraph<Integer> graph;
+        private final Integer[] nodes;
+
+        Adapter(UndirectedGraph<Integer> graph, Integer[] nodes) {
+            this.graph = graph;
+            this.nodes = nodes;
+        }
+
+        @Override
+        public boolean connect(int from, int to, int cost) {
+            return graph.connect(nodes[from], nodes[to], cost);
+        }
+
+        @Override
+        public boolean isConnected(int from, int to) {
+            return graph.isConnected(nodes[from], nodes[to]);
+        }
+
+        @Override
+        public int getCost(int from, int to) {
+            return graph.getCost(nodes[from], nodes[to]);
+        }
+
+        @Override
+        public Object depthFirstSearch(int start, int end) {
+            return graph.depthFirstSearch(nodes[start], nodes[end]);
+        }
+
+        @Override
+        public Object breadthFirstSearch(int start, int end) {
+            return graph.breadthFirstSearch(nodes[start], nodes[end]);
+        }
+
+        @Override
+        public Object minimumSpanningTree() {
+            return graph.minimumSpanningTree();
+        }
+
+        @Override
+        public void close() {
+            if (graph instanceof OffHeapUndirectedGraph) {
+                ((OffHeapUndirectedGraph<Integer>) graph).close();
+            }
+        }
+    }
+}
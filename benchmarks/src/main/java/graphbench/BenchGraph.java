@@ -0,0 +1,27 @@
+package graphbench;
+
+/**
+ * The graph operations under benchmark, addressed by int node index so the
+ * benchmarks do not measure boxing. Results are returned as Object so they
+ * can be handed to a Blackhole.
+ */
+public interface BenchGraph {
+
+    boolean connect(int from, int to, int cost);
+
+    boolean isConnected(int from, int to);
+
+    int getCost(int from, int to);
+
+    Object depthFirstSearch(int start, int end);
+
+    Object breadthFirstSearch(int start, int end);
+
+    Object minimumSpanningTree();
+
+    /**
+     * Releases what the graph holds outside the heap, if anything. The graph
+     * is not used afterwards.
+     */
+    void close();
+}
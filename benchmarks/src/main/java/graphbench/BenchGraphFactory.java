@@ -0,0 +1,21 @@
+package graphbench;
+
+import java.util.List;
+
+/**
+ * Creates {@link BenchGraph}s for a named graph implementation. Implementations
+ * are found with {@link java.util.ServiceLoader}, so a new UndirectedGraph
+ * implementation only has to be added to a factory to show up in every
+ * benchmark.
+ */
+public interface BenchGraphFactory {
+
+    List<String> implementations();
+
+    /**
+     * @param implementation one of {@link #implementations()}.
+     * @param graph          the generated nodes and edges.
+     * @param withEdges      false to get a graph with all nodes but no edges.
+     */
+    BenchGraph create(String implementation, GeneratedGraph graph, boolean withEdges);
+}
@@ -0,0 +1,53 @@
+package graphbench;
+
+import java.util.ServiceLoader;
+
+final class BenchGraphs {
+
+    private BenchGraphs() {
+    }
+
+    static BenchGraph create(String implementation, GeneratedGraph graph, boolean withEdges) {
+        for (BenchGraphFactory factory : ServiceLoader.load(BenchGraphFactory.class)) {
+            if (factory.implementations().contains(implementation)) {
+                return factory.create(implementation, graph, withEdges);
+            }
+        }
+        throw new IllegalArgumentException("No benchmark factory for implementation: " + implementation);
+    }
+
+    /**
+     * Closes a result that holds memory outside the heap, such as an off-heap
+     * spanning tree, so it is freed now rather than whenever the collector
+     * gets to it.
+     */
+    static void close(Object result) {
+        if (result instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) result).close();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Random node pairs, half of them taken from existing edges so that
+     * isConnected and getCost see both hits and misses.
+     */
+    static int[][] queryPairs(GeneratedGraph graph, int count, long seed) {
+        java.util.SplittableRandom random = new java.util.SplittableRandom(seed);
+        int[][] pairs = new int[2][count];
+        for (int i = 0; i < count; i++) {
+            if (i % 2 == 0 && graph.edges() > 0) {
+                int e = random.nextInt(graph.edges());
+                pairs[0][i] = graph.from[e];
+                pairs[1][i] = graph.to[e];
+            } else {
+                pairs[0][i] = random.nextInt(graph.nodes);
+                pairs[1][i] = random.nextInt(graph.nodes);
+            }
+        }
+        return pairs;
+    }
+}
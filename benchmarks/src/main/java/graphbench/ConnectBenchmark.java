@@ -0,0 +1,42 @@
+package graphbench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of connect. Each iteration starts from a graph with all nodes but no
+ * edges and replays the generated edge list, wrapping around so that later
+ * calls exercise the cost-update path.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ConnectBenchmark {
+
+    private GeneratedGraph generated;
+    private BenchGraph graph;
+    private int next;
+
+    @Setup(Level.Iteration)
+    public void setUp(GraphState state) {
+        generated = state.generated;
+        graph = BenchGraphs.create(state.implementation, generated, false);
+        next = 0;
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() {
+        graph.close();
+    }
+
+    @Benchmark
+    public boolean connect() {
+        int e = next;
+        next = e + 1 == generated.edges() ? 0 : e + 1;
+        return graph.connect(generated.from[e], generated.to[e], generated.cost[e]);
+    }
+}
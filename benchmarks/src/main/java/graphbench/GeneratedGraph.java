@@ -0,0 +1,92 @@
+package graphbench;
+
+import java.util.SplittableRandom;
+
+/**
+ * A generated edge list in columnar form. Nodes are the ints 0..nodes-1 and
+ * may contain duplicate pairs and self-loops, which exercise the "update
+ * cost" path of connect.
+ */
+public final class GeneratedGraph {
+
+    public final int nodes;
+    public final int[] from;
+    public final int[] to;
+    public final int[] cost;
+
+    private GeneratedGraph(int nodes, int[] from, int[] to, int[] cost) {
+        this.nodes = nodes;
+        this.from = from;
+        this.to = to;
+        this.cost = cost;
+    }
+
+    public int edges() {
+        return from.length;
+    }
+
+    /**
+     * @param shape "sparse" (average degree 4, uniform endpoints), "dense"
+     *              (average degree min(n-1, 64)) or "powerlaw"
+     *              (preferential attachment, 3 edges per new node).
+     */
+    public static GeneratedGraph generate(String shape, int nodes, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        switch (shape) {
+            case "sparse":
+                return uniform(nodes, 2L * nodes, random);
+            case "dense":
+                return uniform(nodes, (long) nodes * Math.min(nodes - 1, 64) / 2, random);
+            case "powerlaw":
+                return preferentialAttachment(nodes, 3, random);
+            default:
+                throw new IllegalArgumentException("Unknown graph shape: " + shape);
+        }
+    }
+
+    private static GeneratedGraph uniform(int nodes, long edges, SplittableRandom random) {
+        int m = Math.toIntExact(edges);
+        int[] from = new int[m];
+        int[] to = new int[m];
+        int[] cost = new int[m];
+        for (int i = 0; i < m; i++) {
+            from[i] = random.nextInt(nodes);
+            to[i] = random.nextInt(nodes);
+            cost[i] = 1 + random.nextInt(100);
+        }
+        return new GeneratedGraph(nodes, from, to, cost);
+    }
+
+    private static GeneratedGraph preferentialAttachment(int nodes, int perNode, SplittableRandom random) {
+        int seedNodes = Math.min(nodes, perNode + 1);
+        int m = Math.toIntExact(Math.max(0L, (long) (nodes - seedNodes) * perNode + seedNodes - 1));
+        int[] from = new int[m];
+        int[] to = new int[m];
+        int[] cost = new int[m];
+        // Every edge endpoint is written here, so a uniform pick from the
+        // filled prefix picks a node proportionally to its degree.
+        int[] endpoints = new int[2 * m];
+        int e = 0;
+        for (int v = 1; v < seedNodes; v++) {
+            from[e] = v - 1;
+            to[e] = v;
+            endpoints[2 * e] = v - 1;
+            endpoints[2 * e + 1] = v;
+            e++;
+        }
+        for (int v = seedNodes; v < nodes; v++) {
+            for (int k = 0; k < perNode; k++) {
+                int target = endpoints[random.nextInt(2 * e)];
+                from[e] = v;
+                to[e] = target;
+                endpoints[2 * e] = v;
+                endpoints[2 * e + 1] = target;
+                e++;
+            }
+        }
+        for (int i = 0; i < m; i++) {
+            cost[i] = 1 + random.nextInt(100);
+        }
+        return new GeneratedGraph(nodes, from, to, cost);
+    }
+}
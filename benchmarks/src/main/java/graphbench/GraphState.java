@@ -0,0 +1,26 @@
+package graphbench;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Shared benchmark parameters: which implementation, graph shape and size.
+ */
+@State(Scope.Benchmark)
+public class GraphState {
+
+    @Param({"MyUndirectedGraph", "CompactUndirectedGraph", "ConcurrentUndirectedGraph", "OffHeapUndirectedGraph"})
+    public String implementation;
+
+    @Param({"sparse", "dense", "powerlaw"})
+    public String shape;
+
+    @Param({"1000", "10000", "100000", "1000000", "10000000"})
+    public int nodes;
+
+    public GeneratedGraph generated;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        generated = GeneratedGraph.generate(shape, nodes, 42);
+    }
+}
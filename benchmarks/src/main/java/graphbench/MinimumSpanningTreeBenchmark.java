@@ -0,0 +1,38 @@
+package graphbench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full minimumSpanningTree call on a built graph. A tree held outside the
+ * heap is closed in the measured call, as a real caller would.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MinimumSpanningTreeBenchmark {
+
+    private BenchGraph graph;
+
+    @Setup(Level.Trial)
+    public void setUp(GraphState state) {
+        graph = BenchGraphs.create(state.implementation, state.generated, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        graph.close();
+    }
+
+    @Benchmark
+    public void minimumSpanningTree(Blackhole blackhole) {
+        Object tree = graph.minimumSpanningTree();
+        blackhole.consume(tree);
+        BenchGraphs.close(tree);
+    }
+}
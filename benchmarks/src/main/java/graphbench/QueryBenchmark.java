@@ -0,0 +1,67 @@
+package graphbench;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point queries against a fully built graph: isConnected, getCost, DFS and
+ * BFS between pseudo-random node pairs.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+
+    private static final int PAIRS = 1 << 12;
+
+    private BenchGraph graph;
+    private int[] starts;
+    private int[] ends;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp(GraphState state) {
+        graph = BenchGraphs.create(state.implementation, state.generated, true);
+        int[][] pairs = BenchGraphs.queryPairs(state.generated, PAIRS, 7);
+        starts = pairs[0];
+        ends = pairs[1];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        graph.close();
+    }
+
+    private int nextPair() {
+        next = (next + 1) & (PAIRS - 1);
+        return next;
+    }
+
+    @Benchmark
+    public boolean isConnected() {
+        int i = nextPair();
+        return graph.isConnected(starts[i], ends[i]);
+    }
+
+    @Benchmark
+    public int getCost() {
+        int i = nextPair();
+        return graph.getCost(starts[i], ends[i]);
+    }
+
+    @Benchmark
+    public Object depthFirstSearch() {
+        int i = nextPair();
+        return graph.depthFirstSearch(starts[i], ends[i]);
+    }
+
+    @Benchmark
+    public Object breadthFirstSearch() {
+        int i = nextPair();
+        return graph.breadthFirstSearch(starts[i], ends[i]);
+    }
+}
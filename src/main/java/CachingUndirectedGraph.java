@@ -0,0 +1,354 @@
+// @author joas47
+
+import java.util.*;
+
+/**
+ * En graf som sparar svaren på {@link #depthFirstSearch} och
+ * {@link #breadthFirstSearch} för en annan graf, så att samma fråga inte
+ * behöver sökas igen. Cachen rymmer ett bestämt antal svar och slänger det
+ * som använts minst nyligen när den blir full.
+ * <p>
+ * Svaren gäller för en epok, som räknas upp varje gång en nod eller båge
+ * tillkommer eller tas bort. Att bara ändra kostnaden för en befintlig båge
+ * påverkar inte sökningarna, som inte tittar på vikterna, så då behålls
+ * svaren, så länge cachen kan se att ingen annan ändrade grafen under tiden.
+ * Ändringar som görs direkt på den underliggande grafen upptäcks
+ * genom grafens {@link CompactView#version()} om den har en, vilket gäller
+ * alla grafer i det här paketet som kan ändras; då räknas även en ändrad
+ * kostnad som en ändring. För andra grafer jämförs
+ * antalet noder och bågar, vilket missar lika många borttagningar som
+ * tillägg mellan två frågor.
+ * <p>
+ * Cachen kan delas mellan trådar om den underliggande grafen kan det.
+ */
+public class CachingUndirectedGraph<T> implements UndirectedGraph<T>, CompactView<T> {
+
+    private final UndirectedGraph<T> graph;
+    // The wrapped graph's change counter, or null if it has none and the counts are used.
+    private final CompactView<T> view;
+    private final int capacity;
+
+    private final LinkedHashMap<Query<T>, Answer<T>> answers;
+
+    // Structural epoch, and the version or node and edge counts it was last checked against.
+    private long epoch;
+    private long knownVersion;
+    private int knownNodes;
+    private int knownEdges;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    private static final class Query<T> {
+        final boolean depthFirst;
+        final T start;
+        final T end;
+
+        Query(boolean depthFirst, T start, T end) {
+            this.depthFirst = depthFirst;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Query)) {
+                return false;
+            }
+            Query<?> other = (Query<?>) o;
+            return depthFirst == other.depthFirst && Objects.equals(start, other.start) && Objects.equals(end, other.end);
+        }
+
+        @Override
+        public int hashCode() {
+            return (Objects.hashCode(start) * 31 + Objects.hashCode(end)) * 2 + (depthFirst ? 1 : 0);
+        }
+    }
+
+    private static final class Answer<T> {
+        final long epoch;
+        final List<T> path;
+
+        Answer(long epoch, List<T> path) {
+            this.epoch = epoch;
+            this.path = path;
+        }
+    }
+
+    /**
+     * @param graph    grafen som frågorna ställs mot.
+     * @param capacity hur många svar som sparas som mest.
+     */
+    @SuppressWarnings("unchecked")
+    public CachingUndirectedGraph(UndirectedGraph<T> graph, int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Error: Capacity must be positive!");
+        }
+        this.graph = graph;
+        this.view = graph instanceof CompactView ? (CompactView<T>) graph : null;
+        this.capacity = capacity;
+        // Access order makes the head the least recently used answer.
+        answers = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Query<T>, Answer<T>> eldest) {
+                if (size() > CachingUndirectedGraph.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+        resync();
+    }
+
+    @Override
+    public int getNumberOfNodes() {
+        return graph.getNumberOfNodes();
+    }
+
+    @Override
+    public int getNumberOfEdges() {
+        return graph.getNumberOfEdges();
+    }
+
+    @Override
+    public long getTotalWeight() {
+        return graph.getTotalWeight();
+    }
+
+    @Override
+    public boolean add(T newNode) {
+        boolean added = graph.add(newNode);
+        if (added) {
+            invalidate();
+        }
+        return added;
+    }
+
+    @Override
+    public int addAll(Collection<? extends T> newNodes) {
+        int added = graph.addAll(newNodes);
+        if (added > 0) {
+            invalidate();
+        }
+        return added;
+    }
+
+    /**
+     * Kopplar samman två noder. Om bågen redan fanns ändras bara kostnaden,
+     * och de sparade svaren gäller fortfarande.
+     */
+    @Override
+    public boolean connect(T node1, T node2, int cost) {
+        checkForDirectChanges();
+        // Read before the check, so a change from elsewhere after it shows in the version.
+        long before = view != null ? view.version() : 0;
+        boolean existed = graph.isConnected(node1, node2);
+        boolean connected = graph.connect(node1, node2, cost);
+        if (connected) {
+            costUpdated(!existed, before);
+        }
+        return connected;
+    }
+
+    /**
+     * Som {@link #connect} för varje båge. Fanns alla bågar redan kopplas de
+     * en i taget, så att de sparade svaren kan behållas.
+     */
+    @Override
+    public int connectAll(List<? extends T> from, List<? extends T> to, int[] costs) {
+        if (from.size() != to.size() || from.size() != costs.length) {
+            throw new IllegalArgumentException("Error: Edge columns must have the same length!");
+        }
+        boolean allExist = true;
+        for (int i = 0; i < costs.length && allExist; i++) {
+            allExist = graph.isConnected(from.get(i), to.get(i));
+        }
+        if (allExist) {
+            int connected = 0;
+            for (int i = 0; i < costs.length; i++) {
+                if (connect(from.get(i), to.get(i), costs[i])) {
+                    connected++;
+                }
+            }
+            return connected;
+        }
+        int connected = graph.connectAll(from, to, costs);
+        if (connected > 0) {
+            invalidate();
+        }
+        return connected;
+    }
+
+    /**
+     * After a connect through the cache. A new edge invalidates. A cost update only moves
+     * the known version past its own change: the graph must be exactly one change on from
+     * the version read before the edge was checked. Otherwise someone else changed the graph
+     * in between, perhaps removing the edge first, and the answers are dropped. Without a
+     * version a cost update leaves the counts as they were, so there is nothing to move.
+     */
+    private synchronized void costUpdated(boolean newEdge, long before) {
+        if (newEdge) {
+            invalidate();
+        } else if (view != null) {
+            if (knownVersion == before && view.version() == before + 1) {
+                knownVersion = before + 1;
+            } else {
+                invalidate();
+            }
+        }
+    }
+
+    @Override
+    public boolean remove(T node) {
+        boolean removed = graph.remove(node);
+        if (removed) {
+            invalidate();
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean disconnect(T node1, T node2) {
+        boolean disconnected = graph.disconnect(node1, node2);
+        if (disconnected) {
+            invalidate();
+        }
+        return disconnected;
+    }
+
+    private synchronized void invalidate() {
+        epoch++;
+        invalidations++;
+        resync();
+    }
+
+    private void resync() {
+        if (view != null) {
+            knownVersion = view.version();
+        } else {
+            knownNodes = graph.getNumberOfNodes();
+            knownEdges = graph.getNumberOfEdges();
+        }
+    }
+
+    private synchronized void checkForDirectChanges() {
+        boolean changed = view != null
+                ? view.version() != knownVersion
+                : graph.getNumberOfNodes() != knownNodes || graph.getNumberOfEdges() != knownEdges;
+        if (changed) {
+            invalidate();
+        }
+    }
+
+    @Override
+    public boolean isConnected(T node1, T node2) {
+        return graph.isConnected(node1, node2);
+    }
+
+    @Override
+    public int getCost(T node1, T node2) {
+        return graph.getCost(node1, node2);
+    }
+
+    @Override
+    public List<T> depthFirstSearch(T start, T end) {
+        return cached(new Query<>(true, start, end));
+    }
+
+    @Override
+    public List<T> breadthFirstSearch(T start, T end) {
+        return cached(new Query<>(false, start, end));
+    }
+
+    private List<T> cached(Query<T> query) {
+        long current;
+        synchronized (this) {
+            checkForDirectChanges();
+            current = epoch;
+            Answer<T> answer = answers.get(query);
+            if (answer != null && answer.epoch == current) {
+                hits++;
+                return new LinkedList<>(answer.path);
+            }
+            // A stale answer is left in place, it is replaced below or ages out of the order.
+            misses++;
+        }
+        // Searched without holding the lock, so other queries are not held up.
+        List<T> path = query.depthFirst
+                ? graph.depthFirstSearch(query.start, query.end)
+                : graph.breadthFirstSearch(query.start, query.end);
+        synchronized (this) {
+            if (current == epoch) {
+                answers.put(query, new Answer<>(current, new ArrayList<>(path)));
+            }
+        }
+        return path;
+    }
+
+    @Override
+    public UndirectedGraph<T> minimumSpanningTree() {
+        return graph.minimumSpanningTree();
+    }
+
+    /**
+     * The wrapped graph's compact copy, so indexes can be built through the wrapper.
+     *
+     * @throws IllegalArgumentException if the wrapped graph has none.
+     */
+    @Override
+    public CompactUndirectedGraph<T> compact() {
+        return CompactView.of(graph).compact();
+    }
+
+    @Override
+    public long version() {
+        return CompactView.of(graph).version();
+    }
+
+    /**
+     * Tömmer cachen. Statistiken behålls.
+     */
+    public synchronized void clear() {
+        answers.clear();
+    }
+
+    /**
+     * Antalet svar som ligger i cachen, inklusive sådana som blivit inaktuella
+     * men ännu inte slängts.
+     */
+    public synchronized int size() {
+        return answers.size();
+    }
+
+    /**
+     * Antalet sökningar som kunde besvaras från cachen.
+     */
+    public synchronized long hitCount() {
+        return hits;
+    }
+
+    /**
+     * Antalet sökningar som gick vidare till den underliggande grafen.
+     */
+    public synchronized long missCount() {
+        return misses;
+    }
+
+    /**
+     * Antalet svar som slängts för att ge plats åt nya.
+     */
+    public synchronized long evictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Antalet gånger som alla sparade svar blivit inaktuella på grund av en
+     * ny eller borttagen nod eller båge.
+     */
+    public synchronized long invalidationCount() {
+        return invalidations;
+    }
+}
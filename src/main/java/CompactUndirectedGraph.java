@@ -0,0 +1,1521 @@
+// @author joas47
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.ObjIntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * En oriktad graf där varje nod internas till ett tätt int-id och
+ * grannlistorna lagras i CSR-form (compressed sparse row): {@code offsets},
+ * {@code neighbors} och {@code costs}. Grannarna i varje rad är sorterade så
+ * att en båge kan slås upp med binärsökning.
+ * <p>
+ * Grafen byggs helst med en {@link Builder} eller från en
+ * {@link MyUndirectedGraph}. {@link #add} och {@link #connect} fungerar också,
+ * men nya bågar samlas i en buffert som packas in i arrayerna vid nästa
+ * läsning, så många små ändringar varvade med läsningar blir dyra.
+ * <p>
+ * {@link #remove} och {@link #disconnect} lämnar gravstenar: en borttagen
+ * båge får kostnaden 0 och hoppas över av sökningarna, och en borttagen nod
+ * blir ett tomt id som nästa nod som läggs till får. När gravstenarna blir en
+ * fjärdedel av arrayerna byggs nya arrayer utan dem upp vid sidan av, några
+ * rader i taget vid varje läsning och ändring, och byts in när de är klara.
+ * Ingen enskild läsning behöver alltså vänta på en hel ompackning, och
+ * noderna numreras aldrig om.
+ */
+public class CompactUndirectedGraph<T> implements UndirectedGraph<T>, CompactView<T> {
+
+    private final Map<T, Integer> ids;
+    private final ArrayList<T> nodes;
+
+    private int[] offsets;
+    private int[] neighbors;
+    private int[] costs;
+    private int numberOfEdges;
+    private long totalWeight;
+
+    // Edges added since the arrays were last packed.
+    private final EdgeColumns pending = new EdgeColumns(0);
+    private boolean dirty;
+    private long modCount;
+
+    // Removed edges keep their slots with cost 0 until a compaction drops them. Removed nodes
+    // keep their ids and rows with a null node, and the next add takes the id, so nodes are
+    // never renumbered. deadSlots also counts room at the end of the arrays that a
+    // compaction left unused.
+    private int deadSlots;
+    private int deadNodes;
+    private final IntList freeIds = new IntList();
+    private Compaction compaction;
+    // Old slots a compaction copies per read or change.
+    private static final int COMPACTION_STEP = 1 << 12;
+
+    // Tombstone-free copy handed out by compact() while this graph has tombstones.
+    private CompactUndirectedGraph<T> packedCopy;
+    private long packedCopyModCount;
+
+    // Snapshot of the node ids handed to search results, rebuilt after a change.
+    private NodeIds<T> nodeIds;
+    private long nodeIdsModCount;
+
+    // Search state for the batch searches, kept between batches. Never holds more entries than
+    // the common pool has workers, plus the calling thread.
+    private final ConcurrentLinkedQueue<Scratch> scratchPool = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger scratchPooled = new AtomicInteger();
+    private static final int SCRATCH_POOL_LIMIT = ForkJoinPool.getCommonPoolParallelism() + 1;
+    // Queries per task in the batch searches, each task takes one Scratch for all of them.
+    private static final int BATCH_GRAIN = 64;
+
+    // Nodes per task in the parallel searches. A multiple of 64 so two tasks never share a bitset word.
+    private static final int PARALLEL_GRAIN = 1024;
+
+    // Direction switching thresholds from Beamer et al., "Direction-Optimizing Breadth-First Search".
+    private static final int ALPHA = 14;
+    private static final int BETA = 24;
+
+    // Reusable search state, a node is visited when its stamp equals the current one.
+    private int[] stamps = new int[0];
+    private int stamp;
+    private int[] parent = new int[0];
+    private int[] work = new int[0];
+    private int[] cursor = new int[0];
+    private long[] distance = new long[0];
+    private IndexedMinHeap heap = new IndexedMinHeap(0);
+    // Dijkstra does many more decrease-keys than polls, a 4-ary heap is shallower for that.
+    private IndexedMinHeap distanceHeap = new IndexedMinHeap(0, 4);
+
+    private CompactUndirectedGraph(Map<T, Integer> ids, ArrayList<T> nodes, int[] offsets, int[] neighbors, int[] costs, int numberOfEdges) {
+        this.ids = ids;
+        this.nodes = nodes;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+        this.costs = costs;
+        this.numberOfEdges = numberOfEdges;
+    }
+
+    /**
+     * Skapar en tom graf.
+     */
+    public CompactUndirectedGraph() {
+        this(new HashMap<>(), new ArrayList<>(), new int[1], new int[0], new int[0], 0);
+    }
+
+    /**
+     * Skapar en kompakt kopia av en {@link MyUndirectedGraph}.
+     *
+     * @param graph grafen som ska kopieras.
+     * @return en ny kompakt graf med samma noder, bågar och kostnader.
+     */
+    public static <T> CompactUndirectedGraph<T> from(MyUndirectedGraph<T> graph) {
+        Builder<T> builder = new Builder<>(graph.getNumberOfNodes(), graph.getNumberOfEdges());
+        // Skipping the free ids closes the gaps that removals left in the graph's ids.
+        for (T node : graph.nodes()) {
+            if (node != null) {
+                builder.add(node);
+            }
+        }
+        for (T node : graph.nodes()) {
+            if (node == null) {
+                continue;
+            }
+            int id = builder.ids.get(node);
+            for (Edge<T> edge : graph.edgesFrom(node)) {
+                if (id <= builder.ids.get(edge.getDestination())) {
+                    builder.connect(node, edge.getDestination(), edge.getCost());
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Bygger upp en {@link CompactUndirectedGraph} i ett svep. Noder och bågar
+     * samlas i primitiva kolumner och packas först i {@link #build()}.
+     */
+    public static class Builder<T> {
+
+        private final Map<T, Integer> ids;
+        private final ArrayList<T> nodes;
+        private final EdgeColumns edges;
+
+        public Builder() {
+            this(16, 16);
+        }
+
+        /**
+         * @param expectedNodes förväntat antal noder.
+         * @param expectedEdges förväntat antal bågar.
+         */
+        public Builder(int expectedNodes, int expectedEdges) {
+            ids = new HashMap<>(Math.max(16, (int) (expectedNodes / 0.75f) + 1));
+            nodes = new ArrayList<>(expectedNodes);
+            edges = new EdgeColumns(expectedEdges);
+        }
+
+        /**
+         * Lägger till en nod.
+         *
+         * @return false om noden redan finns.
+         */
+        public boolean add(T node) {
+            if (ids.containsKey(node)) {
+                return false;
+            }
+            ids.put(node, nodes.size());
+            nodes.add(node);
+            return true;
+        }
+
+        /**
+         * Lägger till en båge. Om samma par kopplas flera gånger gäller den
+         * sist angivna kostnaden, precis som för {@link UndirectedGraph#connect}.
+         *
+         * @return true om bägge noderna finns och kostnaden är >0.
+         */
+        public boolean connect(T from, T to, int cost) {
+            Integer a = ids.get(from);
+            Integer b = ids.get(to);
+            if (cost <= 0 || a == null || b == null) {
+                return false;
+            }
+            edges.add(a, b, cost);
+            return true;
+        }
+
+        /**
+         * Som {@link #connect} men med nodernas id i tilläggsordning, för
+         * inläsare som redan har numrerat noderna.
+         */
+        void connectIds(int from, int to, int cost) {
+            if (cost > 0 && from >= 0 && to >= 0 && from < nodes.size() && to < nodes.size()) {
+                edges.add(from, to, cost);
+            }
+        }
+
+        public CompactUndirectedGraph<T> build() {
+            CompactUndirectedGraph<T> graph = new CompactUndirectedGraph<>(ids, nodes, null, null, null, 0);
+            graph.pack(edges);
+            return graph;
+        }
+    }
+
+    /**
+     * Växande kolumner med bågar (från, till, kostnad).
+     */
+    static final class EdgeColumns {
+        int[] from;
+        int[] to;
+        int[] cost;
+        int size;
+
+        EdgeColumns(int capacity) {
+            capacity = Math.max(capacity, 4);
+            from = new int[capacity];
+            to = new int[capacity];
+            cost = new int[capacity];
+        }
+
+        void add(int a, int b, int c) {
+            if (size == from.length) {
+                int capacity = size + (size >> 1) + 1;
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                cost = Arrays.copyOf(cost, capacity);
+            }
+            from[size] = a;
+            to[size] = b;
+            cost[size] = c;
+            size++;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+
+    /**
+     * Packar kolumnerna till CSR-arrayer. Parallella bågar slås ihop så att den
+     * som kommer sist i kolumnerna vinner.
+     */
+    private void pack(EdgeColumns edges) {
+        int n = nodes.size();
+        int[] degree = new int[n + 1];
+        for (int i = 0; i < edges.size; i++) {
+            degree[edges.from[i]]++;
+            if (edges.from[i] != edges.to[i]) {
+                degree[edges.to[i]]++;
+            }
+        }
+        int[] start = new int[n + 1];
+        for (int v = 0; v < n; v++) {
+            start[v + 1] = start[v] + degree[v];
+        }
+        // Neighbour in the high bits and edge index in the low ones, so sorting a row orders the
+        // neighbours and puts the last duplicate last.
+        long[] keys = new long[start[n]];
+        int[] fill = Arrays.copyOf(start, n);
+        for (int i = 0; i < edges.size; i++) {
+            int a = edges.from[i];
+            int b = edges.to[i];
+            keys[fill[a]++] = ((long) b << 32) | i;
+            if (a != b) {
+                keys[fill[b]++] = ((long) a << 32) | i;
+            }
+        }
+        int[] newOffsets = new int[n + 1];
+        int[] newNeighbors = new int[keys.length];
+        int[] newCosts = new int[keys.length];
+        int written = 0;
+        int edgeCount = 0;
+        long weight = 0;
+        for (int v = 0; v < n; v++) {
+            newOffsets[v] = written;
+            Arrays.sort(keys, start[v], start[v + 1]);
+            for (int k = start[v]; k < start[v + 1]; k++) {
+                int neighbor = (int) (keys[k] >>> 32);
+                if (k + 1 < start[v + 1] && (int) (keys[k + 1] >>> 32) == neighbor) {
+                    continue;
+                }
+                newNeighbors[written] = neighbor;
+                newCosts[written] = edges.cost[(int) keys[k]];
+                written++;
+                if (v <= neighbor) {
+                    edgeCount++;
+                    weight += newCosts[written - 1];
+                }
+            }
+        }
+        newOffsets[n] = written;
+        offsets = newOffsets;
+        neighbors = written == keys.length ? newNeighbors : Arrays.copyOf(newNeighbors, written);
+        costs = written == keys.length ? newCosts : Arrays.copyOf(newCosts, written);
+        numberOfEdges = edgeCount;
+        totalWeight = weight;
+    }
+
+    private void ensurePacked() {
+        if (!dirty) {
+            compactionStep();
+            return;
+        }
+        // Packing drops every tombstone anyway.
+        compaction = null;
+        int oldNodes = offsets.length - 1;
+        EdgeColumns edges = new EdgeColumns(numberOfEdges + pending.size);
+        for (int v = 0; v < oldNodes; v++) {
+            for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                if (v <= neighbors[k] && costs[k] != 0) {
+                    edges.add(v, neighbors[k], costs[k]);
+                }
+            }
+        }
+        for (int i = 0; i < pending.size; i++) {
+            edges.add(pending.from[i], pending.to[i], pending.cost[i]);
+        }
+        pending.clear();
+        pack(edges);
+        deadSlots = 0;
+        dirty = false;
+    }
+
+    /**
+     * Compacted arrays being built beside the current ones. Rows before row are copied
+     * without their tombstones, and a change to a copied row is made in both until the
+     * copy is swapped in.
+     */
+    private static final class Compaction {
+        final int[] offsets;
+        final int[] neighbors;
+        final int[] costs;
+        int row;
+        int written;
+        // Slots buried in copied rows after they were copied.
+        int dead;
+
+        Compaction(int rows, int liveSlots) {
+            offsets = new int[rows + 1];
+            neighbors = new int[liveSlots];
+            costs = new int[liveSlots];
+        }
+
+        /**
+         * Copies rows until about budget old slots are done.
+         *
+         * @return true when the last row is copied.
+         */
+        boolean copy(int[] fromOffsets, int[] fromNeighbors, int[] fromCosts, int budget) {
+            int rows = offsets.length - 1;
+            while (row < rows && budget > 0) {
+                for (int k = fromOffsets[row]; k < fromOffsets[row + 1]; k++) {
+                    if (fromCosts[k] != 0) {
+                        neighbors[written] = fromNeighbors[k];
+                        costs[written] = fromCosts[k];
+                        written++;
+                    }
+                }
+                budget -= fromOffsets[row + 1] - fromOffsets[row] + 1;
+                offsets[++row] = written;
+            }
+            return row == rows;
+        }
+
+        /**
+         * The slot of a-b in the copy, or -1 if row a is not copied yet.
+         */
+        int slotOf(int a, int b) {
+            if (a >= row) {
+                return -1;
+            }
+            int slot = Arrays.binarySearch(neighbors, offsets[a], offsets[a + 1], b);
+            return slot >= 0 ? slot : -1;
+        }
+    }
+
+    /**
+     * Advances a compaction in progress, and swaps the new arrays in after the last row.
+     */
+    private void compactionStep() {
+        if (compaction == null || !compaction.copy(offsets, neighbors, costs, COMPACTION_STEP)) {
+            return;
+        }
+        offsets = compaction.offsets;
+        neighbors = compaction.neighbors;
+        costs = compaction.costs;
+        // Edges buried in rows not yet copied were left out, and their room is unused.
+        deadSlots = compaction.dead + compaction.neighbors.length - compaction.written;
+        compaction = null;
+    }
+
+    /**
+     * Makes the same cost change in a compaction in progress, if a-b is already copied.
+     */
+    private void mirrorCost(int a, int b, int cost) {
+        int slot = compaction == null ? -1 : compaction.slotOf(a, b);
+        if (slot >= 0) {
+            if (cost == 0) {
+                compaction.dead++;
+            }
+            compaction.costs[slot] = cost;
+        }
+    }
+
+    /**
+     * Starts a compaction once a quarter of the slots are dead, and advances the one running.
+     */
+    private void tombstonesChanged() {
+        if (compaction == null && !dirty && deadSlots > neighbors.length / 4) {
+            compaction = new Compaction(offsets.length - 1, neighbors.length - deadSlots);
+        }
+        compactionStep();
+    }
+
+    private boolean hasTombstones() {
+        return deadSlots > 0 || deadNodes > 0;
+    }
+
+    /**
+     * Id:t för en nod eller -1 om noden inte finns.
+     */
+    int idOf(T node) {
+        Integer id = ids.get(node);
+        return id == null ? -1 : id;
+    }
+
+    T nodeAt(int id) {
+        return nodes.get(id);
+    }
+
+    /**
+     * The current node ids as an immutable snapshot, shared until the graph changes.
+     */
+    NodeIds<T> nodeIds() {
+        ensurePacked();
+        if (nodeIds == null || nodeIdsModCount != modCount) {
+            nodeIds = new NodeIds<>(nodes, ids);
+            nodeIdsModCount = modCount;
+        }
+        return nodeIds;
+    }
+
+    /**
+     * The graph itself when it has no tombstones. Otherwise a packed copy with dense ids,
+     * built beside the graph and kept until the next change, so the graph's own ids and
+     * arrays are left alone.
+     */
+    @Override
+    public CompactUndirectedGraph<T> compact() {
+        ensurePacked();
+        if (!hasTombstones()) {
+            return this;
+        }
+        if (packedCopy == null || packedCopyModCount != modCount) {
+            Builder<T> builder = new Builder<>(getNumberOfNodes(), numberOfEdges);
+            for (T node : nodes) {
+                if (node != null) {
+                    builder.add(node);
+                }
+            }
+            for (int v = 0; v < nodes.size(); v++) {
+                for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                    if (v <= neighbors[k] && costs[k] != 0) {
+                        builder.connect(nodes.get(v), nodes.get(neighbors[k]), costs[k]);
+                    }
+                }
+            }
+            packedCopy = builder.build();
+            packedCopyModCount = modCount;
+        }
+        return packedCopy;
+    }
+
+    @Override
+    public long version() {
+        return modCount;
+    }
+
+    // The arrays as they are, tombstones included. Callers that walk them go through
+    // compact() first.
+
+    int[] offsets() {
+        ensurePacked();
+        return offsets;
+    }
+
+    int[] neighbors() {
+        ensurePacked();
+        return neighbors;
+    }
+
+    int[] costs() {
+        ensurePacked();
+        return costs;
+    }
+
+    /**
+     * Sparar grafen i {@link GraphSnapshot}-formatet.
+     *
+     * @param file  filen, som skrivs över om den finns.
+     * @param codec hur noderna skrivs som bytes.
+     * @throws IOException om filen inte kan skrivas.
+     */
+    public void save(Path file, NodeCodec<T> codec) throws IOException {
+        GraphSnapshot.save(compact(), codec, file);
+    }
+
+    /**
+     * Index i {@code neighbors}/{@code costs} för bågen a-b eller -1.
+     */
+    private int slotOf(int a, int b) {
+        if (a >= offsets.length - 1) {
+            return -1;
+        }
+        int slot = Arrays.binarySearch(neighbors, offsets[a], offsets[a + 1], b);
+        return slot >= 0 ? slot : -1;
+    }
+
+    private int nextStamp() {
+        int n = nodes.size();
+        if (stamps.length < n) {
+            stamps = new int[n];
+            parent = new int[n];
+            work = new int[n];
+            cursor = new int[n];
+            distance = new long[n];
+            stamp = 0;
+        }
+        if (++stamp == 0) {
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+        return stamp;
+    }
+
+    /**
+     * Antalet noder i grafen.
+     *
+     * @return antalet noder i grafen.
+     */
+    @Override
+    public int getNumberOfNodes() {
+        return nodes.size() - deadNodes;
+    }
+
+    /**
+     * Antalet bågar i grafen.
+     *
+     * @return antalet bågar i grafen.
+     */
+    @Override
+    public int getNumberOfEdges() {
+        ensurePacked();
+        return numberOfEdges;
+    }
+
+    @Override
+    public long getTotalWeight() {
+        ensurePacked();
+        return totalWeight;
+    }
+
+    /**
+     * Lägger till en ny nod i grafen.
+     *
+     * @param newNode datat för den nya noden som ska läggas till i grafen.
+     * @return false om noden redan finns.
+     */
+    @Override
+    public boolean add(T newNode) {
+        if (ids.containsKey(newNode)) {
+            return false;
+        }
+        int id;
+        if (freeIds.size() > 0) {
+            // A free id still has its row, empty or with tombstones only, so nothing to pack.
+            id = freeIds.removeLast();
+            nodes.set(id, newNode);
+            deadNodes--;
+        } else {
+            id = nodes.size();
+            nodes.add(newNode);
+            dirty = true;
+        }
+        ids.put(newNode, id);
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Kopplar samman två noder i grafen. Finns bågen redan i de packade
+     * arrayerna uppdateras kostnaden på plats, annars buffras bågen tills
+     * nästa läsning.
+     *
+     * @param from den ena noden.
+     * @param to   den andra noden.
+     * @param cost kostnaden för att ta sig mellan noderna. Denna måste vara >0
+     *             för att noderna ska kunna kopplas ihop.
+     * @return true om bägge noderna finns i grafen och kan kopplas ihop.
+     */
+    @Override
+    public boolean connect(T from, T to, int cost) {
+        int a = idOf(from);
+        int b = idOf(to);
+        if (cost <= 0 || a < 0 || b < 0) {
+            return false;
+        }
+        modCount++;
+        int slot = slotOf(a, b);
+        if (slot >= 0) {
+            if (costs[slot] == 0) {
+                // Brings a removed edge back in its old slot. A compaction may already have
+                // dropped the slot from its copy, so it starts over later.
+                numberOfEdges++;
+                deadSlots -= a == b ? 1 : 2;
+                compaction = null;
+            }
+            totalWeight += cost - costs[slot];
+            costs[slot] = cost;
+            costs[slotOf(b, a)] = cost;
+            mirrorCost(a, b, cost);
+            if (a != b) {
+                mirrorCost(b, a, cost);
+            }
+            tombstonesChanged();
+        } else {
+            pending.add(a, b, cost);
+            dirty = true;
+        }
+        return true;
+    }
+
+    /**
+     * Tar bort en nod och alla dess bågar. Bågarna blir gravstenar och
+     * nodens id lämnas tomt tills nästa nod läggs till.
+     *
+     * @param node noden som ska tas bort.
+     * @return false om noden inte finns.
+     */
+    @Override
+    public boolean remove(T node) {
+        ensurePacked();
+        int a = idOf(node);
+        if (a < 0) {
+            return false;
+        }
+        for (int k = offsets[a]; k < offsets[a + 1]; k++) {
+            if (costs[k] != 0) {
+                bury(a, neighbors[k], k);
+            }
+        }
+        ids.remove(node);
+        nodes.set(a, null);
+        freeIds.add(a);
+        deadNodes++;
+        modCount++;
+        tombstonesChanged();
+        return true;
+    }
+
+    /**
+     * Tar bort bågen mellan två noder. Bågen blir en gravsten tills den
+     * stegvisa komprimeringen tar bort den.
+     *
+     * @param from den ena noden.
+     * @param to   den andra noden.
+     * @return false om noderna inte var kopplade.
+     */
+    @Override
+    public boolean disconnect(T from, T to) {
+        ensurePacked();
+        int a = idOf(from);
+        int b = idOf(to);
+        if (a < 0 || b < 0) {
+            return false;
+        }
+        int slot = slotOf(a, b);
+        if (slot < 0 || costs[slot] == 0) {
+            return false;
+        }
+        bury(a, b, slot);
+        modCount++;
+        tombstonesChanged();
+        return true;
+    }
+
+    private void bury(int a, int b, int slot) {
+        numberOfEdges--;
+        totalWeight -= costs[slot];
+        costs[slot] = 0;
+        deadSlots++;
+        mirrorCost(a, b, 0);
+        if (a != b) {
+            costs[slotOf(b, a)] = 0;
+            deadSlots++;
+            mirrorCost(b, a, 0);
+        }
+    }
+
+    /**
+     * Lägger till flera noder på en gång.
+     *
+     * @param newNodes noderna som ska läggas till.
+     * @return antalet noder som faktiskt lades till.
+     */
+    @Override
+    public int addAll(Collection<? extends T> newNodes) {
+        nodes.ensureCapacity(nodes.size() + newNodes.size());
+        int added = 0;
+        for (T node : newNodes) {
+            if (add(node)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Kopplar samman många par av noder på en gång. Alla bågar buffras och
+     * packas i ett enda svep vid nästa läsning, där den sist angivna
+     * kostnaden för ett par vinner.
+     *
+     * @param from  ena änden av varje båge.
+     * @param to    andra änden av varje båge.
+     * @param costs kostnaden för varje båge.
+     * @return antalet bågar som kunde kopplas.
+     */
+    @Override
+    public int connectAll(List<? extends T> from, List<? extends T> to, int[] costs) {
+        if (from.size() != to.size() || from.size() != costs.length) {
+            throw new IllegalArgumentException("Error: Edge columns must have the same length!");
+        }
+        int connected = 0;
+        for (int i = 0; i < costs.length; i++) {
+            int a = idOf(from.get(i));
+            int b = idOf(to.get(i));
+            if (costs[i] > 0 && a >= 0 && b >= 0) {
+                pending.add(a, b, costs[i]);
+                connected++;
+            }
+        }
+        if (connected > 0) {
+            dirty = true;
+            modCount++;
+        }
+        return connected;
+    }
+
+    /**
+     * Berättar om två noder är sammanbundna av en båge eller inte.
+     *
+     * @param from den ena noden.
+     * @param to   den andra noden.
+     * @return om noderna är sammanbundna eller inte.
+     */
+    @Override
+    public boolean isConnected(T from, T to) {
+        return getCost(from, to) != -1;
+    }
+
+    /**
+     * Returnerar kostnaden för att ta sig mellan två direktkopplade noder.
+     *
+     * @param from den ena noden.
+     * @param to   den andra noden.
+     * @return kostnaden för att ta sig mellan noderna eller -1 om noderna inte
+     * är kopplade.
+     */
+    @Override
+    public int getCost(T from, T to) {
+        ensurePacked();
+        int a = idOf(from);
+        int b = idOf(to);
+        if (a < 0 || b < 0) {
+            return -1;
+        }
+        int slot = slotOf(a, b);
+        return slot >= 0 && costs[slot] != 0 ? costs[slot] : -1;
+    }
+
+    /**
+     * Gör en iterativ djupet-först-sökning efter en väg mellan två noder.
+     * Sökningen avbryts så fort slutnoden nås.
+     *
+     * @param start startnoden.
+     * @param end   slutnoden.
+     * @return en lista över alla noder på vägen mellan start- och slutnoden. Om
+     * ingen väg finns är listan tom.
+     */
+    @Override
+    public List<T> depthFirstSearch(T start, T end) {
+        ensurePacked();
+        int s = idOf(start);
+        int e = idOf(end);
+        if (s < 0 || e < 0) {
+            return new ArrayList<>();
+        }
+        int mark = nextStamp();
+        return depthFirst(s, e, stamps, mark, work, cursor);
+    }
+
+    private List<T> depthFirst(int s, int e, int[] stamps, int mark, int[] work, int[] cursor) {
+        // work is the stack of nodes, cursor the next edge to try at each depth.
+        int depth = 0;
+        work[0] = s;
+        cursor[0] = offsets[s];
+        stamps[s] = mark;
+        while (depth >= 0) {
+            int v = work[depth];
+            if (v == e) {
+                List<T> path = new ArrayList<>(depth + 1);
+                for (int i = 0; i <= depth; i++) {
+                    path.add(nodes.get(work[i]));
+                }
+                return path;
+            }
+            int k = cursor[depth];
+            int limit = offsets[v + 1];
+            while (k < limit && (stamps[neighbors[k]] == mark || costs[k] == 0)) {
+                k++;
+            }
+            if (k == limit) {
+                depth--;
+            } else {
+                cursor[depth] = k + 1;
+                int next = neighbors[k];
+                stamps[next] = mark;
+                depth++;
+                work[depth] = next;
+                cursor[depth] = offsets[next];
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Gör en bredden-först-sökning efter en väg mellan två noder. Sökningen
+     * avbryts så fort slutnoden upptäcks.
+     *
+     * @param start startnoden.
+     * @param end   slutnoden.
+     * @return en lista över alla noder på vägen mellan start- och slutnoden. Om
+     * ingen väg finns är listan tom.
+     */
+    @Override
+    public List<T> breadthFirstSearch(T start, T end) {
+        ensurePacked();
+        int s = idOf(start);
+        int e = idOf(end);
+        if (s < 0 || e < 0) {
+            return new ArrayList<>();
+        }
+        int mark = nextStamp();
+        return breadthFirst(s, e, stamps, mark, parent, work);
+    }
+
+    private List<T> breadthFirst(int s, int e, int[] stamps, int mark, int[] parent, int[] work) {
+        int head = 0;
+        int tail = 0;
+        work[tail++] = s;
+        stamps[s] = mark;
+        parent[s] = -1;
+        boolean found = s == e;
+        while (!found && head < tail) {
+            int v = work[head++];
+            for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                int w = neighbors[k];
+                if (stamps[w] != mark && costs[k] != 0) {
+                    stamps[w] = mark;
+                    parent[w] = v;
+                    if (w == e) {
+                        found = true;
+                        break;
+                    }
+                    work[tail++] = w;
+                }
+            }
+        }
+        if (!found) {
+            return new ArrayList<>();
+        }
+        return pathTo(e, parent);
+    }
+
+    /**
+     * Search state owned by one batch task at a time, reused across its queries and, through
+     * the pool, across batches.
+     */
+    private static final class Scratch {
+        final int[] stamps;
+        final int[] parent;
+        final int[] work;
+        final int[] cursor;
+        int stamp;
+
+        Scratch(int n) {
+            stamps = new int[n];
+            parent = new int[n];
+            work = new int[n];
+            cursor = new int[n];
+        }
+
+        int nextStamp() {
+            if (++stamp == 0) {
+                Arrays.fill(stamps, 0);
+                stamp = 1;
+            }
+            return stamp;
+        }
+    }
+
+    /**
+     * Gör en bredden-först-sökning för varje par av start- och slutnoder.
+     * Frågorna körs parallellt på fork-join-poolen. Söktillståndet lånas ur
+     * en pool som grafen äger och återanvänds mellan frågorna och mellan
+     * anropen.
+     *
+     * @param starts startnoderna, helst i en lista med snabb indexering.
+     * @param ends   slutnoderna.
+     * @return vägarna i samma ordning som frågorna, tomma där ingen väg finns.
+     * @throws IllegalArgumentException om listorna inte är lika långa.
+     */
+    public List<List<T>> breadthFirstSearchAll(List<? extends T> starts, List<? extends T> ends) {
+        return collect(starts, ends, false);
+    }
+
+    /**
+     * Som {@link #breadthFirstSearchAll(List, List)}, men varje väg lämnas
+     * till {@code sink} så fort den är klar, tillsammans med frågans index.
+     * Anropen kommer från flera trådar och i godtycklig ordning.
+     */
+    public void breadthFirstSearchAll(List<? extends T> starts, List<? extends T> ends, ObjIntConsumer<List<T>> sink) {
+        searchAll(starts, ends, false, sink);
+    }
+
+    /**
+     * Gör en djupet-först-sökning för varje par av start- och slutnoder,
+     * parallellt på samma sätt som {@link #breadthFirstSearchAll(List, List)}.
+     *
+     * @param starts startnoderna, helst i en lista med snabb indexering.
+     * @param ends   slutnoderna.
+     * @return vägarna i samma ordning som frågorna, tomma där ingen väg finns.
+     * @throws IllegalArgumentException om listorna inte är lika långa.
+     */
+    public List<List<T>> depthFirstSearchAll(List<? extends T> starts, List<? extends T> ends) {
+        return collect(starts, ends, true);
+    }
+
+    /**
+     * Som {@link #depthFirstSearchAll(List, List)}, men varje väg lämnas till
+     * {@code sink} så fort den är klar, tillsammans med frågans index.
+     * Anropen kommer från flera trådar och i godtycklig ordning.
+     */
+    public void depthFirstSearchAll(List<? extends T> starts, List<? extends T> ends, ObjIntConsumer<List<T>> sink) {
+        searchAll(starts, ends, true, sink);
+    }
+
+    private List<List<T>> collect(List<? extends T> starts, List<? extends T> ends, boolean depthFirst) {
+        @SuppressWarnings("unchecked")
+        List<T>[] paths = (List<T>[]) new List<?>[starts.size()];
+        // Each index is written by exactly one worker, the stream's join publishes the writes.
+        searchAll(starts, ends, depthFirst, (path, i) -> paths[i] = path);
+        return Arrays.asList(paths);
+    }
+
+    private void searchAll(List<? extends T> starts, List<? extends T> ends, boolean depthFirst, ObjIntConsumer<List<T>> sink) {
+        if (starts.size() != ends.size()) {
+            throw new IllegalArgumentException("Error: Query columns must have the same length!");
+        }
+        // Packed once up front, the workers only read.
+        ensurePacked();
+        int n = nodes.size();
+        int queries = starts.size();
+        IntStream.range(0, (queries + BATCH_GRAIN - 1) / BATCH_GRAIN).parallel().forEach(chunk -> {
+            Scratch own = takeScratch(n);
+            try {
+                for (int i = chunk * BATCH_GRAIN; i < Math.min(queries, (chunk + 1) * BATCH_GRAIN); i++) {
+                    int s = idOf(starts.get(i));
+                    int e = idOf(ends.get(i));
+                    List<T> path;
+                    if (s < 0 || e < 0) {
+                        path = new ArrayList<>();
+                    } else {
+                        int mark = own.nextStamp();
+                        path = depthFirst
+                                ? depthFirst(s, e, own.stamps, mark, own.work, own.cursor)
+                                : breadthFirst(s, e, own.stamps, mark, own.parent, own.work);
+                    }
+                    sink.accept(path, i);
+                }
+            } finally {
+                giveBackScratch(own);
+            }
+        });
+    }
+
+    private Scratch takeScratch(int n) {
+        Scratch scratch;
+        while ((scratch = scratchPool.poll()) != null) {
+            scratchPooled.decrementAndGet();
+            // Sized for an earlier packing, dropped.
+            if (scratch.stamps.length == n) {
+                return scratch;
+            }
+        }
+        return new Scratch(n);
+    }
+
+    private void giveBackScratch(Scratch scratch) {
+        if (scratchPooled.incrementAndGet() <= SCRATCH_POOL_LIMIT) {
+            scratchPool.offer(scratch);
+        } else {
+            scratchPooled.decrementAndGet();
+        }
+    }
+
+    /**
+     * Number of search states kept for the next batch search.
+     */
+    int pooledScratch() {
+        return scratchPooled.get();
+    }
+
+    /**
+     * Gör en parallell bredden-först-genomgång av hela komponenten som
+     * startnoden ligger i. Varje nivå bearbetas på fork-join-poolen. Så länge
+     * fronten är liten går varje steg ut från fronten (top-down); när bågarna
+     * från fronten blir många jämfört med de obesökta får i stället varje
+     * obesökt nod leta efter en granne i fronten (bottom-up).
+     * <p>
+     * Observera att denna metod inte använder sig av viktinformationen.
+     *
+     * @param start startnoden.
+     * @return avstånd och föregångare för alla noder i grafen.
+     */
+    public HopDistances<T> parallelBreadthFirstSearch(T start) {
+        NodeIds<T> snapshot = nodeIds();
+        int n = nodes.size();
+        int[] distance = new int[n];
+        int[] parent = new int[n];
+        Arrays.fill(distance, -1);
+        Arrays.fill(parent, -1);
+        int source = idOf(start);
+        if (source < 0) {
+            return new HopDistances<>(snapshot, -1, distance, parent);
+        }
+        AtomicLongArray visited = new AtomicLongArray((n + 63) >>> 6);
+        trySetBit(visited, source);
+        distance[source] = 0;
+        int[] frontier = {source};
+        long frontierEdges = degree(source);
+        long unexploredEdges = neighbors.length - frontierEdges;
+        boolean bottomUp = false;
+        for (int level = 0; frontier.length > 0; level++) {
+            if (!bottomUp && frontierEdges > unexploredEdges / ALPHA) {
+                bottomUp = true;
+            } else if (bottomUp && frontier.length < n / BETA) {
+                bottomUp = false;
+            }
+            frontier = bottomUp
+                    ? bottomUpStep(visited, distance, parent, level)
+                    : topDownStep(frontier, visited, distance, parent, level);
+            frontierEdges = 0;
+            for (int v : frontier) {
+                frontierEdges += degree(v);
+            }
+            unexploredEdges -= frontierEdges;
+        }
+        return new HopDistances<>(snapshot, source, distance, parent);
+    }
+
+    /**
+     * Gör en bredden-först-genomgång från var och en av startnoderna.
+     * Startnoderna delas upp i grupper om 64 som söks samtidigt: varje nod
+     * har ett 64-bitars ord där bit j betyder att sökning j har nått noden,
+     * så en genomgång av grannlistorna per nivå räcker för hela gruppen.
+     * Grupperna körs parallellt på fork-join-poolen.
+     * <p>
+     * Observera att denna metod inte använder sig av viktinformationen.
+     *
+     * @param sources startnoderna. Noder som inte finns får en rad med bara -1.
+     * @return avstånden från varje startnod till alla noder i grafen.
+     */
+    public HopDistanceMatrix<T> multiSourceBreadthFirstSearch(List<? extends T> sources) {
+        int[][] distance = new int[sources.size()][];
+        NodeIds<T> snapshot = nodeIds();
+        multiSourceBreadthFirstSearch(sources, (batch, first) -> {
+            for (int j = 0; j < batch.getSources().size(); j++) {
+                distance[first + j] = batch.distances(j);
+            }
+        });
+        return new HopDistanceMatrix<>(snapshot, new ArrayList<>(sources), distance);
+    }
+
+    /**
+     * Som {@link #multiSourceBreadthFirstSearch(List)}, men resultatet för
+     * varje grupp om upp till 64 startnoder lämnas till {@code sink} så fort
+     * gruppen är klar, tillsammans med platsen för gruppens första startnod.
+     * Anropen kommer från flera trådar och i godtycklig ordning.
+     */
+    public void multiSourceBreadthFirstSearch(List<? extends T> sources, ObjIntConsumer<HopDistanceMatrix<T>> sink) {
+        NodeIds<T> snapshot = nodeIds();
+        int batches = (sources.size() + 63) >>> 6;
+        IntStream.range(0, batches).parallel().forEach(batch -> {
+            int first = batch << 6;
+            List<T> group = new ArrayList<>(sources.subList(first, Math.min(sources.size(), first + 64)));
+            sink.accept(new HopDistanceMatrix<>(snapshot, group, lanes(group)), first);
+        });
+    }
+
+    private int[][] lanes(List<T> group) {
+        int n = nodes.size();
+        int[][] distance = new int[group.size()][n];
+        // seen: the searches that have reached a node. visit: the searches for which the node
+        // is on the current frontier. next: the searches reaching it on the coming level.
+        long[] seen = new long[n];
+        long[] visit = new long[n];
+        long[] next = new long[n];
+        IntList frontier = new IntList();
+        IntList reached = new IntList();
+        for (int j = 0; j < group.size(); j++) {
+            Arrays.fill(distance[j], -1);
+            int s = idOf(group.get(j));
+            if (s >= 0) {
+                if (visit[s] == 0) {
+                    frontier.add(s);
+                }
+                seen[s] |= 1L << j;
+                visit[s] |= 1L << j;
+                distance[j][s] = 0;
+            }
+        }
+        for (int level = 1; frontier.size() > 0; level++) {
+            for (int i = 0; i < frontier.size(); i++) {
+                int v = frontier.get(i);
+                long lanes = visit[v];
+                visit[v] = 0;
+                for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                    int w = neighbors[k];
+                    if (costs[k] == 0) {
+                        continue;
+                    }
+                    if (next[w] == 0) {
+                        reached.add(w);
+                    }
+                    next[w] |= lanes;
+                }
+            }
+            frontier.clear();
+            for (int i = 0; i < reached.size(); i++) {
+                int w = reached.get(i);
+                long fresh = next[w] & ~seen[w];
+                next[w] = 0;
+                if (fresh != 0) {
+                    seen[w] |= fresh;
+                    visit[w] = fresh;
+                    frontier.add(w);
+                    for (long bits = fresh; bits != 0; bits &= bits - 1) {
+                        distance[Long.numberOfTrailingZeros(bits)][w] = level;
+                    }
+                }
+            }
+            reached.clear();
+        }
+        return distance;
+    }
+
+    private int degree(int v) {
+        return offsets[v + 1] - offsets[v];
+    }
+
+    private int[] topDownStep(int[] frontier, AtomicLongArray visited, int[] distance, int[] parent, int level) {
+        int tasks = (frontier.length + PARALLEL_GRAIN - 1) / PARALLEL_GRAIN;
+        int[][] parts = IntStream.range(0, tasks).parallel().mapToObj(task -> {
+            IntList next = new IntList();
+            int end = Math.min(frontier.length, (task + 1) * PARALLEL_GRAIN);
+            for (int i = task * PARALLEL_GRAIN; i < end; i++) {
+                int v = frontier[i];
+                for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                    int w = neighbors[k];
+                    if (costs[k] != 0 && trySetBit(visited, w)) {
+                        distance[w] = level + 1;
+                        parent[w] = v;
+                        next.add(w);
+                    }
+                }
+            }
+            return next.toArray();
+        }).toArray(int[][]::new);
+        return concat(parts);
+    }
+
+    private int[] bottomUpStep(AtomicLongArray visited, int[] distance, int[] parent, int level) {
+        int n = nodes.size();
+        int tasks = (n + PARALLEL_GRAIN - 1) / PARALLEL_GRAIN;
+        int[][] parts = IntStream.range(0, tasks).parallel().mapToObj(task -> {
+            IntList next = new IntList();
+            int end = Math.min(n, (task + 1) * PARALLEL_GRAIN);
+            for (int v = task * PARALLEL_GRAIN; v < end; v++) {
+                if (distance[v] >= 0) {
+                    continue;
+                }
+                // Only frontier nodes have distance == level during this step.
+                for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                    int w = neighbors[k];
+                    if (distance[w] == level && costs[k] != 0) {
+                        trySetBit(visited, v);
+                        distance[v] = level + 1;
+                        parent[v] = w;
+                        next.add(v);
+                        break;
+                    }
+                }
+            }
+            return next.toArray();
+        }).toArray(int[][]::new);
+        return concat(parts);
+    }
+
+    private static boolean trySetBit(AtomicLongArray bits, int index) {
+        int word = index >>> 6;
+        long mask = 1L << index;
+        long current = bits.get(word);
+        while ((current & mask) == 0) {
+            if (bits.compareAndSet(word, current, current | mask)) {
+                return true;
+            }
+            current = bits.get(word);
+        }
+        return false;
+    }
+
+    private static int[] concat(int[][] parts) {
+        int length = 0;
+        for (int[] part : parts) {
+            length += part.length;
+        }
+        int[] all = new int[length];
+        int written = 0;
+        for (int[] part : parts) {
+            System.arraycopy(part, 0, all, written, part.length);
+            written += part.length;
+        }
+        return all;
+    }
+
+    /**
+     * En växande lista med int utan boxning.
+     */
+    static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int removeLast() {
+            return values[--size];
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+
+    private List<T> pathTo(int end, int[] parent) {
+        int length = 0;
+        for (int v = end; v != -1; v = parent[v]) {
+            length++;
+        }
+        T[] path = newArray(length);
+        for (int v = end; v != -1; v = parent[v]) {
+            path[--length] = nodes.get(v);
+        }
+        return new ArrayList<>(Arrays.asList(path));
+    }
+
+    @SuppressWarnings("unchecked")
+    private T[] newArray(int length) {
+        return (T[]) new Object[length];
+    }
+
+    /**
+     * Hittar den billigaste vägen mellan två noder med Dijkstras algoritm.
+     * Sökningen avbryts så fort slutnoden är klar, och avstånden ligger i
+     * arrayer som återanvänds mellan anropen.
+     *
+     * @param start startnoden.
+     * @param end   slutnoden.
+     * @return vägen och dess kostnad, med kostnaden -1 om ingen väg finns.
+     */
+    public ShortestPath<T> shortestPath(T start, T end) {
+        ensurePacked();
+        int s = idOf(start);
+        int e = idOf(end);
+        if (s < 0 || e < 0) {
+            return ShortestPath.none();
+        }
+        int mark = nextStamp();
+        distanceHeap.ensureCapacity(nodes.size());
+        // stamps[v] == mark means distance[v] is set for this query, the heap tells if it is final.
+        stamps[s] = mark;
+        distance[s] = 0;
+        parent[s] = -1;
+        distanceHeap.offer(s, 0);
+        boolean found = false;
+        while (!distanceHeap.isEmpty()) {
+            int v = distanceHeap.poll();
+            if (v == e) {
+                found = true;
+                break;
+            }
+            long base = distance[v];
+            for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                int w = neighbors[k];
+                if (costs[k] == 0) {
+                    continue;
+                }
+                long candidate = base + costs[k];
+                if (stamps[w] != mark) {
+                    stamps[w] = mark;
+                    distance[w] = candidate;
+                    parent[w] = v;
+                    distanceHeap.offer(w, candidate);
+                } else if (candidate < distance[w] && distanceHeap.contains(w)) {
+                    distance[w] = candidate;
+                    parent[w] = v;
+                    distanceHeap.offer(w, candidate);
+                }
+            }
+        }
+        distanceHeap.clear();
+        if (!found) {
+            return ShortestPath.none();
+        }
+        return new ShortestPath<>(pathTo(e, parent), distance[e]);
+    }
+
+    /**
+     * Returnerar en ny graf som utgör ett minimalt spännande träd till grafen,
+     * beräknat med Prims algoritm över en indexerad heap. Är grafen inte
+     * sammanhängande blir resultatet en spännande skog.
+     *
+     * @return en graf som representerar ett minimalt spännande träd.
+     */
+    @Override
+    public UndirectedGraph<T> minimumSpanningTree() {
+        ensurePacked();
+        if (hasTombstones()) {
+            return compact().minimumSpanningTree();
+        }
+        int n = nodes.size();
+        int mark = nextStamp();
+        heap.ensureCapacity(n);
+        EdgeColumns tree = new EdgeColumns(Math.max(n - 1, 0));
+        for (int root = 0; root < n; root++) {
+            if (stamps[root] == mark) {
+                continue;
+            }
+            parent[root] = -1;
+            heap.offer(root, 0);
+            while (!heap.isEmpty()) {
+                int v = heap.poll();
+                stamps[v] = mark;
+                if (parent[v] != -1) {
+                    tree.add(parent[v], v, (int) heap.keyOf(v));
+                }
+                for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                    int w = neighbors[k];
+                    if (stamps[w] != mark && heap.offer(w, costs[k])) {
+                        parent[w] = v;
+                    }
+                }
+            }
+        }
+        CompactUndirectedGraph<T> mst = new CompactUndirectedGraph<>(new HashMap<>(ids), new ArrayList<>(nodes), null, null, null, 0);
+        mst.pack(tree);
+        return mst;
+    }
+
+    /**
+     * Beräknar ett minimalt spännande träd parallellt med Borůvkas algoritm.
+     * I varje runda väljer varje komponent sin billigaste båge ut ur
+     * komponenten, och alla valda bågar slås ihop samtidigt i en union-find
+     * som uppdateras med compare-and-set. Antalet komponenter minst halveras
+     * per runda. Är grafen inte sammanhängande blir resultatet en spännande
+     * skog.
+     *
+     * @return en graf som representerar ett minimalt spännande träd.
+     */
+    public UndirectedGraph<T> parallelMinimumSpanningTree() {
+        ensurePacked();
+        if (hasTombstones()) {
+            return compact().parallelMinimumSpanningTree();
+        }
+        int n = nodes.size();
+        // Each undirected edge once, as the CSR entry of its lower endpoint.
+        int[] source = new int[neighbors.length];
+        int[] live = IntStream.range(0, n).parallel().flatMap(v -> {
+            IntStream.Builder entries = IntStream.builder();
+            for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                source[k] = v;
+                if (v < neighbors[k]) {
+                    entries.add(k);
+                }
+            }
+            return entries.build();
+        }).toArray();
+        AtomicIntegerArray components = new AtomicIntegerArray(n);
+        for (int v = 0; v < n; v++) {
+            components.set(v, v);
+        }
+        // Cheapest edge out of each component as cost << 32 | entry, so ties break the same way
+        // from both sides and the chosen edges can never form a cycle.
+        AtomicLongArray cheapest = new AtomicLongArray(n);
+        boolean[] inTree = new boolean[neighbors.length];
+        while (live.length > 0) {
+            for (int v = 0; v < n; v++) {
+                cheapest.set(v, Long.MAX_VALUE);
+            }
+            int[] edges = live;
+            IntStream.range(0, edges.length).parallel().forEach(i -> {
+                int k = edges[i];
+                int a = find(components, source[k]);
+                int b = find(components, neighbors[k]);
+                if (a != b) {
+                    long candidate = (long) costs[k] << 32 | k;
+                    lowerTo(cheapest, a, candidate);
+                    lowerTo(cheapest, b, candidate);
+                }
+            });
+            IntStream.range(0, n).parallel().forEach(v -> {
+                long chosen = cheapest.get(v);
+                if (chosen != Long.MAX_VALUE) {
+                    int k = (int) chosen;
+                    if (union(components, source[k], neighbors[k])) {
+                        inTree[k] = true;
+                    }
+                }
+            });
+            // Edges inside a component can never be chosen again.
+            live = Arrays.stream(edges).parallel()
+                    .filter(k -> find(components, source[k]) != find(components, neighbors[k]))
+                    .toArray();
+        }
+        EdgeColumns tree = new EdgeColumns(Math.max(n - 1, 0));
+        for (int k = 0; k < inTree.length; k++) {
+            if (inTree[k]) {
+                tree.add(source[k], neighbors[k], costs[k]);
+            }
+        }
+        CompactUndirectedGraph<T> mst = new CompactUndirectedGraph<>(new HashMap<>(ids), new ArrayList<>(nodes), null, null, null, 0);
+        mst.pack(tree);
+        return mst;
+    }
+
+    private static void lowerTo(AtomicLongArray values, int index, long candidate) {
+        long current = values.get(index);
+        while (candidate < current && !values.compareAndSet(index, current, candidate)) {
+            current = values.get(index);
+        }
+    }
+
+    /**
+     * Root of v's component, halving the path on the way.
+     */
+    private static int find(AtomicIntegerArray components, int v) {
+        while (true) {
+            int up = components.get(v);
+            if (up == v) {
+                return v;
+            }
+            int next = components.get(up);
+            if (next != up) {
+                components.compareAndSet(v, up, next);
+            }
+            v = up;
+        }
+    }
+
+    /**
+     * Merges the components of a and b. The larger root is always hung under the
+     * smaller, so concurrent unions can not create a cycle.
+     *
+     * @return false if they were already in the same component.
+     */
+    private static boolean union(AtomicIntegerArray components, int a, int b) {
+        while (true) {
+            int rootA = find(components, a);
+            int rootB = find(components, b);
+            if (rootA == rootB) {
+                return false;
+            }
+            int low = Math.min(rootA, rootB);
+            int high = Math.max(rootA, rootB);
+            if (components.compareAndSet(high, high, low)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+// @author joas47
+
+/**
+ * Implementeras av graferna i det här paketet som kan ge en
+ * {@link CompactUndirectedGraph} med samma noder och bågar. Används av index
+ * och motorer som ska kunna byggas från vilken av graferna som helst.
+ */
+interface CompactView<T> {
+
+    /**
+     * En kompakt graf med samma innehåll som den här grafen, med täta id:n
+     * som kan skilja sig från grafens egna. Får vara grafen själv, en cachad kopia eller en ny kopia, och
+     * ska inte ändras av anroparen. En kompakt graf klarar bara en tråd i
+     * taget, så en graf som ska kunna användas från flera trådar ger en ny
+     * kopia vid varje anrop.
+     */
+    CompactUndirectedGraph<T> compact();
+
+    /**
+     * Ett värde som ändras varje gång grafen ändras, så att den som har
+     * byggt något från {@link #compact()} kan se om det har blivit inaktuellt.
+     */
+    long version();
+
+    /**
+     * Grafens kompakta vy. Alla grafer i det här paketet har en, omslagen
+     * {@link CachingUndirectedGraph} och {@link InstrumentedUndirectedGraph}
+     * genom grafen de omsluter.
+     *
+     * @throws IllegalArgumentException om grafen är en annan implementation.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> CompactView<T> of(UndirectedGraph<T> graph) {
+        if (!(graph instanceof CompactView)) {
+            throw new IllegalArgumentException("Error: Unsupported graph implementation " + graph.getClass().getName() + "!");
+        }
+        return (CompactView<T>) graph;
+    }
+}
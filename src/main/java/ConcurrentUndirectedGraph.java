@@ -0,0 +1,314 @@
+// @author joas47
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * En trådsäker oriktad graf där många trådar kan lägga till noder och bågar
+ * samtidigt som andra trådar söker i grafen.
+ * <p>
+ * Varje båge lagras en gång i en tabell över oordnade nodpar, och
+ * {@link #connect} uppdaterar paret och bägge nodernas grannmängder inom
+ * samma {@link ConcurrentHashMap#compute}. Skrivningar till olika par låser
+ * alltså bara var sin del av tabellen. {@link #remove} tar först bort noden
+ * och sedan dess bågar en i taget, så en läsare kan under tiden se en del
+ * av bågarna kvar. Läsningar tar inga lås:
+ * {@link #isConnected} och {@link #getCost} läser paret och ser därför
+ * alltid samma båge från bägge håll, och sökningarna ser varje båge som den
+ * var någon gång under sökningen.
+ */
+public class ConcurrentUndirectedGraph<T> implements UndirectedGraph<T>, CompactView<T> {
+
+    private final ConcurrentHashMap<T, Set<T>> adjacency = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Pair<T>, Integer> costs = new ConcurrentHashMap<>();
+
+    private final LongAdder numberOfEdges = new LongAdder();
+    private final LongAdder totalWeight = new LongAdder();
+    private final AtomicLong modCount = new AtomicLong();
+
+    /**
+     * An unordered pair of nodes, equal to its mirror image.
+     */
+    private static final class Pair<T> {
+        final T a;
+        final T b;
+
+        Pair(T a, T b) {
+            this.a = a;
+            this.b = b;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Pair)) {
+                return false;
+            }
+            Pair<?> other = (Pair<?>) o;
+            return (a.equals(other.a) && b.equals(other.b)) || (a.equals(other.b) && b.equals(other.a));
+        }
+
+        @Override
+        public int hashCode() {
+            // Symmetric, and spread so (x, y) and (y, x) don't pile up with other sums.
+            int ha = a.hashCode();
+            int hb = b.hashCode();
+            return (ha + hb) * 31 + (ha ^ hb);
+        }
+    }
+
+    @Override
+    public int getNumberOfNodes() {
+        return adjacency.size();
+    }
+
+    @Override
+    public int getNumberOfEdges() {
+        return numberOfEdges.intValue();
+    }
+
+    @Override
+    public long getTotalWeight() {
+        return totalWeight.sum();
+    }
+
+    @Override
+    public boolean add(T newNode) {
+        if (adjacency.putIfAbsent(newNode, ConcurrentHashMap.newKeySet()) == null) {
+            modCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int addAll(Collection<? extends T> newNodes) {
+        int added = 0;
+        for (T node : newNodes) {
+            if (add(node)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Kopplar samman två noder. Bägge riktningarna, antalet bågar och den
+     * totala vikten uppdateras medan paret är låst, så ingen annan
+     * skrivning till samma par kan komma emellan.
+     */
+    @Override
+    public boolean connect(T node1, T node2, int cost) {
+        if (cost <= 0) {
+            return false;
+        }
+        Set<T> from = adjacency.get(node1);
+        Set<T> to = adjacency.get(node2);
+        if (from == null || to == null) {
+            return false;
+        }
+        costs.compute(new Pair<>(node1, node2), (pair, old) -> {
+            if (old == null) {
+                from.add(node2);
+                to.add(node1);
+                numberOfEdges.increment();
+                totalWeight.add(cost);
+            } else {
+                totalWeight.add(cost - old);
+            }
+            return cost;
+        });
+        // A concurrent remove either sees the new edge in the neighbour sets, or is seen here.
+        if (adjacency.get(node1) != from || adjacency.get(node2) != to) {
+            unlink(node1, node2, from, to);
+            return false;
+        }
+        modCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Tar bort en nod. Noden försvinner först, så att inga nya bågar kan
+     * kopplas till den, och sedan tas bågarna bort en i taget.
+     */
+    @Override
+    public boolean remove(T node) {
+        Set<T> neighbors = adjacency.remove(node);
+        if (neighbors == null) {
+            return false;
+        }
+        for (T neighbor : neighbors) {
+            unlink(node, neighbor, neighbors, adjacency.get(neighbor));
+        }
+        modCount.incrementAndGet();
+        return true;
+    }
+
+    @Override
+    public boolean disconnect(T node1, T node2) {
+        Set<T> from = adjacency.get(node1);
+        Set<T> to = adjacency.get(node2);
+        if (from == null || to == null || !unlink(node1, node2, from, to)) {
+            return false;
+        }
+        modCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Removes the pair and, under the same lock, the nodes from each other's sets. Either set
+     * may be null if that node is already gone.
+     *
+     * @return false if there was no edge.
+     */
+    private boolean unlink(T node1, T node2, Set<T> from, Set<T> to) {
+        boolean[] removed = new boolean[1];
+        costs.computeIfPresent(new Pair<>(node1, node2), (pair, old) -> {
+            if (from != null) {
+                from.remove(node2);
+            }
+            if (to != null) {
+                to.remove(node1);
+            }
+            numberOfEdges.decrement();
+            totalWeight.add(-old);
+            removed[0] = true;
+            return null;
+        });
+        return removed[0];
+    }
+
+    @Override
+    public int connectAll(List<? extends T> from, List<? extends T> to, int[] costs) {
+        if (from.size() != to.size() || from.size() != costs.length) {
+            throw new IllegalArgumentException("Error: Edge columns must have the same length!");
+        }
+        int connected = 0;
+        for (int i = 0; i < costs.length; i++) {
+            if (connect(from.get(i), to.get(i), costs[i])) {
+                connected++;
+            }
+        }
+        return connected;
+    }
+
+    @Override
+    public boolean isConnected(T node1, T node2) {
+        return costs.containsKey(new Pair<>(node1, node2));
+    }
+
+    @Override
+    public int getCost(T node1, T node2) {
+        return costs.getOrDefault(new Pair<>(node1, node2), -1);
+    }
+
+    /**
+     * Gör en djupet-först-sökning utan lås. Sökningens tillstånd ligger i
+     * anropet, så många sökningar kan köras samtidigt.
+     */
+    @Override
+    public List<T> depthFirstSearch(T start, T end) {
+        if (!adjacency.containsKey(start) || !adjacency.containsKey(end)) {
+            return new LinkedList<>();
+        }
+        Map<T, T> via = new HashMap<>();
+        via.put(start, start);
+        Deque<T> stack = new ArrayDeque<>();
+        stack.push(start);
+        while (!stack.isEmpty()) {
+            T node = stack.pop();
+            if (node.equals(end)) {
+                return gatherPath(via, start, end);
+            }
+            for (T neighbor : neighborsOf(node)) {
+                if (!via.containsKey(neighbor)) {
+                    via.put(neighbor, node);
+                    stack.push(neighbor);
+                }
+            }
+        }
+        return new LinkedList<>();
+    }
+
+    /**
+     * Gör en bredden-först-sökning utan lås. Sökningens tillstånd ligger i
+     * anropet, så många sökningar kan köras samtidigt.
+     */
+    @Override
+    public List<T> breadthFirstSearch(T start, T end) {
+        if (!adjacency.containsKey(start) || !adjacency.containsKey(end)) {
+            return new LinkedList<>();
+        }
+        Map<T, T> via = new HashMap<>();
+        via.put(start, start);
+        ArrayDeque<T> queue = new ArrayDeque<>();
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            T node = queue.poll();
+            if (node.equals(end)) {
+                return gatherPath(via, start, end);
+            }
+            for (T neighbor : neighborsOf(node)) {
+                if (!via.containsKey(neighbor)) {
+                    via.put(neighbor, node);
+                    queue.add(neighbor);
+                }
+            }
+        }
+        return new LinkedList<>();
+    }
+
+    /**
+     * The neighbours of a node, or none if a concurrent remove has already taken it out
+     * while it was still in a neighbour set or in the search frontier.
+     */
+    private Set<T> neighborsOf(T node) {
+        Set<T> neighbors = adjacency.get(node);
+        return neighbors == null ? Collections.emptySet() : neighbors;
+    }
+
+    private static <T> LinkedList<T> gatherPath(Map<T, T> via, T start, T end) {
+        LinkedList<T> path = new LinkedList<>();
+        for (T where = end; !where.equals(start); where = via.get(where)) {
+            path.addFirst(where);
+        }
+        path.addFirst(start);
+        return path;
+    }
+
+    /**
+     * Returnerar ett minimalt spännande träd (en skog om grafen inte är
+     * sammanhängande), beräknat på en egen kompakt kopia av grafen, så att
+     * flera trådar kan beräkna träd samtidigt.
+     *
+     * @return en graf som representerar ett minimalt spännande träd.
+     */
+    @Override
+    public UndirectedGraph<T> minimumSpanningTree() {
+        return compact().minimumSpanningTree();
+    }
+
+    /**
+     * En ny kompakt kopia av grafen vid varje anrop, byggd medan andra trådar
+     * kan fortsätta att ändra grafen. En kompakt graf håller sina sökningars
+     * tillstånd i instansen och klarar bara en tråd i taget, så kopian delas
+     * inte mellan anropare: varje index, motor eller tråd får sin egen.
+     */
+    @Override
+    public CompactUndirectedGraph<T> compact() {
+        CompactUndirectedGraph.Builder<T> builder = new CompactUndirectedGraph.Builder<>(adjacency.size(), costs.size());
+        for (T node : adjacency.keySet()) {
+            builder.add(node);
+        }
+        for (Map.Entry<Pair<T>, Integer> entry : costs.entrySet()) {
+            builder.connect(entry.getKey().a, entry.getKey().b, entry.getValue());
+        }
+        return builder.build();
+    }
+
+    @Override
+    public long version() {
+        return modCount.get();
+    }
+}
@@ -0,0 +1,486 @@
+// @author joas47
+
+import java.util.*;
+
+/**
+ * En contraction hierarchy för mycket snabba frågor om billigaste väg i stora
+ * grafer som sällan ändras.
+ * <p>
+ * Vid förberedelsen kontraheras noderna en i taget, i ordning efter hur
+ * viktiga de verkar (edge difference plus antal redan kontraherade grannar,
+ * med lat omvärdering). När en nod tas bort läggs genvägar in mellan de
+ * grannar vars billigaste väg gick genom noden. En fråga är sedan en
+ * dubbelriktad Dijkstra som bara följer bågar uppåt i ordningen, och
+ * genvägarna i svaret packas upp till hela vägen i den ursprungliga grafen.
+ * <p>
+ * Hierarkin är en fristående kopia, med egna id för noderna; senare
+ * ändringar i grafen den byggdes från syns inte. Genvägarnas kostnader
+ * lagras som long, så summor av stora kostnader räknas rätt. Frågorna
+ * återanvänder arbetsminne och får inte köras från flera trådar samtidigt.
+ */
+public class ContractionHierarchy<T> {
+
+    private static final long UNREACHABLE = Long.MAX_VALUE;
+
+    // Witness searches give up after this many settled nodes and add the shortcut anyway,
+    // which is always correct, just not minimal.
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+
+    // Own copy of the node ids, the source graph may renumber its nodes later.
+    private final List<T> nodes;
+    private final Map<T, Integer> ids;
+    private final int numberOfNodes;
+
+    // Upward graph in CSR form: for each node the edges to higher ranked neighbours. mid is
+    // the contracted node a shortcut bypasses, or -1 for an original edge.
+    private final int[] upOffsets;
+    private final int[] upTarget;
+    private final long[] upCost;
+    private final int[] upMid;
+    private final int numberOfShortcuts;
+
+    private final SearchSide forward;
+    private final SearchSide backward;
+
+    private static final class SearchSide {
+        final long[] distance;
+        final int[] stamps;
+        final int[] parent;
+        final int[] parentMid;
+        final IndexedMinHeap heap;
+
+        SearchSide(int n) {
+            distance = new long[n];
+            stamps = new int[n];
+            parent = new int[n];
+            parentMid = new int[n];
+            heap = new IndexedMinHeap(n, 4);
+        }
+
+        boolean reached(int v, int mark) {
+            return stamps[v] == mark;
+        }
+    }
+
+    private int stamp;
+
+    private ContractionHierarchy(List<T> nodes, int[] upOffsets, int[] upTarget, long[] upCost, int[] upMid, int numberOfShortcuts) {
+        this.nodes = nodes;
+        this.ids = new HashMap<>(nodes.size() * 2);
+        for (int id = 0; id < nodes.size(); id++) {
+            ids.put(nodes.get(id), id);
+        }
+        this.numberOfNodes = upOffsets.length - 1;
+        this.upOffsets = upOffsets;
+        this.upTarget = upTarget;
+        this.upCost = upCost;
+        this.upMid = upMid;
+        this.numberOfShortcuts = numberOfShortcuts;
+        this.forward = new SearchSide(numberOfNodes);
+        this.backward = new SearchSide(numberOfNodes);
+    }
+
+    /**
+     * Bygger en hierarki från en ögonblicksbild av grafen.
+     *
+     * @param graph grafen, vilken som helst av graferna i det här paketet.
+     * @return hierarkin.
+     */
+    public static <T> ContractionHierarchy<T> build(UndirectedGraph<T> graph) {
+        return new Contractor<>(CompactView.of(graph).compact()).run();
+    }
+
+    /**
+     * Antalet genvägar som lades till vid förberedelsen.
+     */
+    public int getNumberOfShortcuts() {
+        return numberOfShortcuts;
+    }
+
+    /**
+     * Hittar den billigaste vägen mellan två noder.
+     *
+     * @param start startnoden.
+     * @param end   slutnoden.
+     * @return vägen, uppackad till noderna i den ursprungliga grafen, och dess
+     * kostnad. Kostnaden är -1 om ingen väg finns.
+     */
+    public ShortestPath<T> shortestPath(T start, T end) {
+        Integer startId = ids.get(start);
+        Integer endId = ids.get(end);
+        if (startId == null || endId == null) {
+            return ShortestPath.none();
+        }
+        int s = startId;
+        int t = endId;
+        if (stamp == Integer.MAX_VALUE) {
+            Arrays.fill(forward.stamps, 0);
+            Arrays.fill(backward.stamps, 0);
+            stamp = 0;
+        }
+        int mark = ++stamp;
+        seed(forward, s, mark);
+        seed(backward, t, mark);
+        long best = UNREACHABLE;
+        int meet = -1;
+        while (true) {
+            boolean forwardLive = !forward.heap.isEmpty() && forward.heap.keyOf(forward.heap.peek()) < best;
+            boolean backwardLive = !backward.heap.isEmpty() && backward.heap.keyOf(backward.heap.peek()) < best;
+            if (!forwardLive && !backwardLive) {
+                break;
+            }
+            SearchSide side;
+            SearchSide other;
+            if (forwardLive && (!backwardLive || forward.heap.keyOf(forward.heap.peek()) <= backward.heap.keyOf(backward.heap.peek()))) {
+                side = forward;
+                other = backward;
+            } else {
+                side = backward;
+                other = forward;
+            }
+            int v = side.heap.poll();
+            long base = side.distance[v];
+            if (other.reached(v, mark) && base + other.distance[v] < best) {
+                best = base + other.distance[v];
+                meet = v;
+            }
+            for (int k = upOffsets[v]; k < upOffsets[v + 1]; k++) {
+                int w = upTarget[k];
+                long candidate = base + upCost[k];
+                if (!side.reached(w, mark) || candidate < side.distance[w]) {
+                    side.stamps[w] = mark;
+                    side.distance[w] = candidate;
+                    side.parent[w] = v;
+                    side.parentMid[w] = upMid[k];
+                    side.heap.offer(w, candidate);
+                }
+            }
+        }
+        forward.heap.clear();
+        backward.heap.clear();
+        if (meet < 0) {
+            return ShortestPath.none();
+        }
+        CompactUndirectedGraph.IntList route = new CompactUndirectedGraph.IntList();
+        // Forward half: collect the tree edges from meet down to s, then unpack them in order.
+        CompactUndirectedGraph.IntList chain = new CompactUndirectedGraph.IntList();
+        for (int v = meet; v != s; v = forward.parent[v]) {
+            chain.add(v);
+        }
+        route.add(s);
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            int v = chain.get(i);
+            unpack(forward.parent[v], v, forward.parentMid[v], route);
+        }
+        for (int v = meet; v != t; v = backward.parent[v]) {
+            unpack(v, backward.parent[v], backward.parentMid[v], route);
+        }
+        List<T> path = new ArrayList<>(route.size());
+        for (int i = 0; i < route.size(); i++) {
+            path.add(nodes.get(route.get(i)));
+        }
+        return new ShortestPath<>(path, best);
+    }
+
+    private static void seed(SearchSide side, int v, int mark) {
+        side.stamps[v] = mark;
+        side.distance[v] = 0;
+        side.parent[v] = -1;
+        side.heap.offer(v, 0);
+    }
+
+    /**
+     * Appends the nodes after a up to and including b along the edge a-b, expanding shortcuts.
+     */
+    private void unpack(int a, int b, int mid, CompactUndirectedGraph.IntList out) {
+        Deque<int[]> stack = new ArrayDeque<>();
+        stack.push(new int[]{a, b, mid});
+        while (!stack.isEmpty()) {
+            int[] edge = stack.pop();
+            if (edge[2] < 0) {
+                out.add(edge[1]);
+            } else {
+                int m = edge[2];
+                // Both halves of a shortcut are upward edges of the bypassed node.
+                stack.push(new int[]{m, edge[1], midBetween(m, edge[1])});
+                stack.push(new int[]{edge[0], m, midBetween(m, edge[0])});
+            }
+        }
+    }
+
+    private int midBetween(int lower, int higher) {
+        for (int k = upOffsets[lower]; k < upOffsets[lower + 1]; k++) {
+            if (upTarget[k] == higher) {
+                return upMid[k];
+            }
+        }
+        throw new IllegalStateException("Missing edge in contraction hierarchy");
+    }
+
+    /**
+     * A growable long array, like {@link CompactUndirectedGraph.IntList}.
+     */
+    private static final class LongList {
+        private long[] values = new long[16];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long get(int index) {
+            return values[index];
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+
+    /**
+     * The preprocessing: contracts all nodes and records the upward edges.
+     */
+    private static final class Contractor<T> {
+
+        private final CompactUndirectedGraph<T> graph;
+        private final int n;
+
+        // Working adjacency, original edges plus shortcuts, as growable parallel arrays.
+        private final int[][] to;
+        private final long[][] cost;
+        private final int[][] mid;
+        private final int[] size;
+
+        private final boolean[] contracted;
+        private final int[] deletedNeighbors;
+
+        private final CompactUndirectedGraph.IntList upFrom = new CompactUndirectedGraph.IntList();
+        private final CompactUndirectedGraph.IntList upTo = new CompactUndirectedGraph.IntList();
+        private final LongList upCost = new LongList();
+        private final CompactUndirectedGraph.IntList upMid = new CompactUndirectedGraph.IntList();
+        private int shortcuts;
+
+        // Witness search state.
+        private final long[] distance;
+        private final int[] stamps;
+        private int stamp;
+        private final IndexedMinHeap heap;
+
+        // Scratch for the neighbours of the node being contracted.
+        private final CompactUndirectedGraph.IntList around = new CompactUndirectedGraph.IntList();
+        private final LongList aroundCost = new LongList();
+
+        Contractor(CompactUndirectedGraph<T> graph) {
+            this.graph = graph;
+            n = graph.getNumberOfNodes();
+            int[] offsets = graph.offsets();
+            int[] neighbors = graph.neighbors();
+            int[] costs = graph.costs();
+            to = new int[n][];
+            cost = new long[n][];
+            mid = new int[n][];
+            size = new int[n];
+            for (int v = 0; v < n; v++) {
+                int degree = offsets[v + 1] - offsets[v];
+                to[v] = new int[Math.max(degree, 2)];
+                cost[v] = new long[to[v].length];
+                mid[v] = new int[to[v].length];
+                for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                    // Self-loops never lie on a shortest path.
+                    if (neighbors[k] != v) {
+                        to[v][size[v]] = neighbors[k];
+                        cost[v][size[v]] = costs[k];
+                        mid[v][size[v]] = -1;
+                        size[v]++;
+                    }
+                }
+            }
+            contracted = new boolean[n];
+            deletedNeighbors = new int[n];
+            distance = new long[n];
+            stamps = new int[n];
+            heap = new IndexedMinHeap(n, 4);
+        }
+
+        ContractionHierarchy<T> run() {
+            IndexedMinHeap order = new IndexedMinHeap(n);
+            for (int v = 0; v < n; v++) {
+                order.offer(v, priority(v));
+            }
+            while (!order.isEmpty()) {
+                int v = order.poll();
+                long current = priority(v);
+                if (!order.isEmpty() && current > order.keyOf(order.peek())) {
+                    // Lazy update: the stored priority was stale, try again later.
+                    order.offer(v, current);
+                    continue;
+                }
+                contract(v, false);
+            }
+            return finish();
+        }
+
+        /**
+         * Upward edges are recorded grouped by their lower node in contraction order; a counting
+         * pass sorts them into node order.
+         */
+        private ContractionHierarchy<T> finish() {
+            int[] offsets = new int[n + 1];
+            for (int i = 0; i < upFrom.size(); i++) {
+                offsets[upFrom.get(i) + 1]++;
+            }
+            for (int v = 0; v < n; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            int[] fill = Arrays.copyOf(offsets, n);
+            int count = upFrom.size();
+            int[] targets = new int[count];
+            long[] costs = new long[count];
+            int[] mids = new int[count];
+            for (int i = 0; i < count; i++) {
+                int k = fill[upFrom.get(i)]++;
+                targets[k] = upTo.get(i);
+                costs[k] = upCost.get(i);
+                mids[k] = upMid.get(i);
+            }
+            List<T> nodes = new ArrayList<>(n);
+            for (int v = 0; v < n; v++) {
+                nodes.add(graph.nodeAt(v));
+            }
+            return new ContractionHierarchy<>(nodes, offsets, targets, costs, mids, shortcuts);
+        }
+
+        private long priority(int v) {
+            int added = contract(v, true);
+            return (long) added - around.size() + deletedNeighbors[v];
+        }
+
+        /**
+         * Contracts v, or with simulate only counts the shortcuts it would need.
+         */
+        private int contract(int v, boolean simulate) {
+            around.clear();
+            aroundCost.clear();
+            for (int i = 0; i < size[v]; i++) {
+                int u = to[v][i];
+                if (!contracted[u]) {
+                    around.add(u);
+                    aroundCost.add(cost[v][i]);
+                }
+            }
+            int added = 0;
+            int count = around.size();
+            for (int i = 0; i < count; i++) {
+                int u = around.get(i);
+                long limit = -1;
+                for (int j = i + 1; j < count; j++) {
+                    limit = Math.max(limit, aroundCost.get(i) + aroundCost.get(j));
+                }
+                if (limit < 0) {
+                    continue;
+                }
+                int mark = witnessSearch(u, v, limit);
+                for (int j = i + 1; j < count; j++) {
+                    int w = around.get(j);
+                    long via = aroundCost.get(i) + aroundCost.get(j);
+                    if (stamps[w] != mark || distance[w] > via) {
+                        added++;
+                        if (!simulate) {
+                            addEdge(u, w, via, v);
+                            shortcuts++;
+                        }
+                    }
+                }
+            }
+            if (!simulate) {
+                for (int i = 0; i < count; i++) {
+                    int u = around.get(i);
+                    upFrom.add(v);
+                    upTo.add(u);
+                    upCost.add(aroundCost.get(i));
+                    upMid.add(midOf(v, u));
+                    deletedNeighbors[u]++;
+                }
+                contracted[v] = true;
+            }
+            return added;
+        }
+
+        private int midOf(int v, int u) {
+            for (int i = 0; i < size[v]; i++) {
+                if (to[v][i] == u) {
+                    return mid[v][i];
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Bounded Dijkstra from source among uncontracted nodes, skipping the node being
+         * contracted. Returns the stamp marking the nodes it reached.
+         */
+        private int witnessSearch(int source, int skip, long limit) {
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(stamps, 0);
+                stamp = 1;
+            }
+            int mark = stamp;
+            stamps[source] = mark;
+            distance[source] = 0;
+            heap.offer(source, 0);
+            int settled = 0;
+            while (!heap.isEmpty() && settled < WITNESS_SETTLE_LIMIT) {
+                int v = heap.poll();
+                settled++;
+                long base = distance[v];
+                if (base > limit) {
+                    break;
+                }
+                for (int i = 0; i < size[v]; i++) {
+                    int w = to[v][i];
+                    if (w == skip || contracted[w]) {
+                        continue;
+                    }
+                    long candidate = base + cost[v][i];
+                    if (stamps[w] != mark || candidate < distance[w]) {
+                        stamps[w] = mark;
+                        distance[w] = candidate;
+                        heap.offer(w, candidate);
+                    }
+                }
+            }
+            heap.clear();
+            return mark;
+        }
+
+        private void addEdge(int u, int w, long c, int m) {
+            addHalf(u, w, c, m);
+            addHalf(w, u, c, m);
+        }
+
+        private void addHalf(int u, int w, long c, int m) {
+            for (int i = 0; i < size[u]; i++) {
+                if (to[u][i] == w) {
+                    if (c < cost[u][i]) {
+                        cost[u][i] = c;
+                        mid[u][i] = m;
+                    }
+                    return;
+                }
+            }
+            if (size[u] == to[u].length) {
+                int capacity = size[u] * 2;
+                to[u] = Arrays.copyOf(to[u], capacity);
+                cost[u] = Arrays.copyOf(cost[u], capacity);
+                mid[u] = Arrays.copyOf(mid[u], capacity);
+            }
+            to[u][size[u]] = w;
+            cost[u][size[u]] = c;
+            mid[u][size[u]] = m;
+            size[u]++;
+        }
+    }
+}
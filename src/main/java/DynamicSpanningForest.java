@@ -0,0 +1,446 @@
+// @author joas47
+
+import java.util.*;
+
+/**
+ * Ett minimalt spännande träd (en skog om grafen inte är sammanhängande) som
+ * hålls aktuellt medan bågar läggs till i en {@link MyUndirectedGraph} eller
+ * får lägre kostnad, utan att hela trädet räknas om.
+ * <p>
+ * Skogen lagras som ett link-cut-träd där varje båge i skogen är en egen nod
+ * med bågens kostnad. En ny båge (u, v) som sluter en cykel ersätter den
+ * dyraste bågen på vägen mellan u och v om den är billigare, annars hamnar
+ * den utanför skogen. Båda fallen kostar amorterat O(log n). Om kostnaden
+ * för en båge i skogen höjs, eller om grafen har ändrats utan att gå genom
+ * skogen, byggs skogen om från grafen vid nästa anrop.
+ * <p>
+ * Total vikt och antal bågar kan läsas i konstant tid.
+ */
+public class DynamicSpanningForest<T> {
+
+    private static final int NONE = -1;
+
+    private final MyUndirectedGraph<T> graph;
+    private long version;
+
+    // Link-cut tree over a pool of nodes: one per graph node and one per forest edge.
+    // up is the splay parent or, for the root of a splay tree, the path-parent.
+    private int[] left = new int[0];
+    private int[] right = new int[0];
+    private int[] up = new int[0];
+    private boolean[] flip = new boolean[0];
+    // Edge cost for edge nodes, NONE for graph nodes.
+    private int[] weight = new int[0];
+    // Heaviest edge node in the splay subtree, or NONE.
+    private int[] heaviest = new int[0];
+    private int[] edgeFrom = new int[0];
+    private int[] edgeTo = new int[0];
+    private int poolSize;
+    private final CompactUndirectedGraph.IntList free = new CompactUndirectedGraph.IntList();
+
+    // Pool node of each graph node, by graph id.
+    private int[] vertexNode = new int[0];
+    private int vertices;
+
+    // Pool node of each forest edge, keyed by the pair of graph ids.
+    private final Map<Long, Integer> forestEdges = new HashMap<>();
+    private long totalWeight;
+
+    private final CompactUndirectedGraph.IntList path = new CompactUndirectedGraph.IntList();
+
+    /**
+     * Bygger en skog för grafens nuvarande bågar.
+     *
+     * @param graph grafen som skogen följer.
+     */
+    public DynamicSpanningForest(MyUndirectedGraph<T> graph) {
+        this.graph = graph;
+        rebuild();
+    }
+
+    /**
+     * Lägger till en nod i grafen.
+     *
+     * @return false om noden redan finns.
+     */
+    public boolean add(T node) {
+        refreshIfStale();
+        boolean added = graph.add(node);
+        version = graph.version();
+        return added;
+    }
+
+    /**
+     * Kopplar samman två noder i grafen, precis som
+     * {@link MyUndirectedGraph#connect}, och uppdaterar skogen.
+     *
+     * @param from den ena noden.
+     * @param to   den andra noden.
+     * @param cost kostnaden, som måste vara >0.
+     * @return true om bägge noderna finns i grafen och kunde kopplas ihop.
+     */
+    public boolean connect(T from, T to, int cost) {
+        refreshIfStale();
+        int oldCost = graph.getCost(from, to);
+        if (!graph.connect(from, to, cost)) {
+            return false;
+        }
+        version = graph.version();
+        int a = graph.idOf(from);
+        int b = graph.idOf(to);
+        if (a == b) {
+            // A self-loop never belongs to a spanning tree.
+            return true;
+        }
+        Integer edge = forestEdges.get(key(a, b));
+        if (edge == null) {
+            insert(a, b, cost);
+        } else if (cost < oldCost) {
+            splay(edge);
+            weight[edge] = cost;
+            pull(edge);
+            totalWeight += cost - oldCost;
+        } else if (cost > oldCost) {
+            // A cheaper edge elsewhere may replace this one now; finding it needs all edges.
+            rebuild();
+        }
+        return true;
+    }
+
+    /**
+     * Den totala vikten för bågarna i skogen.
+     */
+    public long getTotalWeight() {
+        refreshIfStale();
+        return totalWeight;
+    }
+
+    /**
+     * Antalet bågar i skogen.
+     */
+    public int getNumberOfEdges() {
+        refreshIfStale();
+        return forestEdges.size();
+    }
+
+    /**
+     * Kostnaden för bågen mellan två noder om den ingår i skogen.
+     *
+     * @return kostnaden, eller -1 om bågen inte ingår i skogen.
+     */
+    public int getCost(T from, T to) {
+        refreshIfStale();
+        int a = graph.idOf(from);
+        int b = graph.idOf(to);
+        if (a < 0 || b < 0) {
+            return -1;
+        }
+        Integer edge = forestEdges.get(key(a, b));
+        return edge == null ? -1 : weight[edge];
+    }
+
+    /**
+     * Berättar om två noder ligger i samma träd i skogen, dvs. i samma
+     * komponent i grafen.
+     */
+    public boolean sameTree(T from, T to) {
+        refreshIfStale();
+        int a = graph.idOf(from);
+        int b = graph.idOf(to);
+        if (a < 0 || b < 0) {
+            return false;
+        }
+        return a == b || findRoot(nodeOf(a)) == findRoot(nodeOf(b));
+    }
+
+    /**
+     * Returnerar en skrivskyddad kopia av skogen i dess nuvarande skick. Till
+     * skillnad från övriga metoder tar den linjär tid.
+     *
+     * @return en graf som representerar ett minimalt spännande träd.
+     */
+    public UndirectedGraph<T> minimumSpanningTree() {
+        refreshIfStale();
+        int n = graph.idBound();
+        // Forest adjacency in CSR form, then a BFS per tree to root it.
+        int[] offsets = new int[n + 1];
+        for (int edge : forestEdges.values()) {
+            offsets[edgeFrom[edge] + 1]++;
+            offsets[edgeTo[edge] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] fill = Arrays.copyOf(offsets, n);
+        int[] adjacent = new int[offsets[n]];
+        for (int edge : forestEdges.values()) {
+            adjacent[fill[edgeFrom[edge]]++] = edge;
+            adjacent[fill[edgeTo[edge]]++] = edge;
+        }
+        int[] parent = new int[n];
+        int[] cost = new int[n];
+        int[] depth = new int[n];
+        boolean[] seen = new boolean[n];
+        int[] queue = new int[n];
+        for (int root = 0; root < n; root++) {
+            if (seen[root]) {
+                continue;
+            }
+            seen[root] = true;
+            parent[root] = -1;
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = root;
+            while (head < tail) {
+                int v = queue[head++];
+                for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                    int edge = adjacent[k];
+                    int w = edgeFrom[edge] == v ? edgeTo[edge] : edgeFrom[edge];
+                    if (!seen[w]) {
+                        seen[w] = true;
+                        parent[w] = v;
+                        cost[w] = weight[edge];
+                        depth[w] = depth[v] + 1;
+                        queue[tail++] = w;
+                    }
+                }
+            }
+        }
+        return SpanningTree.withoutGaps(new ArrayList<>(graph.nodes()), parent, cost, depth);
+    }
+
+    private void refreshIfStale() {
+        if (graph.version() != version) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Starts over from the graph's current edges, inserting them one at a time.
+     */
+    private void rebuild() {
+        poolSize = 0;
+        free.clear();
+        vertices = 0;
+        forestEdges.clear();
+        totalWeight = 0;
+        List<T> nodes = graph.nodes();
+        for (int a = 0; a < nodes.size(); a++) {
+            if (nodes.get(a) == null) {
+                continue;
+            }
+            for (Edge<T> edge : graph.edgesFrom(nodes.get(a))) {
+                int b = edge.getDestinationId();
+                if (a < b) {
+                    insert(a, b, edge.getCost());
+                }
+            }
+        }
+        version = graph.version();
+    }
+
+    private void insert(int a, int b, int cost) {
+        int u = nodeOf(a);
+        int v = nodeOf(b);
+        if (findRoot(u) == findRoot(v)) {
+            // The new edge closes a cycle: keep it only if it beats the heaviest edge on it.
+            makeRoot(u);
+            access(v);
+            int worst = heaviest[v];
+            if (weight[worst] <= cost) {
+                return;
+            }
+            removeEdge(worst);
+        }
+        int edge = allocate(cost);
+        edgeFrom[edge] = a;
+        edgeTo[edge] = b;
+        link(u, edge);
+        link(edge, v);
+        forestEdges.put(key(a, b), edge);
+        totalWeight += cost;
+    }
+
+    private void removeEdge(int edge) {
+        cut(nodeOf(edgeFrom[edge]), edge);
+        cut(edge, nodeOf(edgeTo[edge]));
+        forestEdges.remove(key(edgeFrom[edge], edgeTo[edge]));
+        totalWeight -= weight[edge];
+        free.add(edge);
+    }
+
+    private static long key(int a, int b) {
+        return (long) Math.min(a, b) << 32 | Math.max(a, b);
+    }
+
+    private int nodeOf(int id) {
+        // Graph nodes get pool nodes lazily, in id order.
+        if (id >= vertexNode.length) {
+            vertexNode = Arrays.copyOf(vertexNode, Math.max(id + 1, vertexNode.length * 2));
+        }
+        while (vertices <= id) {
+            vertexNode[vertices++] = allocate(NONE);
+        }
+        return vertexNode[id];
+    }
+
+    private int allocate(int cost) {
+        int x;
+        if (free.size() > 0) {
+            x = free.removeLast();
+        } else {
+            if (poolSize == left.length) {
+                int capacity = Math.max(16, poolSize * 2);
+                left = Arrays.copyOf(left, capacity);
+                right = Arrays.copyOf(right, capacity);
+                up = Arrays.copyOf(up, capacity);
+                flip = Arrays.copyOf(flip, capacity);
+                weight = Arrays.copyOf(weight, capacity);
+                heaviest = Arrays.copyOf(heaviest, capacity);
+                edgeFrom = Arrays.copyOf(edgeFrom, capacity);
+                edgeTo = Arrays.copyOf(edgeTo, capacity);
+            }
+            x = poolSize++;
+        }
+        left[x] = NONE;
+        right[x] = NONE;
+        up[x] = NONE;
+        flip[x] = false;
+        weight[x] = cost;
+        heaviest[x] = cost == NONE ? NONE : x;
+        return x;
+    }
+
+    // Link-cut tree primitives, after Sleator and Tarjan.
+
+    private boolean isSplayRoot(int x) {
+        int p = up[x];
+        return p == NONE || (left[p] != x && right[p] != x);
+    }
+
+    private void push(int x) {
+        if (flip[x]) {
+            int l = left[x];
+            left[x] = right[x];
+            right[x] = l;
+            if (left[x] != NONE) {
+                flip[left[x]] ^= true;
+            }
+            if (right[x] != NONE) {
+                flip[right[x]] ^= true;
+            }
+            flip[x] = false;
+        }
+    }
+
+    private void pull(int x) {
+        int best = weight[x] == NONE ? NONE : x;
+        best = heavier(best, left[x] == NONE ? NONE : heaviest[left[x]]);
+        best = heavier(best, right[x] == NONE ? NONE : heaviest[right[x]]);
+        heaviest[x] = best;
+    }
+
+    private int heavier(int a, int b) {
+        if (a == NONE) {
+            return b;
+        }
+        if (b == NONE) {
+            return a;
+        }
+        return weight[b] > weight[a] ? b : a;
+    }
+
+    private void rotate(int x) {
+        int p = up[x];
+        int g = up[p];
+        if (!isSplayRoot(p)) {
+            if (left[g] == p) {
+                left[g] = x;
+            } else {
+                right[g] = x;
+            }
+        }
+        up[x] = g;
+        if (left[p] == x) {
+            left[p] = right[x];
+            if (right[x] != NONE) {
+                up[right[x]] = p;
+            }
+            right[x] = p;
+        } else {
+            right[p] = left[x];
+            if (left[x] != NONE) {
+                up[left[x]] = p;
+            }
+            left[x] = p;
+        }
+        up[p] = x;
+        pull(p);
+        pull(x);
+    }
+
+    private void splay(int x) {
+        // Pending flips must be pushed top-down before rotating.
+        path.clear();
+        path.add(x);
+        for (int y = x; !isSplayRoot(y); y = up[y]) {
+            path.add(up[y]);
+        }
+        for (int i = path.size() - 1; i >= 0; i--) {
+            push(path.get(i));
+        }
+        while (!isSplayRoot(x)) {
+            int p = up[x];
+            if (!isSplayRoot(p)) {
+                int g = up[p];
+                boolean zigZig = (left[g] == p) == (left[p] == x);
+                rotate(zigZig ? p : x);
+            }
+            rotate(x);
+        }
+    }
+
+    private void access(int x) {
+        int last = NONE;
+        for (int y = x; y != NONE; y = up[y]) {
+            splay(y);
+            right[y] = last;
+            pull(y);
+            last = y;
+        }
+        splay(x);
+    }
+
+    private void makeRoot(int x) {
+        access(x);
+        flip[x] ^= true;
+    }
+
+    private int findRoot(int x) {
+        access(x);
+        int r = x;
+        while (true) {
+            push(r);
+            if (left[r] == NONE) {
+                break;
+            }
+            r = left[r];
+        }
+        splay(r);
+        return r;
+    }
+
+    private void link(int x, int y) {
+        makeRoot(x);
+        up[x] = y;
+    }
+
+    private void cut(int x, int y) {
+        makeRoot(x);
+        access(y);
+        // Now x is the only node left of y on the path.
+        left[y] = NONE;
+        up[x] = NONE;
+        pull(y);
+    }
+}
@@ -1,12 +1,21 @@
 // @author joas47
 
+import java.util.Objects;
+
 public class Edge<T> implements Comparable<Edge<T>> {
 
-    private T destination;
+    private final T destination;
+    // Dense id of the destination in the owning graph, -1 if unknown.
+    private final int destinationId;
     private int cost;
 
     public Edge(T destination, int cost) {
+        this(destination, -1, cost);
+    }
+
+    Edge(T destination, int destinationId, int cost) {
         this.destination = destination;
+        this.destinationId = destinationId;
         this.cost = cost;
     }
 
@@ -14,6 +23,10 @@ public class Edge<T> implements Comparable<Edge<T>> {
         return destination;
     }
 
+    int getDestinationId() {
+        return destinationId;
+    }
+
     public int getCost() {
         return cost;
     }
@@ -30,6 +43,27 @@ public class Edge<T> implements Comparable<Edge<T>> {
         return "to " + destination + " by " + "'edge'" + " costs " + cost;
     }
 
+    /**
+     * Två bågar är lika om de går till samma nod. Kostnaden ingår inte
+     * eftersom den kan uppdateras medan bågen ligger i en hashad samling, och
+     * en nod har aldrig mer än en båge till samma granne.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Edge)) {
+            return false;
+        }
+        return Objects.equals(destination, ((Edge<?>) o).destination);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(destination);
+    }
+
     @Override
     public int compareTo(Edge o) {
         return Integer.compare(this.cost, o.cost);
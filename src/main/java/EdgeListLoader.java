@@ -0,0 +1,393 @@
+// @author joas47
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Läser grafer från textfiler med en båge per rad på formen
+ * {@code från till kostnad}, där fälten skiljs åt av mellanslag eller tab.
+ * Tomma rader och rader som börjar med {@code #} hoppas över.
+ * <p>
+ * Filen minnesmappas och tolkas direkt ur bytebuffertarna. Nodnamnen samlas
+ * i en ordlista över byte-sekvenser, så en {@link String} skapas bara en gång
+ * per unik nod och inga strängar skapas per rad. Stora filer delas upp i bitar
+ * vid radgränser som kan tolkas på flera trådar.
+ */
+public final class EdgeListLoader {
+
+    // A single mapping can't exceed 2 GB, stay well below that.
+    private static final long MAX_CHUNK = 1L << 30;
+
+    private EdgeListLoader() {
+    }
+
+    /**
+     * Läser en kantlista till en {@link CompactUndirectedGraph} på en tråd.
+     *
+     * @param file filen som ska läsas.
+     * @return grafen.
+     * @throws IOException om filen inte kan läsas eller har fel format.
+     */
+    public static CompactUndirectedGraph<String> load(Path file) throws IOException {
+        return load(file, 1);
+    }
+
+    /**
+     * Läser en kantlista till en {@link CompactUndirectedGraph}.
+     *
+     * @param file    filen som ska läsas.
+     * @param threads antalet trådar som tolkar filen.
+     * @return grafen.
+     * @throws IOException om filen inte kan läsas eller har fel format.
+     */
+    public static CompactUndirectedGraph<String> load(Path file, int threads) throws IOException {
+        Parsed parsed = parse(file, threads);
+        CompactUndirectedGraph.Builder<String> builder = new CompactUndirectedGraph.Builder<>(parsed.nodes.size(), parsed.edges.size);
+        for (String node : parsed.nodes) {
+            builder.add(node);
+        }
+        for (int i = 0; i < parsed.edges.size; i++) {
+            builder.connectIds(parsed.edges.from[i], parsed.edges.to[i], parsed.edges.cost[i]);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Läser en kantlista in i en befintlig graf via {@link UndirectedGraph#addAll}
+     * och {@link UndirectedGraph#connectAll}.
+     *
+     * @param file    filen som ska läsas.
+     * @param graph   grafen som noderna och bågarna ska läggas till i.
+     * @param threads antalet trådar som tolkar filen.
+     * @return grafen.
+     * @throws IOException om filen inte kan läsas eller har fel format.
+     */
+    public static <G extends UndirectedGraph<String>> G loadInto(Path file, G graph, int threads) throws IOException {
+        Parsed parsed = parse(file, threads);
+        graph.addAll(parsed.nodes);
+        CompactUndirectedGraph.EdgeColumns edges = parsed.edges;
+        int[] costs = edges.cost.length == edges.size ? edges.cost : Arrays.copyOf(edges.cost, edges.size);
+        graph.connectAll(column(parsed.nodes, edges.from, edges.size), column(parsed.nodes, edges.to, edges.size), costs);
+        return graph;
+    }
+
+    private static List<String> column(List<String> nodes, int[] ids, int size) {
+        return new AbstractList<>() {
+            @Override
+            public String get(int index) {
+                return nodes.get(ids[index]);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private static final class Parsed {
+        final List<String> nodes;
+        final CompactUndirectedGraph.EdgeColumns edges;
+
+        Parsed(List<String> nodes, CompactUndirectedGraph.EdgeColumns edges) {
+            this.nodes = nodes;
+            this.edges = edges;
+        }
+    }
+
+    private static Parsed parse(Path file, int threads) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Error: Need at least one thread!");
+        }
+        List<Chunk> chunks = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long target = Math.min(MAX_CHUNK, Math.max(1, (size + threads - 1) / threads));
+            long start = 0;
+            while (start < size) {
+                long end = Math.min(size, start + target);
+                end = lineEnd(channel, end, size);
+                chunks.add(new Chunk(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start), start));
+                start = end;
+            }
+        }
+        if (threads == 1 || chunks.size() == 1) {
+            for (Chunk chunk : chunks) {
+                chunk.parse();
+            }
+        } else {
+            ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, chunks.size()));
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (Chunk chunk : chunks) {
+                    futures.add(executor.submit(() -> {
+                        chunk.parse();
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while loading " + file, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException(e.getCause());
+            } finally {
+                executor.shutdown();
+            }
+        }
+        return merge(chunks);
+    }
+
+    /**
+     * The first position after the newline at or after {@code position}.
+     */
+    private static long lineEnd(FileChannel channel, long position, long size) throws IOException {
+        if (position >= size) {
+            return size;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static Parsed merge(List<Chunk> chunks) {
+        int expectedNodes = 0;
+        int expectedEdges = 0;
+        for (Chunk chunk : chunks) {
+            expectedNodes = Math.max(expectedNodes, chunk.dictionary.size());
+            expectedEdges += chunk.edges.size;
+        }
+        Map<String, Integer> ids = new HashMap<>((int) (expectedNodes / 0.75f) + 1);
+        ArrayList<String> nodes = new ArrayList<>(expectedNodes);
+        CompactUndirectedGraph.EdgeColumns edges = new CompactUndirectedGraph.EdgeColumns(expectedEdges);
+        for (Chunk chunk : chunks) {
+            int[] global = new int[chunk.dictionary.size()];
+            for (int local = 0; local < global.length; local++) {
+                String node = chunk.dictionary.toString(local);
+                Integer id = ids.get(node);
+                if (id == null) {
+                    id = nodes.size();
+                    ids.put(node, id);
+                    nodes.add(node);
+                }
+                global[local] = id;
+            }
+            CompactUndirectedGraph.EdgeColumns local = chunk.edges;
+            for (int i = 0; i < local.size; i++) {
+                edges.add(global[local.from[i]], global[local.to[i]], local.cost[i]);
+            }
+        }
+        return new Parsed(nodes, edges);
+    }
+
+    /**
+     * One line-aligned mapped region of the file and what was parsed from it.
+     */
+    private static final class Chunk {
+        private final MappedByteBuffer buffer;
+        private final long fileOffset;
+        final ByteDictionary dictionary = new ByteDictionary();
+        final CompactUndirectedGraph.EdgeColumns edges = new CompactUndirectedGraph.EdgeColumns(1024);
+
+        Chunk(MappedByteBuffer buffer, long fileOffset) {
+            this.buffer = buffer;
+            this.fileOffset = fileOffset;
+        }
+
+        void parse() throws IOException {
+            int limit = buffer.limit();
+            int position = 0;
+            while (position < limit) {
+                position = skipBlanks(position, limit);
+                if (position >= limit) {
+                    break;
+                }
+                byte first = buffer.get(position);
+                if (first == '\n' || first == '\r') {
+                    position++;
+                    continue;
+                }
+                if (first == '#') {
+                    position = nextLine(position, limit);
+                    continue;
+                }
+                int lineStart = position;
+                int tokenEnd = tokenEnd(position, limit);
+                int from = dictionary.intern(buffer, position, tokenEnd);
+                position = skipBlanks(tokenEnd, limit);
+                tokenEnd = tokenEnd(position, limit);
+                if (tokenEnd == position) {
+                    throw malformed(lineStart);
+                }
+                int to = dictionary.intern(buffer, position, tokenEnd);
+                position = skipBlanks(tokenEnd, limit);
+                tokenEnd = tokenEnd(position, limit);
+                int cost = parseCost(position, tokenEnd, lineStart);
+                position = skipBlanks(tokenEnd, limit);
+                if (position < limit && buffer.get(position) != '\n' && buffer.get(position) != '\r') {
+                    throw malformed(lineStart);
+                }
+                edges.add(from, to, cost);
+                position = nextLine(position, limit);
+            }
+        }
+
+        private int parseCost(int start, int end, int lineStart) throws IOException {
+            if (start == end || end - start > 10) {
+                throw malformed(lineStart);
+            }
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw malformed(lineStart);
+                }
+                value = value * 10 + digit;
+            }
+            if (value <= 0 || value > Integer.MAX_VALUE) {
+                throw malformed(lineStart);
+            }
+            return (int) value;
+        }
+
+        private IOException malformed(int lineStart) {
+            return new IOException("Malformed edge at byte offset " + (fileOffset + lineStart));
+        }
+
+        private int skipBlanks(int position, int limit) {
+            while (position < limit) {
+                byte b = buffer.get(position);
+                if (b != ' ' && b != '\t') {
+                    break;
+                }
+                position++;
+            }
+            return position;
+        }
+
+        private int tokenEnd(int position, int limit) {
+            while (position < limit) {
+                byte b = buffer.get(position);
+                if (b == ' ' || b == '\t' || b == '\n' || b == '\r') {
+                    break;
+                }
+                position++;
+            }
+            return position;
+        }
+
+        private int nextLine(int position, int limit) {
+            while (position < limit && buffer.get(position) != '\n') {
+                position++;
+            }
+            return position + 1;
+        }
+    }
+
+    /**
+     * Open addressing table from byte sequences to dense ids. Keys are copied
+     * into one byte arena, so a String is only created per distinct key.
+     */
+    private static final class ByteDictionary {
+        private byte[] arena = new byte[1 << 12];
+        private int arenaSize;
+        private int[] keyStart = new int[256];
+        private int[] keyLength = new int[256];
+        private int[] keyHash = new int[256];
+        private int size;
+        // Slot holds id + 1, 0 is empty.
+        private int[] table = new int[512];
+
+        int size() {
+            return size;
+        }
+
+        int intern(MappedByteBuffer buffer, int start, int end) {
+            int hash = 0x811c9dc5;
+            for (int i = start; i < end; i++) {
+                hash = (hash ^ buffer.get(i)) * 0x01000193;
+            }
+            int mask = table.length - 1;
+            int slot = hash & mask;
+            int length = end - start;
+            while (table[slot] != 0) {
+                int id = table[slot] - 1;
+                if (keyHash[id] == hash && keyLength[id] == length && sameBytes(id, buffer, start)) {
+                    return id;
+                }
+                slot = (slot + 1) & mask;
+            }
+            int id = size++;
+            if (id == keyStart.length) {
+                keyStart = Arrays.copyOf(keyStart, id * 2);
+                keyLength = Arrays.copyOf(keyLength, id * 2);
+                keyHash = Arrays.copyOf(keyHash, id * 2);
+            }
+            if (arenaSize + length > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + length));
+            }
+            for (int i = 0; i < length; i++) {
+                arena[arenaSize + i] = buffer.get(start + i);
+            }
+            keyStart[id] = arenaSize;
+            keyLength[id] = length;
+            keyHash[id] = hash;
+            arenaSize += length;
+            table[slot] = id + 1;
+            if (size * 2 > table.length) {
+                rehash();
+            }
+            return id;
+        }
+
+        private boolean sameBytes(int id, MappedByteBuffer buffer, int start) {
+            int offset = keyStart[id];
+            for (int i = 0; i < keyLength[id]; i++) {
+                if (arena[offset + i] != buffer.get(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void rehash() {
+            table = new int[table.length * 2];
+            int mask = table.length - 1;
+            for (int id = 0; id < size; id++) {
+                int slot = keyHash[id] & mask;
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = id + 1;
+            }
+        }
+
+        String toString(int id) {
+            return new String(arena, keyStart[id], keyLength[id], StandardCharsets.UTF_8);
+        }
+    }
+}
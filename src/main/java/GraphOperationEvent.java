@@ -0,0 +1,32 @@
+// @author joas47
+
+import jdk.jfr.*;
+
+/**
+ * En händelse i JDK Flight Recorder för ett anrop genom
+ * {@link InstrumentedUndirectedGraph}. Händelsen är avstängd om inte
+ * inspelningen slår på {@code graph.Operation}, och kostar då bara en
+ * kontroll per anrop.
+ */
+@Name("graph.Operation")
+@Label("Graph Operation")
+@Category("Graph")
+@Description("A call on an instrumented undirected graph")
+@StackTrace(false)
+class GraphOperationEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Nodes Visited")
+    @Description("Nodes visited by the search, or -1 if the graph does not count them")
+    int nodesVisited = -1;
+
+    @Label("Edges Scanned")
+    @Description("Edges scanned by the search, or -1 if the graph does not count them")
+    long edgesScanned = -1;
+
+    @Label("Path Length")
+    @Description("Nodes in the returned path, or in the spanning tree")
+    int pathLength = -1;
+}
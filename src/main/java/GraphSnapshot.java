@@ -0,0 +1,184 @@
+// @author joas47
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Ett versionerat binärt filformat för grafer. Filen innehåller
+ * nodordlistan, en hashtabell över noderna och CSR-arrayerna
+ * ({@code offsets}, {@code neighbors}, {@code costs}), så att
+ * {@link #open} kan minnesmappa filen och svara på frågor direkt ur den utan
+ * att läsa in grafen.
+ * <p>
+ * Layout, allt i little endian: ett huvud med magiskt tal, version, antal
+ * noder, antal bågar, antal grannposter och hashtabellens storlek, följt av
+ * positionen för varje sektion. Därefter sektionerna: nodernas byte-offset
+ * ({@code int[noder + 1]}), nodernas bytes, hashtabellen
+ * ({@code int[storlek]}, nod-id + 1 eller 0), {@code offsets},
+ * {@code neighbors} och {@code costs}. Varje sektion måste vara mindre än
+ * 2 GB.
+ */
+public final class GraphSnapshot {
+
+    static final int MAGIC = 0x55475246; // "UGRF"
+    static final int VERSION = 1;
+
+    static final int HEADER_BYTES = 6 * Integer.BYTES + 6 * Long.BYTES;
+
+    private GraphSnapshot() {
+    }
+
+    /**
+     * Sparar en graf till fil.
+     *
+     * @param graph grafen som ska sparas.
+     * @param codec hur noderna skrivs som bytes.
+     * @param file  filen, som skrivs över om den finns.
+     * @throws IOException om filen inte kan skrivas.
+     */
+    public static <T> void save(CompactUndirectedGraph<T> graph, NodeCodec<T> codec, Path file) throws IOException {
+        int n = graph.getNumberOfNodes();
+        int[] offsets = graph.offsets();
+        int[] neighbors = graph.neighbors();
+        int[] costs = graph.costs();
+
+        byte[][] encoded = new byte[n][];
+        int[] nameOffsets = new int[n + 1];
+        long nameBytes = 0;
+        for (int id = 0; id < n; id++) {
+            encoded[id] = codec.encode(graph.nodeAt(id));
+            nameBytes += encoded[id].length;
+            if (nameBytes > Integer.MAX_VALUE) {
+                throw new IOException("Node dictionary too large for snapshot");
+            }
+            nameOffsets[id + 1] = (int) nameBytes;
+        }
+        int tableSize = Integer.highestOneBit(Math.max(2, n) * 2 - 1) << 1;
+        int[] table = new int[tableSize];
+        for (int id = 0; id < n; id++) {
+            int slot = hash(encoded[id]) & (tableSize - 1);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (tableSize - 1);
+            }
+            table[slot] = id + 1;
+        }
+
+        long nameOffsetsPos = HEADER_BYTES;
+        long namesPos = nameOffsetsPos + (long) (n + 1) * Integer.BYTES;
+        long tablePos = namesPos + nameBytes;
+        long offsetsPos = tablePos + (long) tableSize * Integer.BYTES;
+        long neighborsPos = offsetsPos + (long) (n + 1) * Integer.BYTES;
+        long costsPos = neighborsPos + (long) neighbors.length * Integer.BYTES;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(graph.getNumberOfEdges())
+                    .putInt(neighbors.length).putInt(tableSize)
+                    .putLong(nameOffsetsPos).putLong(namesPos).putLong(tablePos)
+                    .putLong(offsetsPos).putLong(neighborsPos).putLong(costsPos);
+            writeInts(channel, buffer, nameOffsets);
+            for (byte[] name : encoded) {
+                int written = 0;
+                while (written < name.length) {
+                    if (!buffer.hasRemaining()) {
+                        flush(channel, buffer);
+                    }
+                    int length = Math.min(buffer.remaining(), name.length - written);
+                    buffer.put(name, written, length);
+                    written += length;
+                }
+            }
+            writeInts(channel, buffer, table);
+            writeInts(channel, buffer, offsets);
+            writeInts(channel, buffer, neighbors);
+            writeInts(channel, buffer, costs);
+            flush(channel, buffer);
+        }
+    }
+
+    /**
+     * Öppnar en sparad graf genom att minnesmappa filen. Ingenting läses in
+     * förrän det behövs, så öppnandet tar lika lång tid oavsett grafens
+     * storlek.
+     *
+     * @param file  filen.
+     * @param codec hur noderna skrevs som bytes.
+     * @return en skrivskyddad graf som läser direkt ur filen.
+     * @throws IOException om filen inte kan läsas eller inte är en
+     *                     ögonblicksbild av rätt version.
+     */
+    public static <T> MappedUndirectedGraph<T> open(Path file, NodeCodec<T> codec) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a graph snapshot: " + file);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a graph snapshot: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported graph snapshot version " + version + ": " + file);
+            }
+            int n = header.getInt();
+            int edges = header.getInt();
+            int entries = header.getInt();
+            int tableSize = header.getInt();
+            long nameOffsetsPos = header.getLong();
+            long namesPos = header.getLong();
+            long tablePos = header.getLong();
+            long offsetsPos = header.getLong();
+            long neighborsPos = header.getLong();
+            long costsPos = header.getLong();
+            if (costsPos + (long) entries * Integer.BYTES > channel.size()) {
+                throw new IOException("Truncated graph snapshot: " + file);
+            }
+            return new MappedUndirectedGraph<>(codec, n, edges,
+                    ints(channel, nameOffsetsPos, n + 1),
+                    channel.map(FileChannel.MapMode.READ_ONLY, namesPos, tablePos - namesPos),
+                    ints(channel, tablePos, tableSize),
+                    ints(channel, offsetsPos, n + 1),
+                    ints(channel, neighborsPos, entries),
+                    ints(channel, costsPos, entries));
+        }
+    }
+
+    private static IntBuffer ints(FileChannel channel, long position, int count) throws IOException {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, position, (long) count * Integer.BYTES);
+        return mapped.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException {
+        for (int value : values) {
+            if (buffer.remaining() < Integer.BYTES) {
+                flush(channel, buffer);
+            }
+            buffer.putInt(value);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * FNV-1a over the encoded node.
+     */
+    static int hash(byte[] bytes) {
+        int hash = 0x811c9dc5;
+        for (byte b : bytes) {
+            hash = (hash ^ b) * 0x01000193;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,67 @@
+// @author joas47
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Resultatet av en bredden-först-genomgång från flera startnoder på en gång:
+ * avståndet i antal bågar från varje startnod till varje nod i grafen. Varje
+ * startnod har en rad med ett int per nod, indexerad med nodens id vid
+ * sökningen. Resultatet gäller grafen som den var då, även om den ändras
+ * efteråt; noder som tillkommit sedan har avståndet -1.
+ */
+public class HopDistanceMatrix<T> {
+
+    private final NodeIds<T> nodeIds;
+    private final List<T> sources;
+    private final int[][] distance;
+
+    HopDistanceMatrix(NodeIds<T> nodeIds, List<T> sources, int[][] distance) {
+        this.nodeIds = nodeIds;
+        this.sources = sources;
+        this.distance = distance;
+    }
+
+    /**
+     * Startnoderna, i samma ordning som raderna.
+     */
+    public List<T> getSources() {
+        return Collections.unmodifiableList(sources);
+    }
+
+    /**
+     * Antalet bågar från en startnod till en nod.
+     *
+     * @param source startnodens plats i {@link #getSources()}.
+     * @param node   noden.
+     * @return avståndet, eller -1 om någon av noderna inte finns eller noden
+     * inte kan nås.
+     */
+    public int distance(int source, T node) {
+        int id = nodeIds.idOf(node);
+        return id < 0 ? -1 : distance[source][id];
+    }
+
+    /**
+     * Antalet noder som kan nås från en startnod, inklusive den själv.
+     *
+     * @param source startnodens plats i {@link #getSources()}.
+     */
+    public int getNumberOfReachableNodes(int source) {
+        int count = 0;
+        for (int d : distance[source]) {
+            if (d >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Avstånden från en startnod indexerade med nodernas id. Arrayen delas
+     * med resultatet och får inte ändras.
+     */
+    int[] distances(int source) {
+        return distance[source];
+    }
+}
@@ -0,0 +1,106 @@
+// @author joas47
+
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Resultatet av en bredden-först-genomgång från en startnod: avståndet i
+ * antal bågar och föregångaren för varje nod i grafen. Resultatet gäller
+ * grafen som den var vid sökningen, även om den ändras efteråt; noder som
+ * tillkommit sedan har avståndet -1.
+ */
+public class HopDistances<T> {
+
+    private final NodeIds<T> nodeIds;
+    private final int source;
+    private final int[] distance;
+    private final int[] parent;
+
+    HopDistances(NodeIds<T> nodeIds, int source, int[] distance, int[] parent) {
+        this.nodeIds = nodeIds;
+        this.source = source;
+        this.distance = distance;
+        this.parent = parent;
+    }
+
+    /**
+     * Startnoden, eller null om den inte fanns i grafen.
+     */
+    public T getSource() {
+        return source < 0 ? null : nodeIds.nodeAt(source);
+    }
+
+    /**
+     * Antalet bågar från startnoden till noden.
+     *
+     * @param node noden.
+     * @return avståndet, eller -1 om noden inte finns eller inte kan nås.
+     */
+    public int distance(T node) {
+        int id = nodeIds.idOf(node);
+        return id < 0 ? -1 : distance[id];
+    }
+
+    /**
+     * Noden som ligger före på en kortaste väg från startnoden.
+     *
+     * @param node noden.
+     * @return föregångaren, eller null för startnoden och för noder som inte
+     * kan nås.
+     */
+    public T parent(T node) {
+        int id = nodeIds.idOf(node);
+        if (id < 0 || parent[id] < 0) {
+            return null;
+        }
+        return nodeIds.nodeAt(parent[id]);
+    }
+
+    /**
+     * En kortaste väg från startnoden till noden.
+     *
+     * @param node slutnoden.
+     * @return vägen med start- och slutnoden, eller en tom lista om noden
+     * inte kan nås.
+     */
+    public List<T> pathTo(T node) {
+        LinkedList<T> path = new LinkedList<>();
+        int id = nodeIds.idOf(node);
+        if (id < 0 || distance[id] < 0) {
+            return path;
+        }
+        for (int v = id; v >= 0; v = parent[v]) {
+            path.addFirst(nodeIds.nodeAt(v));
+        }
+        return path;
+    }
+
+    /**
+     * Antalet noder som kan nås från startnoden, inklusive den själv.
+     */
+    public int getNumberOfReachableNodes() {
+        int count = 0;
+        for (int d : distance) {
+            if (d >= 0) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Avstånden indexerade med nodernas id. Arrayen delas med resultatet och
+     * får inte ändras.
+     */
+    int[] distances() {
+        return distance;
+    }
+
+    /**
+     * Föregångarna indexerade med nodernas id, -1 för startnoden och noder
+     * som inte kan nås. Arrayen delas med resultatet och får inte ändras.
+     */
+    int[] parents() {
+        return parent;
+    }
+}
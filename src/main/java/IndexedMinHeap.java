@@ -0,0 +1,158 @@
+// @author joas47
+
+import java.util.Arrays;
+
+/**
+ * Indexerad d-när min-heap över täta int-id:n (0..capacity-1) med
+ * long-nycklar. Stöder decrease-key i O(log n) och kan återanvändas mellan
+ * körningar utan att allokera nya arrayer. En högre aritet ger grundare heap
+ * och billigare decrease-key, vilket passar Dijkstra där decrease-key är
+ * vanligare än poll.
+ */
+class IndexedMinHeap {
+
+    private final int arity;
+    private int[] heap;
+    private int[] position;
+    private long[] keys;
+    private int size;
+
+    IndexedMinHeap(int capacity) {
+        this(capacity, 2);
+    }
+
+    IndexedMinHeap(int capacity, int arity) {
+        if (arity < 2) {
+            throw new IllegalArgumentException("Error: Heap arity must be at least 2!");
+        }
+        this.arity = arity;
+        heap = new int[capacity];
+        position = new int[capacity];
+        keys = new long[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    /**
+     * Ser till att heapen rymmer id:n upp till capacity-1. Heapen måste vara
+     * tom.
+     */
+    void ensureCapacity(int capacity) {
+        if (capacity > position.length) {
+            heap = new int[capacity];
+            keys = new long[capacity];
+            position = new int[capacity];
+            Arrays.fill(position, -1);
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean contains(int id) {
+        return position[id] >= 0;
+    }
+
+    long keyOf(int id) {
+        return keys[id];
+    }
+
+    /**
+     * Lägger till id med nyckeln key, eller sänker dess nyckel om id redan
+     * finns och key är lägre.
+     *
+     * @return true om heapen ändrades.
+     */
+    boolean offer(int id, long key) {
+        int pos = position[id];
+        if (pos < 0) {
+            keys[id] = key;
+            heap[size] = id;
+            position[id] = size;
+            siftUp(size++);
+            return true;
+        }
+        if (key < keys[id]) {
+            keys[id] = key;
+            siftUp(pos);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Id:t med lägst nyckel, utan att ta bort det.
+     */
+    int peek() {
+        return heap[0];
+    }
+
+    /**
+     * Tar bort och returnerar id:t med lägst nyckel.
+     */
+    int poll() {
+        int top = heap[0];
+        position[top] = -1;
+        if (--size > 0) {
+            int last = heap[size];
+            heap[0] = last;
+            position[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * Tömmer heapen utan att röra mer än de element som ligger kvar.
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int pos) {
+        int id = heap[pos];
+        long key = keys[id];
+        while (pos > 0) {
+            int parent = (pos - 1) / arity;
+            int parentId = heap[parent];
+            if (keys[parentId] <= key) {
+                break;
+            }
+            heap[pos] = parentId;
+            position[parentId] = pos;
+            pos = parent;
+        }
+        heap[pos] = id;
+        position[id] = pos;
+    }
+
+    private void siftDown(int pos) {
+        int id = heap[pos];
+        long key = keys[id];
+        while (true) {
+            int first = arity * pos + 1;
+            if (first >= size) {
+                break;
+            }
+            int child = first;
+            int last = Math.min(first + arity, size);
+            for (int c = first + 1; c < last; c++) {
+                if (keys[heap[c]] < keys[heap[child]]) {
+                    child = c;
+                }
+            }
+            int childId = heap[child];
+            if (key <= keys[childId]) {
+                break;
+            }
+            heap[pos] = childId;
+            position[childId] = pos;
+            pos = child;
+        }
+        heap[pos] = id;
+        position[id] = pos;
+    }
+}
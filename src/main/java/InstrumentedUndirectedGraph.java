@@ -0,0 +1,215 @@
+// @author joas47
+
+import java.util.*;
+
+/**
+ * En graf som mäter anropen på en annan graf: hur många gånger varje
+ * operation anropats och hur lång tid anropen tagit, i ett
+ * {@link LatencyHistogram} per operation. Varje anrop rapporteras också som
+ * en {@link GraphOperationEvent} till JDK Flight Recorder, med längden på
+ * den väg eller det spännande träd som returnerades.
+ * <p>
+ * För en {@link MyUndirectedGraph} som körs med
+ * {@code -Dgraph.traceSearches=true} tar händelserna för djupet- och
+ * bredden-först-sökning även med hur många noder och bågar sökningen gick
+ * igenom. Den som inte vill ha mätningarna använder grafen direkt, och
+ * betalar då ingenting för dem.
+ * <p>
+ * Mätningarna kan delas mellan trådar om den underliggande grafen kan det.
+ */
+public class InstrumentedUndirectedGraph<T> implements UndirectedGraph<T>, CompactView<T> {
+
+    /**
+     * De operationer som mäts.
+     */
+    public enum Operation {
+        ADD, CONNECT, REMOVE, DISCONNECT, IS_CONNECTED, GET_COST,
+        DEPTH_FIRST_SEARCH, BREADTH_FIRST_SEARCH, MINIMUM_SPANNING_TREE
+    }
+
+    private final UndirectedGraph<T> graph;
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+
+    /**
+     * @param graph grafen som anropen mäts på.
+     */
+    public InstrumentedUndirectedGraph(UndirectedGraph<T> graph) {
+        this.graph = graph;
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = new LatencyHistogram();
+        }
+    }
+
+    /**
+     * Tiderna för en operation, i nanosekunder.
+     */
+    public LatencyHistogram getLatency(Operation operation) {
+        return latencies[operation.ordinal()];
+    }
+
+    /**
+     * Antalet gånger som en operation anropats.
+     */
+    public long getCount(Operation operation) {
+        return latencies[operation.ordinal()].getCount();
+    }
+
+    private GraphOperationEvent begin() {
+        GraphOperationEvent event = new GraphOperationEvent();
+        event.begin();
+        return event;
+    }
+
+    private void end(Operation operation, long started, GraphOperationEvent event, int pathLength) {
+        latencies[operation.ordinal()].record(System.nanoTime() - started);
+        event.end();
+        if (event.shouldCommit()) {
+            event.operation = operation.name();
+            event.pathLength = pathLength;
+            if ((operation == Operation.DEPTH_FIRST_SEARCH || operation == Operation.BREADTH_FIRST_SEARCH)
+                    && MyUndirectedGraph.TRACE_SEARCHES && graph instanceof MyUndirectedGraph) {
+                MyUndirectedGraph<T> traced = (MyUndirectedGraph<T>) graph;
+                event.nodesVisited = traced.lastNodesVisited();
+                event.edgesScanned = traced.lastEdgesScanned();
+            }
+            event.commit();
+        }
+    }
+
+    @Override
+    public int getNumberOfNodes() {
+        return graph.getNumberOfNodes();
+    }
+
+    @Override
+    public int getNumberOfEdges() {
+        return graph.getNumberOfEdges();
+    }
+
+    @Override
+    public long getTotalWeight() {
+        return graph.getTotalWeight();
+    }
+
+    @Override
+    public boolean add(T newNode) {
+        GraphOperationEvent event = begin();
+        long started = System.nanoTime();
+        boolean added = graph.add(newNode);
+        end(Operation.ADD, started, event, -1);
+        return added;
+    }
+
+    /**
+     * Lägger till noderna i den underliggande grafen i ett enda anrop, som
+     * mäts som en {@link Operation#ADD}.
+     */
+    @Override
+    public int addAll(Collection<? extends T> newNodes) {
+        GraphOperationEvent event = begin();
+        long started = System.nanoTime();
+        int added = graph.addAll(newNodes);
+        end(Operation.ADD, started, event, -1);
+        return added;
+    }
+
+    @Override
+    public boolean connect(T node1, T node2, int cost) {
+        GraphOperationEvent event = begin();
+        long started = System.nanoTime();
+        boolean connected = graph.connect(node1, node2, cost);
+        end(Operation.CONNECT, started, event, -1);
+        return connected;
+    }
+
+    /**
+     * Kopplar samman noderna i den underliggande grafen i ett enda anrop, som
+     * mäts som en {@link Operation#CONNECT}.
+     */
+    @Override
+    public int connectAll(List<? extends T> from, List<? extends T> to, int[] costs) {
+        GraphOperationEvent event = begin();
+        long started = System.nanoTime();
+        int connected = graph.connectAll(from, to, costs);
+        end(Operation.CONNECT, started, event, -1);
+        return connected;
+    }
+
+    @Override
+    public boolean remove(T node) {
+        GraphOperationEvent event = begin();
+        long started = System.nanoTime();
+        boolean removed = graph.remove(node);
+        end(Operation.REMOVE, started, event, -1);
+        return removed;
+    }
+
+    @Override
+    public boolean disconnect(T node1, T node2) {
+        GraphOperationEvent event = begin();
+        long started = System.nanoTime();
+        boolean disconnected = graph.disconnect(node1, node2);
+        end(Operation.DISCONNECT, started, event, -1);
+        return disconnected;
+    }
+
+    @Override
+    public boolean isConnected(T node1, T node2) {
+        GraphOperationEvent event = begin();
+        long started = System.nanoTime();
+        boolean connected = graph.isConnected(node1, node2);
+        end(Operation.IS_CONNECTED, started, event, -1);
+        return connected;
+    }
+
+    @Override
+    public int getCost(T node1, T node2) {
+        GraphOperationEvent event = begin();
+        long started = System.nanoTime();
+        int cost = graph.getCost(node1, node2);
+        end(Operation.GET_COST, started, event, -1);
+        return cost;
+    }
+
+    @Override
+    public List<T> depthFirstSearch(T start, T end) {
+        GraphOperationEvent event = begin();
+        long started = System.nanoTime();
+        List<T> path = graph.depthFirstSearch(start, end);
+        end(Operation.DEPTH_FIRST_SEARCH, started, event, path.size());
+        return path;
+    }
+
+    @Override
+    public List<T> breadthFirstSearch(T start, T end) {
+        GraphOperationEvent event = begin();
+        long started = System.nanoTime();
+        List<T> path = graph.breadthFirstSearch(start, end);
+        end(Operation.BREADTH_FIRST_SEARCH, started, event, path.size());
+        return path;
+    }
+
+    @Override
+    public UndirectedGraph<T> minimumSpanningTree() {
+        GraphOperationEvent event = begin();
+        long started = System.nanoTime();
+        UndirectedGraph<T> tree = graph.minimumSpanningTree();
+        end(Operation.MINIMUM_SPANNING_TREE, started, event, tree.getNumberOfNodes());
+        return tree;
+    }
+
+    /**
+     * The wrapped graph's compact copy, so indexes can be built through the wrapper.
+     *
+     * @throws IllegalArgumentException if the wrapped graph has none.
+     */
+    @Override
+    public CompactUndirectedGraph<T> compact() {
+        return CompactView.of(graph).compact();
+    }
+
+    @Override
+    public long version() {
+        return CompactView.of(graph).version();
+    }
+}
@@ -0,0 +1,409 @@
+// @author joas47
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.stream.IntStream;
+
+/**
+ * Ett landmärkesindex för snabba upprepade frågor om billigaste väg (ALT:
+ * A*, landmärken och triangelolikheten). För ett fåtal landmärken L sparas
+ * avståndet d(L, v) till varje nod v, och |d(L, t) - d(L, v)| blir då en
+ * undre gräns för avståndet från v till målet t som styr A*-sökningen mot
+ * målet.
+ * <p>
+ * Landmärkena väljs med en farthest-point-heuristik över antal bågar, och
+ * avståndstabellerna beräknas parallellt, en Dijkstra per landmärke. Om
+ * grafen ändras efter att indexet byggts räknas tabellerna om vid nästa
+ * fråga; landmärkena behålls så länge antalet noder är detsamma.
+ * <p>
+ * Indexet kan byggas från alla grafer i det här paketet. Frågorna återanvänder
+ * arbetsminne och får inte köras från flera trådar samtidigt.
+ */
+public class LandmarkIndex<T> {
+
+    private static final int MAGIC = 0x554c4d4b; // "ULMK"
+    private static final int VERSION = 1;
+
+    private static final long UNREACHABLE = Long.MAX_VALUE;
+
+    // The bound is the max over landmarks; a few that bound the start best are enough per query.
+    private static final int ACTIVE_LANDMARKS = 4;
+
+    private final CompactView<T> source;
+    private CompactUndirectedGraph<T> graph;
+    private long version;
+    private int[] landmarks;
+    private long[][] table;
+
+    private int[] stamps = new int[0];
+    private int stamp;
+    private long[] distance = new long[0];
+    private int[] parent = new int[0];
+    private IndexedMinHeap heap = new IndexedMinHeap(0, 4);
+    private int[] active = new int[0];
+
+    private LandmarkIndex(CompactView<T> source) {
+        this.source = source;
+    }
+
+    /**
+     * Bygger ett index med det givna antalet landmärken.
+     *
+     * @param graph     grafen.
+     * @param landmarks antalet landmärken, typiskt 8–16.
+     * @return indexet.
+     */
+    public static <T> LandmarkIndex<T> build(UndirectedGraph<T> graph, int landmarks) {
+        if (landmarks < 1) {
+            throw new IllegalArgumentException("Error: Need at least one landmark!");
+        }
+        LandmarkIndex<T> index = new LandmarkIndex<>(CompactView.of(graph));
+        index.graph = index.source.compact();
+        index.version = index.source.version();
+        index.landmarks = index.selectLandmarks(Math.min(landmarks, index.graph.getNumberOfNodes()));
+        index.computeTables();
+        return index;
+    }
+
+    /**
+     * Landmärkena som indexet använder.
+     */
+    public List<T> getLandmarks() {
+        List<T> list = new ArrayList<>(landmarks.length);
+        for (int landmark : landmarks) {
+            list.add(graph.nodeAt(landmark));
+        }
+        return list;
+    }
+
+    /**
+     * Om grafen har ändrats sedan avståndstabellerna beräknades.
+     */
+    public boolean isStale() {
+        return source.version() != version;
+    }
+
+    /**
+     * Räknar om avståndstabellerna efter att grafen har ändrats. Landmärkena
+     * behålls om antalet noder är oförändrat, annars väljs nya.
+     */
+    public void refresh() {
+        CompactUndirectedGraph<T> current = source.compact();
+        boolean sameNodes = current.getNumberOfNodes() == graph.getNumberOfNodes();
+        graph = current;
+        version = source.version();
+        if (!sameNodes) {
+            landmarks = selectLandmarks(Math.min(landmarks.length, graph.getNumberOfNodes()));
+        }
+        computeTables();
+    }
+
+    /**
+     * Farthest-point selection on hop distances: each new landmark is the node
+     * furthest from all landmarks chosen so far. Components no landmark can
+     * reach yet are preferred, as long as the node has any edges at all.
+     */
+    private int[] selectLandmarks(int count) {
+        int n = graph.getNumberOfNodes();
+        int[] offsets = graph.offsets();
+        int[] neighbors = graph.neighbors();
+        int[] nearest = new int[n];
+        Arrays.fill(nearest, Integer.MAX_VALUE);
+        int[] hops = new int[n];
+        int[] queue = new int[n];
+        int[] chosen = new int[count];
+        int next = 0;
+        for (int v = 0; v < n; v++) {
+            if (offsets[v + 1] > offsets[v]) {
+                next = v;
+                break;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            // The very first BFS only serves to find a node on the periphery.
+            if (i == 0) {
+                hopsFrom(next, offsets, neighbors, hops, queue);
+                next = farthest(hops, hops, offsets);
+            }
+            chosen[i] = next;
+            hopsFrom(next, offsets, neighbors, hops, queue);
+            for (int v = 0; v < n; v++) {
+                nearest[v] = Math.min(nearest[v], hops[v]);
+            }
+            next = farthest(nearest, hops, offsets);
+        }
+        return chosen;
+    }
+
+    private static int farthest(int[] score, int[] hops, int[] offsets) {
+        int best = 0;
+        int bestScore = -1;
+        for (int v = 0; v < score.length; v++) {
+            int s = score[v];
+            if (s == Integer.MAX_VALUE && offsets[v + 1] == offsets[v]) {
+                continue;
+            }
+            if (s > bestScore) {
+                bestScore = s;
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    private static void hopsFrom(int start, int[] offsets, int[] neighbors, int[] hops, int[] queue) {
+        Arrays.fill(hops, Integer.MAX_VALUE);
+        hops[start] = 0;
+        queue[0] = start;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int v = queue[head++];
+            for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                int w = neighbors[k];
+                if (hops[w] == Integer.MAX_VALUE) {
+                    hops[w] = hops[v] + 1;
+                    queue[tail++] = w;
+                }
+            }
+        }
+    }
+
+    private void computeTables() {
+        int[] offsets = graph.offsets();
+        int[] neighbors = graph.neighbors();
+        int[] costs = graph.costs();
+        int n = graph.getNumberOfNodes();
+        long[][] tables = new long[landmarks.length][];
+        IntStream.range(0, landmarks.length).parallel()
+                .forEach(i -> tables[i] = distancesFrom(landmarks[i], n, offsets, neighbors, costs));
+        table = tables;
+    }
+
+    private static long[] distancesFrom(int start, int n, int[] offsets, int[] neighbors, int[] costs) {
+        long[] dist = new long[n];
+        Arrays.fill(dist, UNREACHABLE);
+        IndexedMinHeap queue = new IndexedMinHeap(n, 4);
+        dist[start] = 0;
+        queue.offer(start, 0);
+        while (!queue.isEmpty()) {
+            int v = queue.poll();
+            long base = dist[v];
+            for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                int w = neighbors[k];
+                long candidate = base + costs[k];
+                if (candidate < dist[w]) {
+                    dist[w] = candidate;
+                    queue.offer(w, candidate);
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * Lower bound on the distance from v to target over the active landmarks,
+     * or UNREACHABLE when a landmark proves they are in different components.
+     */
+    private long bound(int v, int target, int activeCount) {
+        long best = 0;
+        for (int i = 0; i < activeCount; i++) {
+            long[] d = table[active[i]];
+            long toTarget = d[target];
+            long toV = d[v];
+            if (toTarget == UNREACHABLE || toV == UNREACHABLE) {
+                if (toTarget != toV) {
+                    return UNREACHABLE;
+                }
+                continue;
+            }
+            best = Math.max(best, Math.abs(toTarget - toV));
+        }
+        return best;
+    }
+
+    /**
+     * Hittar den billigaste vägen mellan två noder med A*, styrd av
+     * landmärkena. Har grafen ändrats räknas tabellerna om först.
+     *
+     * @param start startnoden.
+     * @param end   slutnoden.
+     * @return vägen och dess kostnad, med kostnaden -1 om ingen väg finns.
+     */
+    public ShortestPath<T> shortestPath(T start, T end) {
+        if (isStale()) {
+            refresh();
+        }
+        int s = graph.idOf(start);
+        int e = graph.idOf(end);
+        if (s < 0 || e < 0) {
+            return ShortestPath.none();
+        }
+        int activeCount = chooseActive(s, e);
+        if (bound(s, e, activeCount) == UNREACHABLE) {
+            return ShortestPath.none();
+        }
+        int n = graph.getNumberOfNodes();
+        if (stamps.length < n) {
+            stamps = new int[n];
+            distance = new long[n];
+            parent = new int[n];
+            stamp = 0;
+        }
+        if (++stamp == 0) {
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+        int mark = stamp;
+        heap.ensureCapacity(n);
+        int[] offsets = graph.offsets();
+        int[] neighbors = graph.neighbors();
+        int[] costs = graph.costs();
+        stamps[s] = mark;
+        distance[s] = 0;
+        parent[s] = -1;
+        heap.offer(s, bound(s, e, activeCount));
+        boolean found = false;
+        while (!heap.isEmpty()) {
+            int v = heap.poll();
+            if (v == e) {
+                found = true;
+                break;
+            }
+            long base = distance[v];
+            for (int k = offsets[v]; k < offsets[v + 1]; k++) {
+                int w = neighbors[k];
+                long candidate = base + costs[k];
+                if (stamps[w] != mark) {
+                    stamps[w] = mark;
+                    distance[w] = candidate;
+                    parent[w] = v;
+                    heap.offer(w, candidate + bound(w, e, activeCount));
+                } else if (candidate < distance[w] && heap.contains(w)) {
+                    distance[w] = candidate;
+                    parent[w] = v;
+                    heap.offer(w, candidate + bound(w, e, activeCount));
+                }
+            }
+        }
+        heap.clear();
+        if (!found) {
+            return ShortestPath.none();
+        }
+        LinkedList<T> path = new LinkedList<>();
+        for (int v = e; v != -1; v = parent[v]) {
+            path.addFirst(graph.nodeAt(v));
+        }
+        return new ShortestPath<>(path, distance[e]);
+    }
+
+    /**
+     * Picks the landmarks giving the best bound for the start node.
+     */
+    private int chooseActive(int s, int e) {
+        int k = table.length;
+        if (active.length < k) {
+            active = new int[k];
+        }
+        for (int i = 0; i < k; i++) {
+            active[i] = i;
+        }
+        if (k <= ACTIVE_LANDMARKS) {
+            return k;
+        }
+        long[] score = new long[k];
+        for (int i = 0; i < k; i++) {
+            long toTarget = table[i][e];
+            long toStart = table[i][s];
+            if (toTarget == UNREACHABLE || toStart == UNREACHABLE) {
+                score[i] = toTarget == toStart ? -1 : UNREACHABLE;
+            } else {
+                score[i] = Math.abs(toTarget - toStart);
+            }
+        }
+        // Partial selection sort, k is small.
+        for (int i = 0; i < ACTIVE_LANDMARKS; i++) {
+            int best = i;
+            for (int j = i + 1; j < k; j++) {
+                if (score[active[j]] > score[active[best]]) {
+                    best = j;
+                }
+            }
+            int tmp = active[i];
+            active[i] = active[best];
+            active[best] = tmp;
+        }
+        return ACTIVE_LANDMARKS;
+    }
+
+    /**
+     * Sparar landmärkena och avståndstabellerna, till exempel bredvid en
+     * {@link GraphSnapshot} av samma graf.
+     *
+     * @param file filen, som skrivs över om den finns.
+     * @throws IOException om filen inte kan skrivas.
+     */
+    public void save(Path file) throws IOException {
+        if (isStale()) {
+            refresh();
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(graph.getNumberOfNodes());
+            out.writeInt(graph.neighbors().length);
+            out.writeInt(landmarks.length);
+            for (int landmark : landmarks) {
+                out.writeInt(landmark);
+            }
+            for (long[] distances : table) {
+                for (long d : distances) {
+                    out.writeLong(d);
+                }
+            }
+        }
+    }
+
+    /**
+     * Läser ett sparat index för en graf. Grafen måste ha samma noder, i
+     * samma ordning, och samma bågar som när indexet sparades.
+     *
+     * @param file  filen.
+     * @param graph grafen som indexet byggdes för.
+     * @return indexet.
+     * @throws IOException om filen inte kan läsas eller inte hör till grafen.
+     */
+    public static <T> LandmarkIndex<T> load(Path file, UndirectedGraph<T> graph) throws IOException {
+        LandmarkIndex<T> index = new LandmarkIndex<>(CompactView.of(graph));
+        index.graph = index.source.compact();
+        index.version = index.source.version();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a landmark index: " + file);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported landmark index version " + version + ": " + file);
+            }
+            int n = in.readInt();
+            int entries = in.readInt();
+            if (n != index.graph.getNumberOfNodes() || entries != index.graph.neighbors().length) {
+                throw new IOException("Landmark index " + file + " does not belong to this graph");
+            }
+            int k = in.readInt();
+            index.landmarks = new int[k];
+            for (int i = 0; i < k; i++) {
+                index.landmarks[i] = in.readInt();
+            }
+            index.table = new long[k][n];
+            for (int i = 0; i < k; i++) {
+                for (int v = 0; v < n; v++) {
+                    index.table[i][v] = in.readLong();
+                }
+            }
+        }
+        return index;
+    }
+}
@@ -0,0 +1,116 @@
+// @author joas47
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Ett histogram över tider i nanosekunder, med samma indelning som
+ * HdrHistogram: varje tvåpotens delas i 32 lika breda fack, så ett värde
+ * avrundas aldrig med mer än ungefär 3 %. Facken är fasta, så att registrera
+ * ett värde är en enda atomär ökning och kan göras från flera trådar.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+    // Values below SUB_COUNT get a bucket each, then SUB_COUNT buckets per power of two.
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder total = new LongAdder();
+
+    private static int bucketOf(long value) {
+        if (value < SUB_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_COUNT - 1);
+        return (exponent - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /**
+     * The largest value that lands in the bucket.
+     */
+    private static long highestIn(int bucket) {
+        if (bucket < SUB_COUNT) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_COUNT + SUB_BITS - 1;
+        long sub = bucket % SUB_COUNT;
+        long width = 1L << (exponent - SUB_BITS);
+        return ((SUB_COUNT + sub) << (exponent - SUB_BITS)) + width - 1;
+    }
+
+    /**
+     * Registrerar ett värde. Negativa värden räknas som 0.
+     *
+     * @param nanos tiden i nanosekunder.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(value));
+        count.increment();
+        total.add(value);
+    }
+
+    /**
+     * Antalet registrerade värden.
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Medelvärdet, exakt, eller 0 om inget har registrerats.
+     */
+    public double getMean() {
+        long n = count.sum();
+        return n == 0 ? 0 : (double) total.sum() / n;
+    }
+
+    /**
+     * Värdet som den givna andelen av alla värden ligger på eller under,
+     * avrundat uppåt till sitt facks övre gräns.
+     *
+     * @param percentile mellan 0 och 100.
+     * @return värdet, eller 0 om inget har registrerats.
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Error: Percentile must be between 0 and 100!");
+        }
+        long n = count.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        int last = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            long inBucket = counts.get(bucket);
+            if (inBucket > 0) {
+                seen += inBucket;
+                last = bucket;
+                if (seen >= rank) {
+                    return highestIn(bucket);
+                }
+            }
+        }
+        // Only reached if values were recorded while counting.
+        return highestIn(last);
+    }
+
+    /**
+     * Det största registrerade värdet, avrundat uppåt till sitt facks övre
+     * gräns.
+     */
+    public long getMax() {
+        for (int bucket = BUCKETS - 1; bucket >= 0; bucket--) {
+            if (counts.get(bucket) > 0) {
+                return highestIn(bucket);
+            }
+        }
+        return 0;
+    }
+}
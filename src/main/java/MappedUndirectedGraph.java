@@ -0,0 +1,355 @@
+// @author joas47
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.*;
+
+/**
+ * En skrivskyddad graf som läser direkt ur en minnesmappad
+ * {@link GraphSnapshot}-fil. Noder slås upp i filens hashtabell och bågar med
+ * binärsökning i filens CSR-arrayer, så ingenting behöver läsas in när grafen
+ * öppnas.
+ * <p>
+ * {@link #add}, {@link #connect} och övriga ändringar stöds inte.
+ */
+public class MappedUndirectedGraph<T> implements UndirectedGraph<T>, CompactView<T> {
+
+    private final NodeCodec<T> codec;
+    private final int numberOfNodes;
+    private final int numberOfEdges;
+    private final IntBuffer nameOffsets;
+    private final ByteBuffer names;
+    private final IntBuffer table;
+    private final IntBuffer offsets;
+    private final IntBuffer neighbors;
+    private final IntBuffer costs;
+
+    private CompactUndirectedGraph<T> compact;
+    private long totalWeight = -1;
+
+    // Scratch state for the searches, allocated on first use.
+    private int[] stamps;
+    private int stamp;
+    private int[] parent;
+    private int[] work;
+    private int[] cursor;
+
+    MappedUndirectedGraph(NodeCodec<T> codec, int numberOfNodes, int numberOfEdges, IntBuffer nameOffsets, ByteBuffer names,
+                          IntBuffer table, IntBuffer offsets, IntBuffer neighbors, IntBuffer costs) {
+        this.codec = codec;
+        this.numberOfNodes = numberOfNodes;
+        this.numberOfEdges = numberOfEdges;
+        this.nameOffsets = nameOffsets;
+        this.names = names;
+        this.table = table;
+        this.offsets = offsets;
+        this.neighbors = neighbors;
+        this.costs = costs;
+    }
+
+    /**
+     * Id:t för en nod eller -1 om noden inte finns.
+     */
+    int idOf(T node) {
+        byte[] key = codec.encode(node);
+        int mask = table.limit() - 1;
+        int slot = GraphSnapshot.hash(key) & mask;
+        int entry;
+        while ((entry = table.get(slot)) != 0) {
+            int id = entry - 1;
+            if (sameName(id, key)) {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private boolean sameName(int id, byte[] key) {
+        int start = nameOffsets.get(id);
+        if (nameOffsets.get(id + 1) - start != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (names.get(start + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    T nodeAt(int id) {
+        int start = nameOffsets.get(id);
+        return codec.decode(names, start, nameOffsets.get(id + 1) - start);
+    }
+
+    /**
+     * Reads the whole file into an in-memory compact graph, on first call only.
+     */
+    @Override
+    public CompactUndirectedGraph<T> compact() {
+        if (compact == null) {
+            CompactUndirectedGraph.Builder<T> builder = new CompactUndirectedGraph.Builder<>(numberOfNodes, numberOfEdges);
+            for (int id = 0; id < numberOfNodes; id++) {
+                builder.add(nodeAt(id));
+            }
+            for (int v = 0; v < numberOfNodes; v++) {
+                int limit = offsets.get(v + 1);
+                for (int k = offsets.get(v); k < limit; k++) {
+                    int w = neighbors.get(k);
+                    if (v <= w) {
+                        builder.connectIds(v, w, costs.get(k));
+                    }
+                }
+            }
+            compact = builder.build();
+        }
+        return compact;
+    }
+
+    @Override
+    public long version() {
+        return 0;
+    }
+
+    private int slotOf(int a, int b) {
+        int low = offsets.get(a);
+        int high = offsets.get(a + 1) - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int value = neighbors.get(mid);
+            if (value < b) {
+                low = mid + 1;
+            } else if (value > b) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private int nextStamp() {
+        if (stamps == null) {
+            stamps = new int[numberOfNodes];
+            parent = new int[numberOfNodes];
+            work = new int[numberOfNodes];
+            cursor = new int[numberOfNodes];
+        }
+        if (++stamp == 0) {
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+        return stamp;
+    }
+
+    @Override
+    public int getNumberOfNodes() {
+        return numberOfNodes;
+    }
+
+    @Override
+    public int getNumberOfEdges() {
+        return numberOfEdges;
+    }
+
+    /**
+     * Summeras vid första anropet, filen är oföränderlig.
+     */
+    @Override
+    public long getTotalWeight() {
+        if (totalWeight < 0) {
+            long weight = 0;
+            for (int v = 0; v < numberOfNodes; v++) {
+                int limit = offsets.get(v + 1);
+                for (int k = offsets.get(v); k < limit; k++) {
+                    if (v <= neighbors.get(k)) {
+                        weight += costs.get(k);
+                    }
+                }
+            }
+            totalWeight = weight;
+        }
+        return totalWeight;
+    }
+
+    @Override
+    public boolean add(T newNode) {
+        throw new UnsupportedOperationException("Error: A mapped snapshot is read-only!");
+    }
+
+    @Override
+    public int addAll(Collection<? extends T> newNodes) {
+        throw new UnsupportedOperationException("Error: A mapped snapshot is read-only!");
+    }
+
+    @Override
+    public boolean connect(T node1, T node2, int cost) {
+        throw new UnsupportedOperationException("Error: A mapped snapshot is read-only!");
+    }
+
+    @Override
+    public int connectAll(List<? extends T> from, List<? extends T> to, int[] costs) {
+        throw new UnsupportedOperationException("Error: A mapped snapshot is read-only!");
+    }
+
+    @Override
+    public boolean remove(T node) {
+        throw new UnsupportedOperationException("Error: A mapped snapshot is read-only!");
+    }
+
+    @Override
+    public boolean disconnect(T node1, T node2) {
+        throw new UnsupportedOperationException("Error: A mapped snapshot is read-only!");
+    }
+
+    @Override
+    public boolean isConnected(T node1, T node2) {
+        return getCost(node1, node2) != -1;
+    }
+
+    @Override
+    public int getCost(T node1, T node2) {
+        int a = idOf(node1);
+        int b = idOf(node2);
+        if (a < 0 || b < 0) {
+            return -1;
+        }
+        int slot = slotOf(a, b);
+        return slot >= 0 ? costs.get(slot) : -1;
+    }
+
+    /**
+     * Gör en iterativ djupet-först-sökning direkt i den mappade filen.
+     *
+     * @param start startnoden.
+     * @param end   slutnoden.
+     * @return en lista över alla noder på vägen mellan start- och slutnoden. Om
+     * ingen väg finns är listan tom.
+     */
+    @Override
+    public List<T> depthFirstSearch(T start, T end) {
+        int s = idOf(start);
+        int e = idOf(end);
+        if (s < 0 || e < 0) {
+            return new ArrayList<>();
+        }
+        int mark = nextStamp();
+        int depth = 0;
+        work[0] = s;
+        cursor[0] = offsets.get(s);
+        stamps[s] = mark;
+        while (depth >= 0) {
+            int v = work[depth];
+            if (v == e) {
+                List<T> path = new ArrayList<>(depth + 1);
+                for (int i = 0; i <= depth; i++) {
+                    path.add(nodeAt(work[i]));
+                }
+                return path;
+            }
+            int k = cursor[depth];
+            int limit = offsets.get(v + 1);
+            while (k < limit && stamps[neighbors.get(k)] == mark) {
+                k++;
+            }
+            if (k == limit) {
+                depth--;
+            } else {
+                cursor[depth] = k + 1;
+                int next = neighbors.get(k);
+                stamps[next] = mark;
+                depth++;
+                work[depth] = next;
+                cursor[depth] = offsets.get(next);
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Gör en bredden-först-sökning direkt i den mappade filen.
+     *
+     * @param start startnoden.
+     * @param end   slutnoden.
+     * @return en lista över alla noder på vägen mellan start- och slutnoden. Om
+     * ingen väg finns är listan tom.
+     */
+    @Override
+    public List<T> breadthFirstSearch(T start, T end) {
+        int s = idOf(start);
+        int e = idOf(end);
+        if (s < 0 || e < 0) {
+            return new ArrayList<>();
+        }
+        int mark = nextStamp();
+        int head = 0;
+        int tail = 0;
+        work[tail++] = s;
+        stamps[s] = mark;
+        parent[s] = -1;
+        boolean found = s == e;
+        while (!found && head < tail) {
+            int v = work[head++];
+            int limit = offsets.get(v + 1);
+            for (int k = offsets.get(v); k < limit; k++) {
+                int w = neighbors.get(k);
+                if (stamps[w] != mark) {
+                    stamps[w] = mark;
+                    parent[w] = v;
+                    if (w == e) {
+                        found = true;
+                        break;
+                    }
+                    work[tail++] = w;
+                }
+            }
+        }
+        LinkedList<T> path = new LinkedList<>();
+        if (found) {
+            for (int v = e; v != -1; v = parent[v]) {
+                path.addFirst(nodeAt(v));
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Returnerar ett minimalt spännande träd (en skog om grafen inte är
+     * sammanhängande). Trädet byggs i minnet som en
+     * {@link CompactUndirectedGraph}.
+     *
+     * @return en graf som representerar ett minimalt spännande träd.
+     */
+    @Override
+    public UndirectedGraph<T> minimumSpanningTree() {
+        int mark = nextStamp();
+        IndexedMinHeap heap = new IndexedMinHeap(numberOfNodes);
+        CompactUndirectedGraph.Builder<T> tree = new CompactUndirectedGraph.Builder<>(numberOfNodes, Math.max(0, numberOfNodes - 1));
+        for (int id = 0; id < numberOfNodes; id++) {
+            tree.add(nodeAt(id));
+        }
+        for (int root = 0; root < numberOfNodes; root++) {
+            if (stamps[root] == mark) {
+                continue;
+            }
+            parent[root] = -1;
+            heap.offer(root, 0);
+            while (!heap.isEmpty()) {
+                int v = heap.poll();
+                stamps[v] = mark;
+                if (parent[v] != -1) {
+                    tree.connectIds(parent[v], v, (int) heap.keyOf(v));
+                }
+                int limit = offsets.get(v + 1);
+                for (int k = offsets.get(v); k < limit; k++) {
+                    int w = neighbors.get(k);
+                    if (stamps[w] != mark && heap.offer(w, costs.get(k))) {
+                        parent[w] = v;
+                    }
+                }
+            }
+        }
+        return tree.build();
+    }
+}
@@ -1,12 +1,142 @@
 // @author joas47
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
-public class MyUndirectedGraph<T> implements UndirectedGraph<T> {
+public class MyUndirectedGraph<T> implements UndirectedGraph<T>, CompactView<T> {
 
-    private Map<T, Set<Edge<T>>> adjList = new HashMap<>();
+    // Each node maps its neighbours to the edge leading there, so an edge lookup is a single hash probe.
+    // Concurrent so that snapshots on other threads can look up node ids while the graph grows.
+    private Map<T, Vertex<T>> adjList = new ConcurrentHashMap<>();
+
+    // Vertices by id in fixed-size pages. A snapshot shares the directory and the pages, and
+    // the graph copies a page, or a vertex, the first time it writes to it after the snapshot.
+    private static final int PAGE_BITS = 10;
+    private static final int PAGE_MASK = (1 << PAGE_BITS) - 1;
+    private Vertex<T>[][] pages = newPages(0);
+    private int[] pageEpoch = new int[0];
+    private int directoryEpoch;
+    // Bumped by every snapshot, anything stamped with an older epoch may be shared.
+    private int epoch;
+    private UndirectedGraph<T> snapshot;
+    private int snapshotModCount;
+
+    // Node by id, the ids index the traversal scratch arrays below. A removed node leaves a
+    // null here and its id on the free list, and the next add takes it, so a removal never
+    // renumbers anything. compact() closes the gaps in its copy.
+    private ArrayList<T> nodes = new ArrayList<>();
+    private final CompactUndirectedGraph.IntList freeIds = new CompactUndirectedGraph.IntList();
 
     private int numberOfEdges;
+    private long totalWeight;
+
+    // Bumped on every change, used to know when the cached compact copy is stale.
+    private int modCount;
+    private CompactUndirectedGraph<T> compact;
+    private int compactModCount;
+
+    // Reusable traversal state. A node is visited when its stamp equals the current one,
+    // so clearing between searches is just an increment.
+    private int[] visitStamp = new int[0];
+    private int stamp;
+    private int[] via = new int[0];
+    private int[] stack = new int[16];
+    private int[] queue = new int[0];
+    private int[] queueBack = new int[0];
+    private int[] depth = new int[0];
+    private IndexedMinHeap heap = new IndexedMinHeap(0);
+
+    // Work done by the last depth- or breadth-first search, for InstrumentedUndirectedGraph.
+    // Only counted with -Dgraph.traceSearches=true; the switch is a static final so the JIT
+    // folds the counting away entirely when it is off.
+    static final boolean TRACE_SEARCHES = Boolean.getBoolean("graph.traceSearches");
+    private int lastNodesVisited;
+    private long lastEdgesScanned;
+
+    // Union-find over the connected components, by node id. A union is all connect needs, but
+    // a removal can split a component, so it only marks the structure stale and it is rebuilt
+    // by the next component query.
+    private int[] component = new int[16];
+    private byte[] rank = new byte[16];
+    private int[] componentSize = new int[16];
+    private int components;
+    private boolean componentsStale;
+
+    @SuppressWarnings("unchecked")
+    private static <T> Vertex<T>[][] newPages(int length) {
+        return (Vertex<T>[][]) new Vertex<?>[length][];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Vertex<T>[] newPage() {
+        return (Vertex<T>[]) new Vertex<?>[1 << PAGE_BITS];
+    }
+
+    private static final class Vertex<T> {
+        final T node;
+        final int id;
+        // The epoch the vertex was created in. A vertex from an earlier epoch may be part of
+        // a snapshot and is never changed in place.
+        final int epoch;
+        Map<T, Edge<T>> edges;
+
+        Vertex(T node, int id, int epoch, Map<T, Edge<T>> edges) {
+            this.node = node;
+            this.id = id;
+            this.epoch = epoch;
+            this.edges = edges;
+        }
+
+        Vertex<T> copy(int epoch, int id) {
+            Map<T, Edge<T>> copy = new HashMap<>(capacityFor(edges.size()));
+            for (Edge<T> edge : edges.values()) {
+                copy.put(edge.getDestination(), new Edge<>(edge.getDestination(), edge.getDestinationId(), edge.getCost()));
+            }
+            return new Vertex<>(node, id, epoch, copy);
+        }
+    }
+
+    private Vertex<T> vertex(int id) {
+        return pages[id >>> PAGE_BITS][id & PAGE_MASK];
+    }
+
+    private void store(int id, Vertex<T> vertex) {
+        int page = id >>> PAGE_BITS;
+        if (page >= pages.length) {
+            int capacity = Math.max(4, pages.length * 2);
+            pages = Arrays.copyOf(pages, capacity);
+            pageEpoch = Arrays.copyOf(pageEpoch, capacity);
+            directoryEpoch = epoch;
+        } else if (directoryEpoch != epoch) {
+            pages = pages.clone();
+            directoryEpoch = epoch;
+        }
+        if (pages[page] == null) {
+            pages[page] = newPage();
+            pageEpoch[page] = epoch;
+        } else if (pageEpoch[page] != epoch) {
+            pages[page] = pages[page].clone();
+            pageEpoch[page] = epoch;
+        }
+        pages[page][id & PAGE_MASK] = vertex;
+    }
+
+    /**
+     * The vertex itself if it belongs to the current epoch, otherwise a private copy that
+     * replaces it in the graph, leaving the original to the snapshots that hold it.
+     */
+    private Vertex<T> writable(Vertex<T> vertex) {
+        if (vertex.epoch == epoch) {
+            return vertex;
+        }
+        Vertex<T> copy = vertex.copy(epoch, vertex.id);
+        adjList.put(copy.node, copy);
+        store(copy.id, copy);
+        return copy;
+    }
 
     /**
      * Antalet noder i grafen.
@@ -28,6 +158,16 @@ public class MyUndirectedGraph<T> implements UndirectedGraph<T> {
         return numberOfEdges;
     }
 
+    /**
+     * Den totala vikten, dvs. summan av kostnaderna för alla bågar i grafen.
+     *
+     * @return den totala vikten.
+     */
+    @Override
+    public long getTotalWeight() {
+        return totalWeight;
+    }
+
     /**
      * Lägger till en ny nod i grafen.
      *
@@ -37,7 +177,28 @@ public class MyUndirectedGraph<T> implements UndirectedGraph<T> {
     @Override
     public boolean add(T newNode) {
         if (!adjList.containsKey(newNode)) {
-            adjList.put(newNode, new HashSet<>());
+            int id;
+            if (freeIds.size() > 0) {
+                id = freeIds.removeLast();
+                nodes.set(id, newNode);
+            } else {
+                id = nodes.size();
+                nodes.add(newNode);
+            }
+            Vertex<T> vertex = new Vertex<>(newNode, id, epoch, new HashMap<>());
+            adjList.put(newNode, vertex);
+            store(id, vertex);
+            if (id == component.length) {
+                int capacity = id * 2;
+                component = Arrays.copyOf(component, capacity);
+                rank = Arrays.copyOf(rank, capacity);
+                componentSize = Arrays.copyOf(componentSize, capacity);
+            }
+            component[id] = id;
+            rank[id] = 0;
+            componentSize[id] = 1;
+            components++;
+            modCount++;
             return true;
         } else {
             return false;
@@ -60,11 +221,17 @@ public class MyUndirectedGraph<T> implements UndirectedGraph<T> {
     @Override
     public boolean connect(T from, T to, int cost) {
         if (cost > 0) {
-            if (this.adjList.containsKey(from) && this.adjList.containsKey(to)) {
-                if (!isConnected(from, to)) {
-                    return connectHelper(from, to, cost);
+            Vertex<T> fromVertex = adjList.get(from);
+            Vertex<T> toVertex = adjList.get(to);
+            if (fromVertex != null && toVertex != null) {
+                modCount++;
+                fromVertex = writable(fromVertex);
+                toVertex = fromVertex.id == toVertex.id ? fromVertex : writable(toVertex);
+                Edge<T> existing = fromVertex.edges.get(to);
+                if (existing == null) {
+                    return connectHelper(from, to, cost, fromVertex, toVertex);
                 } else {
-                    return updateCost(from, to, cost);
+                    return updateCost(from, to, cost, existing, toVertex);
                 }
             } else {
                 // TODO: Throw new NSEE?
@@ -76,27 +243,186 @@ public class MyUndirectedGraph<T> implements UndirectedGraph<T> {
         }
     }
 
-    private boolean connectHelper(T from, T to, int cost) {
-        Set<Edge<T>> fromsEdges = adjList.get(from);
-        fromsEdges.add(new Edge<>(to, cost));
+    private boolean connectHelper(T from, T to, int cost, Vertex<T> fromVertex, Vertex<T> toVertex) {
+        fromVertex.edges.put(to, new Edge<>(to, toVertex.id, cost));
         if (!from.equals(to)) {
-            Set<Edge<T>> tosEdges = adjList.get(to);
-            tosEdges.add(new Edge<>(from, cost));
+            toVertex.edges.put(from, new Edge<>(from, fromVertex.id, cost));
         }
         numberOfEdges++;
+        totalWeight += cost;
+        if (!componentsStale) {
+            union(fromVertex.id, toVertex.id);
+        }
         return true;
     }
 
-    private boolean updateCost(T from, T to, int cost) {
-        Edge<T> edgeFromTo = getEdgeBetween(from, to);
+    private boolean updateCost(T from, T to, int cost, Edge<T> edgeFromTo, Vertex<T> toVertex) {
+        totalWeight += cost - edgeFromTo.getCost();
         edgeFromTo.setCost(cost);
         if (!from.equals(to)) {
-            Edge<T> edgeToFrom = getEdgeBetween(to, from);
-            edgeToFrom.setCost(cost);
+            toVertex.edges.get(from).setCost(cost);
         }
         return true;
     }
 
+    /**
+     * Tar bort en nod och alla dess bågar, i tid proportionell mot nodens
+     * grad. Inga andra noder flyttas: nodens id blir ledigt och återanvänds
+     * av nästa nod som läggs till.
+     *
+     * @param node noden som ska tas bort.
+     * @return false om noden inte finns.
+     */
+    @Override
+    public boolean remove(T node) {
+        Vertex<T> vertex = adjList.get(node);
+        if (vertex == null) {
+            return false;
+        }
+        modCount++;
+        componentsStale = true;
+        for (Edge<T> edge : vertex.edges.values()) {
+            int neighbor = edge.getDestinationId();
+            if (neighbor != vertex.id) {
+                writable(vertex(neighbor)).edges.remove(node);
+            }
+            numberOfEdges--;
+            totalWeight -= edge.getCost();
+        }
+        adjList.remove(node);
+        store(vertex.id, null);
+        nodes.set(vertex.id, null);
+        freeIds.add(vertex.id);
+        return true;
+    }
+
+    /**
+     * Tar bort bågen mellan två noder i konstant tid.
+     *
+     * @param from den ena noden.
+     * @param to   den andra noden.
+     * @return false om noderna inte var kopplade.
+     */
+    @Override
+    public boolean disconnect(T from, T to) {
+        Vertex<T> fromVertex = adjList.get(from);
+        Vertex<T> toVertex = adjList.get(to);
+        Edge<T> edge = fromVertex == null || toVertex == null ? null : fromVertex.edges.get(to);
+        if (edge == null) {
+            return false;
+        }
+        modCount++;
+        componentsStale = true;
+        writable(fromVertex).edges.remove(to);
+        if (fromVertex != toVertex) {
+            writable(toVertex).edges.remove(from);
+        }
+        numberOfEdges--;
+        totalWeight -= edge.getCost();
+        return true;
+    }
+
+    /**
+     * Lägger till flera noder på en gång. Nodtabellen växer högst en gång
+     * i stället för stegvis under tilläggen.
+     *
+     * @param newNodes noderna som ska läggas till.
+     * @return antalet noder som faktiskt lades till.
+     */
+    @Override
+    public int addAll(Collection<? extends T> newNodes) {
+        int expected = adjList.size() + newNodes.size();
+        if (expected > adjList.size() * 2) {
+            Map<T, Vertex<T>> resized = new ConcurrentHashMap<>(capacityFor(expected));
+            resized.putAll(adjList);
+            adjList = resized;
+        }
+        nodes.ensureCapacity(expected);
+        int added = 0;
+        for (T node : newNodes) {
+            if (add(node)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    /**
+     * Kopplar samman många par av noder på en gång, med samma resultat som
+     * om {@link #connect} anropats för varje båge i tur och ordning. Först
+     * räknas hur många bågar varje nod kan få, så att grannlistorna kan
+     * allokeras i rätt storlek, sedan läggs bågarna in i ett svep.
+     *
+     * @param from  ena änden av varje båge.
+     * @param to    andra änden av varje båge.
+     * @param costs kostnaden för varje båge.
+     * @return antalet bågar som kunde kopplas.
+     */
+    @Override
+    public int connectAll(List<? extends T> from, List<? extends T> to, int[] costs) {
+        if (from.size() != to.size() || from.size() != costs.length) {
+            throw new IllegalArgumentException("Error: Edge columns must have the same length!");
+        }
+        int m = costs.length;
+        List<Vertex<T>> froms = new ArrayList<>(m);
+        List<Vertex<T>> tos = new ArrayList<>(m);
+        int[] growth = new int[nodes.size()];
+        for (int i = 0; i < m; i++) {
+            Vertex<T> fromVertex = adjList.get(from.get(i));
+            Vertex<T> toVertex = adjList.get(to.get(i));
+            if (costs[i] <= 0 || fromVertex == null || toVertex == null) {
+                fromVertex = null;
+                toVertex = null;
+            } else {
+                fromVertex = writable(fromVertex);
+                toVertex = fromVertex.id == toVertex.id ? fromVertex : writable(toVertex);
+                growth[fromVertex.id]++;
+                if (fromVertex != toVertex) {
+                    growth[toVertex.id]++;
+                }
+            }
+            froms.add(fromVertex);
+            tos.add(toVertex);
+        }
+        // Upper bound on the final degree, duplicates and existing edges only make it too big.
+        for (int id = 0; id < growth.length; id++) {
+            if (growth[id] > 0) {
+                Vertex<T> vertex = vertex(id);
+                int expected = vertex.edges.size() + growth[id];
+                if (expected > 12) {
+                    Map<T, Edge<T>> resized = new HashMap<>(capacityFor(expected));
+                    resized.putAll(vertex.edges);
+                    vertex.edges = resized;
+                }
+            }
+        }
+        int connected = 0;
+        for (int i = 0; i < m; i++) {
+            Vertex<T> fromVertex = froms.get(i);
+            Vertex<T> toVertex = tos.get(i);
+            if (fromVertex == null) {
+                continue;
+            }
+            T a = from.get(i);
+            T b = to.get(i);
+            Edge<T> existing = fromVertex.edges.get(b);
+            if (existing == null) {
+                connectHelper(a, b, costs[i], fromVertex, toVertex);
+            } else {
+                updateCost(a, b, costs[i], existing, toVertex);
+            }
+            connected++;
+        }
+        if (connected > 0) {
+            modCount++;
+        }
+        return connected;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        return (int) (expectedSize / 0.75f) + 1;
+    }
+
     /**
      * Berättar om två noder är sammanbundna av en båge eller inte.
      *
@@ -114,28 +440,138 @@ public class MyUndirectedGraph<T> implements UndirectedGraph<T> {
         // Return edge between nodes.
         // If either node is missing return NULL
         // If no edge between nodes, RETURN NULL
-        Set<Edge<T>> fromsEdges = getEdgesFrom(from);
-        // Don't remove. throws necessary exception.
-        Set<Edge<T>> tosEdges = getEdgesFrom(to);
-        if (fromsEdges != null && tosEdges != null) {
-            for (Edge<T> edge : fromsEdges) {
-                if (edge.getDestination().equals(to)) {
-                    return edge;
+        Vertex<T> fromVertex = adjList.get(from);
+        if (fromVertex != null) {
+            return fromVertex.edges.get(to);
+        }
+        return null;
+    }
+
+    private int find(int id) {
+        int root = id;
+        while (component[root] != root) {
+            root = component[root];
+        }
+        // Path compression: point everything on the way directly at the root.
+        while (component[id] != root) {
+            int next = component[id];
+            component[id] = root;
+            id = next;
+        }
+        return root;
+    }
+
+    private void union(int a, int b) {
+        int rootA = find(a);
+        int rootB = find(b);
+        if (rootA == rootB) {
+            return;
+        }
+        if (rank[rootA] < rank[rootB]) {
+            int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        component[rootB] = rootA;
+        componentSize[rootA] += componentSize[rootB];
+        if (rank[rootA] == rank[rootB]) {
+            rank[rootA]++;
+        }
+        components--;
+    }
+
+    /**
+     * Berättar om det finns en väg mellan två noder, i nästan konstant tid.
+     *
+     * @param node1 den ena noden.
+     * @param node2 den andra noden.
+     * @return true om bägge noderna finns och ligger i samma komponent.
+     */
+    public boolean sameComponent(T node1, T node2) {
+        Vertex<T> a = adjList.get(node1);
+        Vertex<T> b = adjList.get(node2);
+        if (a == null || b == null) {
+            return false;
+        }
+        ensureComponents();
+        return find(a.id) == find(b.id);
+    }
+
+    /**
+     * False only if the nodes are known to be in different components. Never rebuilds, a
+     * stale structure just answers true.
+     */
+    private boolean mayReach(Vertex<T> a, Vertex<T> b) {
+        return componentsStale || find(a.id) == find(b.id);
+    }
+
+    private void ensureComponents() {
+        if (!componentsStale) {
+            return;
+        }
+        int n = nodes.size();
+        for (int id = 0; id < n; id++) {
+            component[id] = id;
+            rank[id] = 0;
+            componentSize[id] = 1;
+        }
+        // Free ids stay roots of their own but are not counted.
+        components = adjList.size();
+        for (int id = 0; id < n; id++) {
+            Vertex<T> vertex = vertex(id);
+            if (vertex != null) {
+                for (Edge<T> edge : vertex.edges.values()) {
+                    union(id, edge.getDestinationId());
                 }
             }
         }
-        return null;
+        componentsStale = false;
     }
 
-    private Set<Edge<T>> getEdgesFrom(T t) {
-        // Return a COPY of set of all edges from this node.
-        // If node is missing, return NULL
-        Set<Edge<T>> set = adjList.get(t);
-        if (set != null) {
-            return Set.copyOf(set);
-        } else {
-            return null;
+    /**
+     * Antalet sammanhängande komponenter i grafen.
+     *
+     * @return antalet komponenter, där en nod utan bågar räknas som en egen.
+     */
+    public int componentCount() {
+        ensureComponents();
+        return components;
+    }
+
+    /**
+     * Antalet noder i komponenten som en nod ligger i.
+     *
+     * @param node noden.
+     * @return komponentens storlek, eller 0 om noden inte finns.
+     */
+    public int componentSize(T node) {
+        Vertex<T> vertex = adjList.get(node);
+        if (vertex == null) {
+            return 0;
         }
+        ensureComponents();
+        return componentSize[find(vertex.id)];
+    }
+
+    int idOf(T node) {
+        // Id below idBound(), or -1 if the node is missing.
+        Vertex<T> vertex = adjList.get(node);
+        return vertex == null ? -1 : vertex.id;
+    }
+
+    List<T> nodes() {
+        // In id order, with null at the free ids.
+        return Collections.unmodifiableList(nodes);
+    }
+
+    int idBound() {
+        // All ids, live or free, are below this.
+        return nodes.size();
+    }
+
+    Collection<Edge<T>> edgesFrom(T node) {
+        // Not a copy, callers must not modify the graph while iterating.
+        return Collections.unmodifiableCollection(adjList.get(node).edges.values());
     }
 
     /**
@@ -147,11 +583,11 @@ public class MyUndirectedGraph<T> implements UndirectedGraph<T> {
      * är kopplade.
      */
     @Override
-    // TODO: kostnad för att ta sig mellan två noder som inte är kopplade direkt?
-    //  Just nu bara två direktkopplade noder
+    // Only directly connected nodes, see shortestPath for the cost between any two nodes.
     public int getCost(T to, T from) {
-        if (isConnected(to, from)) {
-            return getEdgeBetween(to, from).getCost();
+        Edge<T> edge = getEdgeBetween(to, from);
+        if (edge != null) {
+            return edge.getCost();
         } else {
             return -1;
         }
@@ -169,53 +605,113 @@ public class MyUndirectedGraph<T> implements UndirectedGraph<T> {
      */
     @Override
     public List<T> depthFirstSearch(T start, T end) {
-        List<T> list = new LinkedList<>();
-        if (adjList.containsKey(start) && adjList.containsKey(end)) {
-            list = getAPath(start, end);
-            if (list != null) {
-                list.add(0, start);
-                return list;
+        Vertex<T> startVertex = adjList.get(start);
+        Vertex<T> endVertex = adjList.get(end);
+        if (TRACE_SEARCHES) {
+            resetTrace();
+        }
+        // Nodes in different components are rejected before searching.
+        if (startVertex != null && endVertex != null && mayReach(startVertex, endVertex)) {
+            if (depthFirstSearcher(startVertex.id, endVertex.id)) {
+                return gatherPath(startVertex.id, endVertex.id);
             }
-            return new LinkedList<>();
         }
-        return list;
+        return new LinkedList<>();
     }
 
-    private List<T> getAPath(T from, T to) {
-        Set<T> visited = new HashSet<>();
-        Map<T, T> via = new HashMap<>();
-        depthFirstSearcher(from, null, visited, via);
-        if (!visited.contains(to)) {
-            return null;
+    private boolean depthFirstSearcher(int from, int to) {
+        // Explicit stack of (node, reached from) pairs instead of recursion, so long chains
+        // can't overflow the call stack. A node is finished when it is popped, which is also
+        // when the search stops if it is the target.
+        int mark = nextStamp();
+        int top = 0;
+        stack[top++] = from;
+        stack[top++] = -1;
+        while (top > 0) {
+            int whereFrom = stack[--top];
+            int where = stack[--top];
+            if (visitStamp[where] == mark) {
+                continue;
+            }
+            visitStamp[where] = mark;
+            via[where] = whereFrom;
+            if (TRACE_SEARCHES) {
+                lastNodesVisited++;
+            }
+            if (where == to) {
+                return true;
+            }
+            for (Edge<T> e : vertex(where).edges.values()) {
+                int dest = e.getDestinationId();
+                if (TRACE_SEARCHES) {
+                    lastEdgesScanned++;
+                }
+                if (visitStamp[dest] != mark) {
+                    if (top + 2 > stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[top++] = dest;
+                    stack[top++] = where;
+                }
+            }
         }
-        return gatherPath(from, to, via);
+        return false;
     }
 
-    private void depthFirstSearcher(T where, T whereFrom, Set<T> visited, Map<T, T> via) {
-        visited.add(where);
-        via.put(where, whereFrom);
-        for (Edge<T> e : adjList.get(where)) {
-            if (!visited.contains(e.getDestination())) {
-                depthFirstSearcher(e.getDestination(), where, visited, via);
-            }
-        }
+    private int nextStamp() {
+        return nextStamp(1);
     }
 
-    private List<T> gatherPath(T from, T to, Map<T, T> via) {
-        List<Edge<T>> path = new ArrayList<>();
-        T where = to;
-        while (!where.equals(from)) {
-            T node = via.get(where);
-            Edge<T> e = getEdgeBetween(node, where);
-            path.add(e);
-            where = node;
+    /**
+     * Reserves {@code count} consecutive stamp values and returns the first.
+     */
+    private int nextStamp(int count) {
+        if (visitStamp.length < nodes.size()) {
+            int capacity = Math.max(nodes.size(), visitStamp.length * 2);
+            visitStamp = new int[capacity];
+            via = new int[capacity];
+            queue = new int[capacity];
+            queueBack = new int[capacity];
+            depth = new int[capacity];
+            stamp = 0;
         }
-        Collections.reverse(path);
-        List<T> nodePath = new LinkedList<>();
-        for (Edge<T> e : path) {
-            nodePath.add(e.getDestination());
+        if (stamp > Integer.MAX_VALUE - count) {
+            Arrays.fill(visitStamp, 0);
+            stamp = 0;
         }
-        return nodePath;
+        int first = stamp + 1;
+        stamp += count;
+        return first;
+    }
+
+    private void resetTrace() {
+        lastNodesVisited = 0;
+        lastEdgesScanned = 0;
+    }
+
+    /**
+     * Antalet noder som den senaste djupet- eller bredden-först-sökningen
+     * besökte. Räknas bara när {@link #TRACE_SEARCHES} är på, annars 0.
+     */
+    int lastNodesVisited() {
+        return lastNodesVisited;
+    }
+
+    /**
+     * Antalet bågar som den senaste djupet- eller bredden-först-sökningen
+     * gick igenom. Räknas bara när {@link #TRACE_SEARCHES} är på, annars 0.
+     */
+    long lastEdgesScanned() {
+        return lastEdgesScanned;
+    }
+
+    private LinkedList<T> gatherPath(int from, int to) {
+        LinkedList<T> path = new LinkedList<>();
+        for (int where = to; where != from; where = via[where]) {
+            path.addFirst(nodes.get(where));
+        }
+        path.addFirst(nodes.get(from));
+        return path;
     }
 
     /**
@@ -231,79 +727,823 @@ public class MyUndirectedGraph<T> implements UndirectedGraph<T> {
      */
     @Override
     public List<T> breadthFirstSearch(T start, T end) {
-        List<T> list = new LinkedList<>();
-        if (adjList.containsKey(start) && adjList.containsKey(end)) {
-            list = breadthFirstSearcher(start, end);
-            if (list != null) {
-                list.add(0, start);
-                return list;
+        Vertex<T> startVertex = adjList.get(start);
+        Vertex<T> endVertex = adjList.get(end);
+        if (TRACE_SEARCHES) {
+            resetTrace();
+        }
+        if (startVertex != null && endVertex != null && mayReach(startVertex, endVertex)) {
+            if (breadthFirstSearcher(startVertex.id, endVertex.id)) {
+                return gatherPath(startVertex.id, endVertex.id);
             }
+        }
+        return new LinkedList<>();
+    }
+
+    private boolean breadthFirstSearcher(int from, int to) {
+        int mark = nextStamp();
+        int head = 0;
+        int tail = 0;
+        visitStamp[from] = mark;
+        via[from] = -1;
+        queue[tail++] = from;
+        if (TRACE_SEARCHES) {
+            lastNodesVisited++;
+        }
+        if (from == to) {
+            return true;
+        }
+        while (head < tail) {
+            int node = queue[head++];
+            for (Edge<T> e : vertex(node).edges.values()) {
+                int dest = e.getDestinationId();
+                if (TRACE_SEARCHES) {
+                    lastEdgesScanned++;
+                }
+                if (visitStamp[dest] != mark) {
+                    visitStamp[dest] = mark;
+                    via[dest] = node;
+                    if (TRACE_SEARCHES) {
+                        lastNodesVisited++;
+                    }
+                    // Stop at discovery rather than at dequeue, the first time the target is
+                    // seen is already along a shortest path.
+                    if (dest == to) {
+                        return true;
+                    }
+                    queue[tail++] = dest;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gör en bredden-först-sökning från båda ändarna samtidigt. Den sida som
+     * har minst front expanderas en hel nivå i taget, och sökningen avbryts
+     * när fronterna möts. Vägen är fortfarande en av de kortaste räknat i
+     * antal bågar, men betydligt färre noder besöks i grafer med liten
+     * diameter.
+     * <p>
+     * Observera att denna metod inte använder sig av viktinformationen.
+     *
+     * @param start startnoden.
+     * @param end   slutnoden.
+     * @return en lista över alla noder på vägen mellan start- och slutnoden. Om
+     * ingen väg finns är listan tom.
+     */
+    public List<T> bidirectionalBreadthFirstSearch(T start, T end) {
+        Vertex<T> startVertex = adjList.get(start);
+        Vertex<T> endVertex = adjList.get(end);
+        if (startVertex == null || endVertex == null || !mayReach(startVertex, endVertex)) {
             return new LinkedList<>();
         }
-        return list;
-    }
-
-    private List<T> breadthFirstSearcher(T from, T to) {
-        LinkedList<T> queue = new LinkedList<>();
-        Set<T> visited = new HashSet<>();
-        Map<T, T> via = new HashMap<>();
-        visited.add(from);
-        queue.addLast(from);
-        while (!queue.isEmpty()) {
-            T node = queue.pollFirst();
-            for (Edge<T> e : adjList.get(node)) {
-                T dest = e.getDestination();
-                if (!visited.contains(dest)) {
-                    visited.add(dest);
-                    queue.add(dest);
-                    via.put(dest, node);
+        int from = startVertex.id;
+        int to = endVertex.id;
+        if (from == to) {
+            return gatherPath(from, to);
+        }
+        // Forward nodes carry stamp mark, backward nodes mark + 1. A node only ever belongs
+        // to one side since the search stops at the first level where the sides touch.
+        int mark = nextStamp(2);
+        int back = mark + 1;
+        visitStamp[from] = mark;
+        visitStamp[to] = back;
+        via[from] = -1;
+        via[to] = -1;
+        depth[from] = 0;
+        depth[to] = 0;
+        queue[0] = from;
+        queueBack[0] = to;
+        int head = 0;
+        int tail = 1;
+        int headBack = 0;
+        int tailBack = 1;
+        int bestLength = Integer.MAX_VALUE;
+        int meetForward = -1;
+        int meetBackward = -1;
+        while (head < tail && headBack < tailBack && meetForward < 0) {
+            boolean forward = tail - head <= tailBack - headBack;
+            int[] q = forward ? queue : queueBack;
+            int own = forward ? mark : back;
+            int other = forward ? back : mark;
+            int levelStart = forward ? head : headBack;
+            int levelEnd = forward ? tail : tailBack;
+            int next = levelEnd;
+            for (int i = levelStart; i < levelEnd; i++) {
+                int node = q[i];
+                for (Edge<T> e : vertex(node).edges.values()) {
+                    int dest = e.getDestinationId();
+                    int seen = visitStamp[dest];
+                    if (seen == other) {
+                        // Finish the level, a later node in it may still give a shorter meeting.
+                        int length = depth[node] + 1 + depth[dest];
+                        if (length < bestLength) {
+                            bestLength = length;
+                            meetForward = forward ? node : dest;
+                            meetBackward = forward ? dest : node;
+                        }
+                    } else if (seen != own) {
+                        visitStamp[dest] = own;
+                        via[dest] = node;
+                        depth[dest] = depth[node] + 1;
+                        q[next++] = dest;
+                    }
                 }
             }
+            if (forward) {
+                head = levelEnd;
+                tail = next;
+            } else {
+                headBack = levelEnd;
+                tailBack = next;
+            }
+        }
+        if (meetForward < 0) {
+            return new LinkedList<>();
         }
-        if (!visited.contains(to)) {
-            return null;
+        LinkedList<T> path = gatherPath(from, meetForward);
+        for (int where = meetBackward; where != -1; where = via[where]) {
+            path.addLast(nodes.get(where));
         }
-        return gatherPath(from, to, via);
+        return path;
     }
 
     /**
-     * Returnerar en ny graf som utgör ett minimalt spännande träd till grafen.
-     * Ni kan förutsätta att alla noder ingår i samma graf.
+     * Börjar en lat genomgång av grafen från en nod. Se {@link Traversal}.
+     *
+     * @param start startnoden.
+     * @return genomgången, som kan begränsas innan den körs.
+     */
+    public Traversal<T> traverse(T start) {
+        return new Traversal<>(this, start);
+    }
+
+    TraversalIterator<T> breadthFirstIterator(T start, int maxDepth, Predicate<? super T> filter, int budget) {
+        Vertex<T> vertex = adjList.get(start);
+        return new BreadthFirstIterator(vertex == null ? -1 : vertex.id, maxDepth, filter, budget);
+    }
+
+    TraversalIterator<T> depthFirstIterator(T start, int maxDepth, Predicate<? super T> filter, int budget) {
+        Vertex<T> vertex = adjList.get(start);
+        return new DepthFirstIterator(vertex == null ? -1 : vertex.id, maxDepth, filter, budget);
+    }
+
+    /**
+     * Shared state of the lazy traversals. A returned node is only expanded when the next
+     * one is asked for, so stopping early never pays for the rest of the frontier. The
+     * frontier holds (node, depth) pairs, and seen only holds the nodes reached so far, so
+     * neither grows with the rest of the graph.
+     */
+    private abstract class LazyTraversal implements TraversalIterator<T> {
+        private final int expectedModCount = modCount;
+        final int maxDepth;
+        final Predicate<? super T> filter;
+        // Reached node -> depth, see the subclasses for what the depth means.
+        final IntIntMap seen = new IntIntMap();
+        int[] frontier = new int[16];
+        private int budget;
+        // Found by advance but not returned yet.
+        int ready = -1;
+        int readyDepth;
+        // Returned but not expanded yet.
+        private int current = -1;
+        private int currentDepth = -1;
+
+        LazyTraversal(int maxDepth, Predicate<? super T> filter, int budget) {
+            this.maxDepth = maxDepth;
+            this.filter = filter;
+            this.budget = budget;
+        }
+
+        abstract void push(int node, int depth);
+
+        /**
+         * Whether reaching node at depth is worth a push.
+         */
+        boolean wanted(int node, int depth) {
+            return !seen.containsKey(node);
+        }
+
+        void expand(int node, int depth) {
+            if (depth < maxDepth) {
+                for (Edge<T> e : vertex(node).edges.values()) {
+                    int dest = e.getDestinationId();
+                    if (wanted(dest, depth + 1)) {
+                        push(dest, depth + 1);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Sets ready to the next node to return, or returns false if there is none.
+         */
+        abstract boolean advance();
+
+        @Override
+        public boolean hasNext() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (ready >= 0) {
+                return true;
+            }
+            if (budget == 0) {
+                return false;
+            }
+            if (current >= 0) {
+                expand(current, currentDepth);
+                current = -1;
+            }
+            return advance();
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            current = ready;
+            currentDepth = readyDepth;
+            ready = -1;
+            budget--;
+            return nodes.get(current);
+        }
+
+        @Override
+        public int depth() {
+            if (currentDepth < 0) {
+                throw new IllegalStateException("Error: next() has not been called!");
+            }
+            return currentDepth;
+        }
+    }
+
+    /**
+     * Nodes are marked seen when discovered, so each is queued at most once and its depth
+     * is its distance from the start.
+     */
+    private final class BreadthFirstIterator extends LazyTraversal {
+        private int head;
+        private int tail;
+
+        BreadthFirstIterator(int start, int maxDepth, Predicate<? super T> filter, int budget) {
+            super(maxDepth, filter, budget);
+            if (start >= 0) {
+                push(start, 0);
+            }
+        }
+
+        @Override
+        void push(int node, int depth) {
+            seen.put(node, depth);
+            if (!filter.test(nodes.get(node))) {
+                return;
+            }
+            if (tail + 2 > frontier.length) {
+                // Slide the queue back to the start when at least half of it is consumed,
+                // so the array follows the size of the frontier and not of the traversal.
+                if (head >= frontier.length / 2) {
+                    System.arraycopy(frontier, head, frontier, 0, tail - head);
+                    tail -= head;
+                    head = 0;
+                } else {
+                    frontier = Arrays.copyOf(frontier, frontier.length * 2);
+                }
+            }
+            frontier[tail++] = node;
+            frontier[tail++] = depth;
+        }
+
+        @Override
+        boolean advance() {
+            if (head == tail) {
+                return false;
+            }
+            ready = frontier[head++];
+            readyDepth = frontier[head++];
+            return true;
+        }
+    }
+
+    /**
+     * Nodes are marked seen when popped, like in depthFirstSearcher, so the stack may hold a
+     * node more than once and the order is the same as the search.
+     * <p>
+     * With a depth limit, the path that first reaches a node may be longer than needed, and
+     * the nodes behind it would be cut off although they are within reach. So the shallowest
+     * depth each node was expanded at is kept in seen, -1 if the filter rejected it, and a
+     * node reached again at a smaller depth is expanded again, without being returned a
+     * second time. Each node is expanded at most maxDepth + 1 times.
+     */
+    private final class DepthFirstIterator extends LazyTraversal {
+        private int top;
+        private final boolean limited;
+
+        DepthFirstIterator(int start, int maxDepth, Predicate<? super T> filter, int budget) {
+            super(maxDepth, filter, budget);
+            limited = maxDepth != Integer.MAX_VALUE;
+            if (start >= 0) {
+                push(start, 0);
+            }
+        }
+
+        @Override
+        boolean wanted(int node, int depth) {
+            int shallowest = seen.get(node);
+            return shallowest == IntIntMap.MISSING || (limited && depth < shallowest);
+        }
+
+        @Override
+        void push(int node, int depth) {
+            if (top + 2 > frontier.length) {
+                frontier = Arrays.copyOf(frontier, frontier.length * 2);
+            }
+            frontier[top++] = node;
+            frontier[top++] = depth;
+        }
+
+        @Override
+        boolean advance() {
+            while (top > 0) {
+                int depth = frontier[--top];
+                int node = frontier[--top];
+                int shallowest = seen.get(node);
+                if (shallowest == IntIntMap.MISSING) {
+                    if (filter.test(nodes.get(node))) {
+                        seen.put(node, depth);
+                        ready = node;
+                        readyDepth = depth;
+                        return true;
+                    }
+                    seen.put(node, -1);
+                } else if (limited && depth < shallowest) {
+                    // Already returned, but now closer to the start: expand it again.
+                    seen.put(node, depth);
+                    expand(node, depth);
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Open-addressed map from node id to int, sized by the number of entries rather than by
+     * the graph, for the lazy traversals.
+     */
+    static final class IntIntMap {
+        static final int MISSING = Integer.MIN_VALUE;
+        private int[] keys = newKeys(16);
+        private int[] values = new int[16];
+        private int size;
+
+        private static int[] newKeys(int capacity) {
+            int[] keys = new int[capacity];
+            Arrays.fill(keys, -1);
+            return keys;
+        }
+
+        private int slot(int key) {
+            int mask = keys.length - 1;
+            int h = key * 0x9E3779B9;
+            int i = (h ^ h >>> 16) & mask;
+            while (keys[i] != -1 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            return i;
+        }
+
+        boolean containsKey(int key) {
+            return keys[slot(key)] == key;
+        }
+
+        /**
+         * The value of key, or MISSING if it has none.
+         */
+        int get(int key) {
+            int i = slot(key);
+            return keys[i] == key ? values[i] : MISSING;
+        }
+
+        void put(int key, int value) {
+            int i = slot(key);
+            if (keys[i] != key) {
+                if (2 * (size + 1) > keys.length) {
+                    grow();
+                    i = slot(key);
+                }
+                keys[i] = key;
+                size++;
+            }
+            values[i] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        private void grow() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = newKeys(oldKeys.length * 2);
+            values = new int[oldKeys.length * 2];
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != -1) {
+                    int i = slot(oldKeys[j]);
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Gör en parallell bredden-först-genomgång av hela komponenten som
+     * startnoden ligger i. Varje nivå bearbetas på fork-join-poolen, och
+     * varje steg väljer mellan att gå ut från fronten eller att låta de
+     * obesökta noderna leta efter en granne i fronten, beroende på vilket som
+     * kräver minst arbete.
+     * <p>
+     * Observera att denna metod inte använder sig av viktinformationen.
+     *
+     * @param start startnoden.
+     * @return avstånd och föregångare för alla noder i grafen.
+     */
+    public HopDistances<T> parallelBreadthFirstSearch(T start) {
+        return compact().parallelBreadthFirstSearch(start);
+    }
+
+    /**
+     * Beräknar avståndet i antal bågar från var och en av startnoderna till
+     * alla noder, 64 startnoder i taget på en kompakt kopia av grafen. Se
+     * {@link CompactUndirectedGraph#multiSourceBreadthFirstSearch(List)}.
+     *
+     * @param sources startnoderna.
+     * @return avstånden från varje startnod till alla noder i grafen.
+     */
+    public HopDistanceMatrix<T> multiSourceBreadthFirstSearch(List<? extends T> sources) {
+        return compact().multiSourceBreadthFirstSearch(sources);
+    }
+
+    /**
+     * Gör en bredden-först-sökning för varje par av start- och slutnoder,
+     * parallellt på en kompakt kopia av grafen. Se
+     * {@link CompactUndirectedGraph#breadthFirstSearchAll(List, List)}.
+     *
+     * @param starts startnoderna.
+     * @param ends   slutnoderna.
+     * @return vägarna i samma ordning som frågorna, tomma där ingen väg finns.
+     */
+    public List<List<T>> breadthFirstSearchAll(List<? extends T> starts, List<? extends T> ends) {
+        return compact().breadthFirstSearchAll(starts, ends);
+    }
+
+    /**
+     * Gör en djupet-först-sökning för varje par av start- och slutnoder,
+     * parallellt på en kompakt kopia av grafen. Se
+     * {@link CompactUndirectedGraph#depthFirstSearchAll(List, List)}.
+     *
+     * @param starts startnoderna.
+     * @param ends   slutnoderna.
+     * @return vägarna i samma ordning som frågorna, tomma där ingen väg finns.
+     */
+    public List<List<T>> depthFirstSearchAll(List<? extends T> starts, List<? extends T> ends) {
+        return compact().depthFirstSearchAll(starts, ends);
+    }
+
+    /**
+     * Hittar den billigaste vägen mellan två noder, till skillnad från
+     * {@link #getCost} som bara ser direkta bågar. Sökningen görs med
+     * Dijkstras algoritm på en kompakt kopia av grafen, som byggs om först
+     * när grafen har ändrats.
+     *
+     * @param start startnoden.
+     * @param end   slutnoden.
+     * @return vägen och dess kostnad, med kostnaden -1 om ingen väg finns.
+     */
+    public ShortestPath<T> shortestPath(T start, T end) {
+        Vertex<T> startVertex = adjList.get(start);
+        Vertex<T> endVertex = adjList.get(end);
+        if (startVertex == null || endVertex == null || !mayReach(startVertex, endVertex)) {
+            return ShortestPath.none();
+        }
+        return compact().shortestPath(start, end);
+    }
+
+    /**
+     * Sparar grafen i {@link GraphSnapshot}-formatet, som kan öppnas igen med
+     * {@link GraphSnapshot#open} utan att grafen behöver byggas upp.
+     *
+     * @param file  filen, som skrivs över om den finns.
+     * @param codec hur noderna skrivs som bytes.
+     * @throws IOException om filen inte kan skrivas.
+     */
+    public void save(Path file, NodeCodec<T> codec) throws IOException {
+        GraphSnapshot.save(compact(), codec, file);
+    }
+
+    /**
+     * A compact copy of the graph, rebuilt lazily after changes. Its ids are dense, so they
+     * differ from the graph's once a node has been removed.
+     */
+    @Override
+    public CompactUndirectedGraph<T> compact() {
+        if (compact == null || compactModCount != modCount) {
+            compact = CompactUndirectedGraph.from(this);
+            compactModCount = modCount;
+        }
+        return compact;
+    }
+
+    @Override
+    public long version() {
+        return modCount;
+    }
+
+    /**
+     * Beräknar ett minimalt spännande träd parallellt med Borůvkas algoritm på
+     * en kompakt kopia av grafen. Till skillnad från
+     * {@link #minimumSpanningTree()} behöver grafen inte vara sammanhängande;
+     * då blir resultatet en spännande skog.
+     *
+     * @return en graf som representerar ett minimalt spännande träd.
+     */
+    public UndirectedGraph<T> parallelMinimumSpanningTree() {
+        return compact().parallelMinimumSpanningTree();
+    }
+
+    /**
+     * Returnerar ett minimalt spännande träd till grafen, beräknat med Prims
+     * algoritm över en indexerad heap. Resultatet är en skrivskyddad
+     * {@link SpanningTree} som bara lagrar förälder och kostnad per nod. Är
+     * grafen inte sammanhängande blir resultatet en spännande skog.
      *
      * @return en graf som representerar ett minimalt spännande träd.
      */
     @Override
     public UndirectedGraph<T> minimumSpanningTree() {
-        UndirectedGraph<T> mst = new MyUndirectedGraph<>();
-        // Workaround for getting an element out of a Set.
-        ArrayList<T> workaround = new ArrayList<>();
-        Set<T> nodes = adjList.keySet();
-        for (T node : nodes) {
-            mst.add(node);
-            workaround.add(node);
-        }
-        int numberOfNodes = mst.getNumberOfNodes();
-        int edgesInMST = numberOfNodes - 1;
-        PriorityQueue<Edge<T>> priorityQueue = new PriorityQueue<>(Edge::compareTo);
-        Set<T> visited = new HashSet<>();
-        primsAlgo(workaround.get(0), mst, priorityQueue, visited, edgesInMST);
-        return mst;
-    }
-
-    private void primsAlgo(T node, UndirectedGraph<T> mst, PriorityQueue<Edge<T>> priorityQueue, Set<T> visited, int edgesInMST) {
-        Set<Edge<T>> edges = getEdgesFrom(node);
-        for (Edge<T> edge : edges) {
-            if (!edge.getDestination().equals(node) && !visited.contains(edge.getDestination())) {
-                priorityQueue.add(edge);
-            }
-        }
-        visited.add(node);
-        while (!priorityQueue.isEmpty() && mst.getNumberOfEdges() <= edgesInMST) {
-            Edge<T> minEdge = priorityQueue.poll();
-            if (!visited.contains(minEdge.getDestination())) {
-                mst.connect(node, minEdge.getDestination(), minEdge.getCost());
-                primsAlgo(minEdge.getDestination(), mst, priorityQueue, visited, edgesInMST);
+        heap.ensureCapacity(nodes.size());
+        return primSpanningTree(pages, new ArrayList<>(nodes), heap);
+    }
+
+    private static <T> SpanningTree<T> primSpanningTree(Vertex<T>[][] pages, List<T> nodes, IndexedMinHeap heap) {
+        int n = nodes.size();
+        int[] parent = new int[n];
+        int[] cost = new int[n];
+        int[] level = new int[n];
+        boolean[] done = new boolean[n];
+        for (int root = 0; root < n; root++) {
+            if (done[root] || nodes.get(root) == null) {
+                continue;
+            }
+            parent[root] = -1;
+            heap.offer(root, 0);
+            while (!heap.isEmpty()) {
+                int v = heap.poll();
+                done[v] = true;
+                if (parent[v] != -1) {
+                    cost[v] = (int) heap.keyOf(v);
+                    level[v] = level[parent[v]] + 1;
+                }
+                for (Edge<T> edge : pages[v >>> PAGE_BITS][v & PAGE_MASK].edges.values()) {
+                    int w = edge.getDestinationId();
+                    // The heap entry for w records v as the source of its cheapest edge.
+                    if (!done[w] && heap.offer(w, edge.getCost())) {
+                        parent[w] = v;
+                    }
+                }
+            }
+        }
+        return SpanningTree.withoutGaps(nodes, parent, cost, level);
+    }
+
+    /**
+     * Returnerar en skrivskyddad kopia av grafen som den ser ut just nu.
+     * Kopian tar konstant tid att skapa: den delar noder och bågar med
+     * grafen, och grafen kopierar en nod först när den ändras efter att
+     * kopian skapades. Kopian påverkas alltså inte av senare ändringar, och
+     * kan läsas från andra trådar medan grafen fortsätter att byggas på.
+     * Gamla versioner av noderna städas bort av skräpsamlaren när ingen
+     * kopia längre håller dem.
+     *
+     * @return grafen vid anropet, som inte kan ändras.
+     */
+    public UndirectedGraph<T> snapshot() {
+        if (snapshot == null || snapshotModCount != modCount) {
+            epoch++;
+            snapshot = new Snapshot<>(adjList, pages, nodes.size(), adjList.size(), numberOfEdges, totalWeight);
+            snapshotModCount = modCount;
+        }
+        return snapshot;
+    }
+
+    /**
+     * A point-in-time view over pages the graph no longer writes to. Node lookups go through
+     * the live id map and are checked against the snapshot's own vertex at that id, since a
+     * removal may have freed the id and a later add reused it. Traversals keep their state in the call so any
+     * number of threads can share one snapshot.
+     */
+    private static final class Snapshot<T> implements UndirectedGraph<T> {
+
+        private final Map<T, Vertex<T>> ids;
+        private final Vertex<T>[][] pages;
+        // The id bound, and the number of nodes, which is smaller when there are free ids.
+        private final int n;
+        private final int size;
+        private final int numberOfEdges;
+        private final long totalWeight;
+        // Built on the first lookup the live map can't answer.
+        private volatile Map<T, Integer> ownIds;
+
+        Snapshot(Map<T, Vertex<T>> ids, Vertex<T>[][] pages, int n, int size, int numberOfEdges, long totalWeight) {
+            this.ids = ids;
+            this.pages = pages;
+            this.n = n;
+            this.size = size;
+            this.numberOfEdges = numberOfEdges;
+            this.totalWeight = totalWeight;
+        }
+
+        private Vertex<T> vertex(int id) {
+            return pages[id >>> PAGE_BITS][id & PAGE_MASK];
+        }
+
+        private Vertex<T> find(T node) {
+            Vertex<T> live = ids.get(node);
+            if (live != null && live.id < n) {
+                Vertex<T> vertex = vertex(live.id);
+                if (vertex != null && vertex.node.equals(node)) {
+                    return vertex;
+                }
+            }
+            Map<T, Integer> own = ownIds;
+            if (own == null) {
+                own = new HashMap<>(capacityFor(size));
+                for (int id = 0; id < n; id++) {
+                    Vertex<T> vertex = vertex(id);
+                    if (vertex != null) {
+                        own.put(vertex.node, id);
+                    }
+                }
+                ownIds = own;
+            }
+            Integer id = own.get(node);
+            return id == null ? null : vertex(id);
+        }
+
+        @Override
+        public int getNumberOfNodes() {
+            return size;
+        }
+
+        @Override
+        public int getNumberOfEdges() {
+            return numberOfEdges;
+        }
+
+        @Override
+        public long getTotalWeight() {
+            return totalWeight;
+        }
+
+        @Override
+        public boolean add(T newNode) {
+            throw new UnsupportedOperationException("Error: A snapshot is read-only!");
+        }
+
+        @Override
+        public int addAll(Collection<? extends T> newNodes) {
+            throw new UnsupportedOperationException("Error: A snapshot is read-only!");
+        }
+
+        @Override
+        public boolean connect(T node1, T node2, int cost) {
+            throw new UnsupportedOperationException("Error: A snapshot is read-only!");
+        }
+
+        @Override
+        public int connectAll(List<? extends T> from, List<? extends T> to, int[] costs) {
+            throw new UnsupportedOperationException("Error: A snapshot is read-only!");
+        }
+
+        @Override
+        public boolean remove(T node) {
+            throw new UnsupportedOperationException("Error: A snapshot is read-only!");
+        }
+
+        @Override
+        public boolean disconnect(T node1, T node2) {
+            throw new UnsupportedOperationException("Error: A snapshot is read-only!");
+        }
+
+        @Override
+        public boolean isConnected(T node1, T node2) {
+            Vertex<T> vertex = find(node1);
+            return vertex != null && vertex.edges.containsKey(node2);
+        }
+
+        @Override
+        public int getCost(T node1, T node2) {
+            Vertex<T> vertex = find(node1);
+            Edge<T> edge = vertex == null ? null : vertex.edges.get(node2);
+            return edge == null ? -1 : edge.getCost();
+        }
+
+        @Override
+        public List<T> depthFirstSearch(T start, T end) {
+            Vertex<T> startVertex = find(start);
+            Vertex<T> endVertex = find(end);
+            if (startVertex == null || endVertex == null) {
+                return new LinkedList<>();
+            }
+            int from = startVertex.id;
+            int to = endVertex.id;
+            int[] via = new int[n];
+            boolean[] visited = new boolean[n];
+            int[] stack = new int[16];
+            int top = 0;
+            stack[top++] = from;
+            stack[top++] = -1;
+            while (top > 0) {
+                int whereFrom = stack[--top];
+                int where = stack[--top];
+                if (visited[where]) {
+                    continue;
+                }
+                visited[where] = true;
+                via[where] = whereFrom;
+                if (where == to) {
+                    return gatherPath(via, from, to);
+                }
+                for (Edge<T> e : vertex(where).edges.values()) {
+                    int dest = e.getDestinationId();
+                    if (!visited[dest]) {
+                        if (top + 2 > stack.length) {
+                            stack = Arrays.copyOf(stack, stack.length * 2);
+                        }
+                        stack[top++] = dest;
+                        stack[top++] = where;
+                    }
+                }
+            }
+            return new LinkedList<>();
+        }
+
+        @Override
+        public List<T> breadthFirstSearch(T start, T end) {
+            Vertex<T> startVertex = find(start);
+            Vertex<T> endVertex = find(end);
+            if (startVertex == null || endVertex == null) {
+                return new LinkedList<>();
+            }
+            int from = startVertex.id;
+            int to = endVertex.id;
+            int[] via = new int[n];
+            boolean[] visited = new boolean[n];
+            int[] queue = new int[n];
+            int head = 0;
+            int tail = 0;
+            visited[from] = true;
+            via[from] = -1;
+            queue[tail++] = from;
+            if (from == to) {
+                return gatherPath(via, from, to);
+            }
+            while (head < tail) {
+                int node = queue[head++];
+                for (Edge<T> e : vertex(node).edges.values()) {
+                    int dest = e.getDestinationId();
+                    if (!visited[dest]) {
+                        visited[dest] = true;
+                        via[dest] = node;
+                        if (dest == to) {
+                            return gatherPath(via, from, to);
+                        }
+                        queue[tail++] = dest;
+                    }
+                }
+            }
+            return new LinkedList<>();
+        }
+
+        private LinkedList<T> gatherPath(int[] via, int from, int to) {
+            LinkedList<T> path = new LinkedList<>();
+            for (int where = to; where != from; where = via[where]) {
+                path.addFirst(vertex(where).node);
+            }
+            path.addFirst(vertex(from).node);
+            return path;
+        }
+
+        @Override
+        public UndirectedGraph<T> minimumSpanningTree() {
+            List<T> nodes = new ArrayList<>(n);
+            for (int id = 0; id < n; id++) {
+                Vertex<T> vertex = vertex(id);
+                nodes.add(vertex == null ? null : vertex.node);
             }
+            return primSpanningTree(pages, nodes, new IndexedMinHeap(n));
         }
     }
 }
@@ -0,0 +1,48 @@
+// @author joas47
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Översätter noder till och från bytes när en graf sparas i
+ * {@link GraphSnapshot}-formatet.
+ */
+public interface NodeCodec<T> {
+
+    byte[] encode(T node);
+
+    /**
+     * Läser en nod ur {@code length} bytes från {@code offset} i bufferten,
+     * utan att flytta buffertens position.
+     */
+    T decode(ByteBuffer buffer, int offset, int length);
+
+    NodeCodec<String> STRING = new NodeCodec<>() {
+        @Override
+        public byte[] encode(String node) {
+            return node.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(ByteBuffer buffer, int offset, int length) {
+            byte[] bytes = new byte[length];
+            buffer.get(offset, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    NodeCodec<Integer> INTEGER = new NodeCodec<>() {
+        @Override
+        public byte[] encode(Integer node) {
+            return ByteBuffer.allocate(Integer.BYTES).putInt(node).array();
+        }
+
+        @Override
+        public Integer decode(ByteBuffer buffer, int offset, int length) {
+            return (buffer.get(offset) & 0xff) << 24
+                    | (buffer.get(offset + 1) & 0xff) << 16
+                    | (buffer.get(offset + 2) & 0xff) << 8
+                    | (buffer.get(offset + 3) & 0xff);
+        }
+    };
+}
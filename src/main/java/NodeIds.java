@@ -0,0 +1,32 @@
+// @author joas47
+
+import java.util.*;
+
+/**
+ * En oföränderlig kopia av hur noderna i en {@link CompactUndirectedGraph}
+ * är numrerade, för resultat indexerade med nod-id som ska gå att läsa även
+ * efter att grafen har ändrats och numrerats om.
+ */
+final class NodeIds<T> {
+
+    private final List<T> nodes;
+    private final Map<T, Integer> ids;
+
+    NodeIds(List<T> nodes, Map<T, Integer> ids) {
+        // Not List.copyOf, removed nodes leave null entries until the graph is repacked.
+        this.nodes = new ArrayList<>(nodes);
+        this.ids = new HashMap<>(ids);
+    }
+
+    /**
+     * Id:t för en nod eller -1 om noden inte fanns när kopian togs.
+     */
+    int idOf(T node) {
+        Integer id = ids.get(node);
+        return id == null ? -1 : id;
+    }
+
+    T nodeAt(int id) {
+        return nodes.get(id);
+    }
+}
@@ -0,0 +1,747 @@
+// @author joas47
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.*;
+
+/**
+ * En graf som håller bågarna och deras kostnader utanför heapen, i direkta
+ * buffertar som växer en bit i taget. Bara ordlistan mellan noder och id
+ * ligger på heapen, så skräpsamlaren har lika lite att gå igenom oavsett hur
+ * många bågar grafen har.
+ * <p>
+ * Varje nod har en dubbellänkad lista av bågposter, en per båge och
+ * riktning, där varje post pekar på sin tvilling i grannens lista. En
+ * hashtabell, också den utanför heapen, hittar bågen mellan två noder, så att
+ * uppslag, ändring och borttagning av en båge tar konstant tid oavsett
+ * nodernas grad. Borttagna poster återanvänds av nästa {@link #connect}.
+ * Minnet lämnas tillbaka direkt av {@link #close}, varefter grafen inte kan
+ * användas.
+ * <p>
+ * Grafen är inte trådsäker.
+ */
+public class OffHeapUndirectedGraph<T> implements UndirectedGraph<T>, CompactView<T>, AutoCloseable {
+
+    private static final int NONE = -1;
+
+    // Per node: the first edge record and the degree.
+    private static final int NODE_INTS = 2;
+    // Per edge record: the neighbour, the cost, the next and previous record of the same
+    // node and the twin record in the neighbour's list. A loop is its own twin.
+    private static final int RECORD_INTS = 5;
+    private static final int NEIGHBOR = 0;
+    private static final int COST = 1;
+    private static final int NEXT = 2;
+    private static final int PREV = 3;
+    private static final int TWIN = 4;
+    // Per edge table slot: the smaller and larger end and one of the edge's records plus one,
+    // so a zeroed slot is empty.
+    private static final int SLOT_INTS = 3;
+
+    private final HashMap<T, Integer> ids = new HashMap<>();
+    private final ArrayList<T> nodes = new ArrayList<>();
+
+    private final IntChunks nodeTable = new IntChunks();
+    private final IntChunks records = new IntChunks();
+    private int usedRecords;
+    // Removed records, chained through their next field.
+    private int freeRecord = NONE;
+    // Open addressing with linear probing, a power of two slots kept at most half full.
+    private IntChunks edgeTable = new IntChunks();
+    private int edgeSlots;
+
+    private int numberOfEdges;
+    private long totalWeight;
+    private long modCount;
+    private boolean closed;
+    private CompactUndirectedGraph<T> compact;
+    private long compactModCount;
+
+    // Scratch state for the searches, off-heap too so a search allocates nothing per node.
+    private final IntChunks stamps = new IntChunks();
+    private final IntChunks parent = new IntChunks();
+    private final IntChunks work = new IntChunks();
+    private final IntChunks cursor = new IntChunks();
+    private int stamp;
+
+    /**
+     * A growable int array in direct buffers of a fixed size. Growing only adds chunks, so
+     * nothing is ever copied, and a chunk is small enough that tiny graphs stay cheap.
+     */
+    private static final class IntChunks {
+        private static final int CHUNK_BITS = 16;
+        private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+        private static final IntBuffer[] EMPTY = new IntBuffer[0];
+
+        private ByteBuffer[] buffers = new ByteBuffer[0];
+        private IntBuffer[] chunks = EMPTY;
+        private int count;
+
+        void ensure(long size) {
+            int needed = (int) ((size + CHUNK_MASK) >>> CHUNK_BITS);
+            if (needed <= count) {
+                return;
+            }
+            if (needed > chunks.length) {
+                int capacity = Math.max(needed, chunks.length * 2);
+                buffers = Arrays.copyOf(buffers, capacity);
+                chunks = Arrays.copyOf(chunks, capacity);
+            }
+            while (count < needed) {
+                ByteBuffer buffer = ByteBuffer.allocateDirect(Integer.BYTES << CHUNK_BITS).order(ByteOrder.nativeOrder());
+                buffers[count] = buffer;
+                chunks[count] = buffer.asIntBuffer();
+                count++;
+            }
+        }
+
+        int get(long index) {
+            return chunks[(int) (index >>> CHUNK_BITS)].get((int) index & CHUNK_MASK);
+        }
+
+        void set(long index, int value) {
+            chunks[(int) (index >>> CHUNK_BITS)].put((int) index & CHUNK_MASK, value);
+        }
+
+        void clear() {
+            for (int i = 0; i < count; i++) {
+                IntBuffer chunk = chunks[i];
+                for (int k = 0; k <= CHUNK_MASK; k++) {
+                    chunk.put(k, 0);
+                }
+            }
+        }
+
+        /**
+         * Frees the memory now rather than when the buffers are collected. The references
+         * are dropped first, so a stray read fails on the empty array instead of touching
+         * freed memory.
+         */
+        void free() {
+            ByteBuffer[] freed = buffers;
+            int freedCount = count;
+            buffers = new ByteBuffer[0];
+            chunks = EMPTY;
+            count = 0;
+            for (int i = 0; i < freedCount; i++) {
+                release(freed[i]);
+            }
+        }
+    }
+
+    // Unsafe.invokeCleaner, the only way to free a direct buffer on demand before the FFM API.
+    // Without it the memory goes back when the buffers are collected.
+    private static final MethodHandle INVOKE_CLEANER = findCleaner();
+
+    private static MethodHandle findCleaner() {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static void release(ByteBuffer buffer) {
+        if (INVOKE_CLEANER != null) {
+            try {
+                INVOKE_CLEANER.invokeExact(buffer);
+            } catch (Throwable e) {
+                // Left to the collector.
+            }
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Error: The graph is closed!");
+        }
+    }
+
+    private int head(int node) {
+        return nodeTable.get((long) node * NODE_INTS);
+    }
+
+    private void setHead(int node, int record) {
+        nodeTable.set((long) node * NODE_INTS, record);
+    }
+
+    private int degree(int node) {
+        return nodeTable.get((long) node * NODE_INTS + 1);
+    }
+
+    private void setDegree(int node, int degree) {
+        nodeTable.set((long) node * NODE_INTS + 1, degree);
+    }
+
+    private int field(int record, int field) {
+        return records.get((long) record * RECORD_INTS + field);
+    }
+
+    private void setField(int record, int field, int value) {
+        records.set((long) record * RECORD_INTS + field, value);
+    }
+
+    private int neighbor(int record) {
+        return field(record, NEIGHBOR);
+    }
+
+    private int cost(int record) {
+        return field(record, COST);
+    }
+
+    private int next(int record) {
+        return field(record, NEXT);
+    }
+
+    private int twin(int record) {
+        return field(record, TWIN);
+    }
+
+    private void setRecord(int record, int neighbor, int cost, int next) {
+        long base = (long) record * RECORD_INTS;
+        records.set(base + NEIGHBOR, neighbor);
+        records.set(base + COST, cost);
+        records.set(base + NEXT, next);
+        records.set(base + PREV, NONE);
+        records.set(base + TWIN, NONE);
+    }
+
+    private int idOf(T node) {
+        Integer id = ids.get(node);
+        return id == null ? NONE : id;
+    }
+
+    private static int slotHash(int a, int b) {
+        long key = a < b ? (long) a << 32 | b & 0xFFFFFFFFL : (long) b << 32 | a & 0xFFFFFFFFL;
+        key *= 0x9E3779B97F4A7C15L;
+        return (int) (key ^ key >>> 32);
+    }
+
+    private boolean slotHolds(long base, int a, int b) {
+        int lo = edgeTable.get(base);
+        int hi = edgeTable.get(base + 1);
+        return lo == Math.min(a, b) && hi == Math.max(a, b);
+    }
+
+    /**
+     * The slot holding the edge between {@code a} and {@code b}, or the empty slot where it
+     * would go.
+     */
+    private int slotOf(int a, int b) {
+        int mask = edgeSlots - 1;
+        int slot = slotHash(a, b) & mask;
+        while (true) {
+            long base = (long) slot * SLOT_INTS;
+            if (edgeTable.get(base + 2) == 0 || slotHolds(base, a, b)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * One of the two records of the edge between {@code a} and {@code b}, or NONE.
+     */
+    private int findEdge(int a, int b) {
+        if (edgeSlots == 0) {
+            return NONE;
+        }
+        return edgeTable.get((long) slotOf(a, b) * SLOT_INTS + 2) - 1;
+    }
+
+    private void putEdge(int a, int b, int record) {
+        long base = (long) slotOf(a, b) * SLOT_INTS;
+        edgeTable.set(base, Math.min(a, b));
+        edgeTable.set(base + 1, Math.max(a, b));
+        edgeTable.set(base + 2, record + 1);
+    }
+
+    /**
+     * Removes the edge's slot and shifts later slots of the same run back into the hole, so
+     * the table needs no tombstones.
+     */
+    private void removeEdge(int a, int b) {
+        int mask = edgeSlots - 1;
+        int hole = slotOf(a, b);
+        for (int slot = (hole + 1) & mask; ; slot = (slot + 1) & mask) {
+            long base = (long) slot * SLOT_INTS;
+            if (edgeTable.get(base + 2) == 0) {
+                break;
+            }
+            int lo = edgeTable.get(base);
+            int hi = edgeTable.get(base + 1);
+            int home = slotHash(lo, hi) & mask;
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                long to = (long) hole * SLOT_INTS;
+                edgeTable.set(to, lo);
+                edgeTable.set(to + 1, hi);
+                edgeTable.set(to + 2, edgeTable.get(base + 2));
+                hole = slot;
+            }
+        }
+        long base = (long) hole * SLOT_INTS;
+        edgeTable.set(base, 0);
+        edgeTable.set(base + 1, 0);
+        edgeTable.set(base + 2, 0);
+    }
+
+    private void ensureEdgeSlots() {
+        if ((long) (numberOfEdges + 1) * 2 <= edgeSlots) {
+            return;
+        }
+        if (edgeSlots == 1 << 30) {
+            throw new IllegalStateException("Error: Too many edges!");
+        }
+        IntChunks old = edgeTable;
+        int oldSlots = edgeSlots;
+        edgeSlots = Math.max(16, edgeSlots * 2);
+        edgeTable = new IntChunks();
+        edgeTable.ensure((long) edgeSlots * SLOT_INTS);
+        for (int slot = 0; slot < oldSlots; slot++) {
+            long base = (long) slot * SLOT_INTS;
+            int entry = old.get(base + 2);
+            if (entry != 0) {
+                putEdge(old.get(base), old.get(base + 1), entry - 1);
+            }
+        }
+        old.free();
+    }
+
+    private int link(int from, int to, int cost) {
+        int r = freeRecord;
+        if (r != NONE) {
+            freeRecord = next(r);
+        } else {
+            if (usedRecords == Integer.MAX_VALUE) {
+                throw new IllegalStateException("Error: Too many edges!");
+            }
+            r = usedRecords++;
+            records.ensure((long) usedRecords * RECORD_INTS);
+        }
+        int first = head(from);
+        setRecord(r, to, cost, first);
+        if (first != NONE) {
+            setField(first, PREV, r);
+        }
+        setHead(from, r);
+        setDegree(from, degree(from) + 1);
+        return r;
+    }
+
+    private void recycle(int record) {
+        setRecord(record, NONE, 0, freeRecord);
+        freeRecord = record;
+    }
+
+    /**
+     * Takes a record out of its owner's list and frees it.
+     */
+    private void unlink(int owner, int record) {
+        int previous = field(record, PREV);
+        int following = next(record);
+        if (previous == NONE) {
+            setHead(owner, following);
+        } else {
+            setField(previous, NEXT, following);
+        }
+        if (following != NONE) {
+            setField(following, PREV, previous);
+        }
+        setDegree(owner, degree(owner) - 1);
+        recycle(record);
+    }
+
+    @Override
+    public int getNumberOfNodes() {
+        return nodes.size();
+    }
+
+    @Override
+    public int getNumberOfEdges() {
+        return numberOfEdges;
+    }
+
+    @Override
+    public long getTotalWeight() {
+        return totalWeight;
+    }
+
+    @Override
+    public boolean add(T newNode) {
+        ensureOpen();
+        if (ids.containsKey(newNode)) {
+            return false;
+        }
+        int id = nodes.size();
+        nodeTable.ensure((long) (id + 1) * NODE_INTS);
+        setHead(id, NONE);
+        setDegree(id, 0);
+        ids.put(newNode, id);
+        nodes.add(newNode);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public int addAll(Collection<? extends T> newNodes) {
+        int added = 0;
+        for (T node : newNodes) {
+            if (add(node)) {
+                added++;
+            }
+        }
+        return added;
+    }
+
+    @Override
+    public boolean connect(T node1, T node2, int cost) {
+        ensureOpen();
+        int a = idOf(node1);
+        int b = idOf(node2);
+        if (a == NONE || b == NONE || cost <= 0) {
+            return false;
+        }
+        connectIds(a, b, cost);
+        return true;
+    }
+
+    private void connectIds(int a, int b, int cost) {
+        modCount++;
+        int r = findEdge(a, b);
+        if (r != NONE) {
+            totalWeight += cost - cost(r);
+            setField(r, COST, cost);
+            setField(twin(r), COST, cost);
+            return;
+        }
+        ensureEdgeSlots();
+        int forward = link(a, b, cost);
+        // A loop is a single record.
+        int back = a == b ? forward : link(b, a, cost);
+        setField(forward, TWIN, back);
+        setField(back, TWIN, forward);
+        putEdge(a, b, forward);
+        numberOfEdges++;
+        totalWeight += cost;
+    }
+
+    @Override
+    public int connectAll(List<? extends T> from, List<? extends T> to, int[] costs) {
+        if (from.size() != to.size() || from.size() != costs.length) {
+            throw new IllegalArgumentException("Error: Edge columns must have the same length!");
+        }
+        int connected = 0;
+        for (int i = 0; i < costs.length; i++) {
+            if (connect(from.get(i), to.get(i), costs[i])) {
+                connected++;
+            }
+        }
+        return connected;
+    }
+
+    /**
+     * Tar bort en nod. Den sista noden flyttas till den borttagnas id, så att
+     * id:na förblir täta, och dess grannars poster skrivs om till det nya id:t
+     * genom tvillingposterna. Det tar tid proportionell mot de två nodernas
+     * grad.
+     */
+    @Override
+    public boolean remove(T node) {
+        ensureOpen();
+        int id = idOf(node);
+        if (id == NONE) {
+            return false;
+        }
+        for (int r = head(id); r != NONE; ) {
+            int w = neighbor(r);
+            int following = next(r);
+            removeEdge(id, w);
+            if (w != id) {
+                unlink(w, twin(r));
+            }
+            numberOfEdges--;
+            totalWeight -= cost(r);
+            recycle(r);
+            r = following;
+        }
+        int last = nodes.size() - 1;
+        if (id != last) {
+            // The removed node's edges are gone, so no key of the new id is in the table yet.
+            for (int r = head(last); r != NONE; r = next(r)) {
+                int w = neighbor(r);
+                removeEdge(last, w);
+                setField(twin(r), NEIGHBOR, id);
+                putEdge(id, w == last ? id : w, r);
+            }
+            setHead(id, head(last));
+            setDegree(id, degree(last));
+            T moved = nodes.get(last);
+            nodes.set(id, moved);
+            ids.put(moved, id);
+        }
+        nodes.remove(last);
+        ids.remove(node);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean disconnect(T node1, T node2) {
+        ensureOpen();
+        int a = idOf(node1);
+        int b = idOf(node2);
+        if (a == NONE || b == NONE) {
+            return false;
+        }
+        int r = findEdge(a, b);
+        if (r == NONE) {
+            return false;
+        }
+        totalWeight -= cost(r);
+        numberOfEdges--;
+        removeEdge(a, b);
+        int back = twin(r);
+        // Each record lives in the list of the node its twin points to.
+        int owner = neighbor(back);
+        int backOwner = neighbor(r);
+        unlink(owner, r);
+        if (back != r) {
+            unlink(backOwner, back);
+        }
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean isConnected(T node1, T node2) {
+        return getCost(node1, node2) != -1;
+    }
+
+    @Override
+    public int getCost(T node1, T node2) {
+        ensureOpen();
+        int a = idOf(node1);
+        int b = idOf(node2);
+        if (a == NONE || b == NONE) {
+            return -1;
+        }
+        int r = findEdge(a, b);
+        return r == NONE ? -1 : cost(r);
+    }
+
+    private int nextStamp() {
+        long n = nodes.size();
+        stamps.ensure(n);
+        parent.ensure(n);
+        work.ensure(n);
+        cursor.ensure(n);
+        if (++stamp == 0) {
+            stamps.clear();
+            stamp = 1;
+        }
+        return stamp;
+    }
+
+    /**
+     * Gör en iterativ djupet-först-sökning efter en väg mellan två noder.
+     *
+     * @param start startnoden.
+     * @param end   slutnoden.
+     * @return en lista över alla noder på vägen mellan start- och slutnoden. Om
+     * ingen väg finns är listan tom.
+     */
+    @Override
+    public List<T> depthFirstSearch(T start, T end) {
+        ensureOpen();
+        int s = idOf(start);
+        int e = idOf(end);
+        if (s == NONE || e == NONE) {
+            return new ArrayList<>();
+        }
+        int mark = nextStamp();
+        int depth = 0;
+        work.set(0, s);
+        cursor.set(0, head(s));
+        stamps.set(s, mark);
+        while (depth >= 0) {
+            int v = work.get(depth);
+            if (v == e) {
+                List<T> path = new ArrayList<>(depth + 1);
+                for (int i = 0; i <= depth; i++) {
+                    path.add(nodes.get(work.get(i)));
+                }
+                return path;
+            }
+            int r = cursor.get(depth);
+            while (r != NONE && stamps.get(neighbor(r)) == mark) {
+                r = next(r);
+            }
+            if (r == NONE) {
+                depth--;
+            } else {
+                cursor.set(depth, next(r));
+                int w = neighbor(r);
+                stamps.set(w, mark);
+                depth++;
+                work.set(depth, w);
+                cursor.set(depth, head(w));
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Gör en bredden-först-sökning efter en väg mellan två noder.
+     * <p>
+     * Observera att denna metod inte använder sig av viktinformationen.
+     *
+     * @param start startnoden.
+     * @param end   slutnoden.
+     * @return en lista över alla noder på vägen mellan start- och slutnoden. Om
+     * ingen väg finns är listan tom.
+     */
+    @Override
+    public List<T> breadthFirstSearch(T start, T end) {
+        ensureOpen();
+        int s = idOf(start);
+        int e = idOf(end);
+        if (s == NONE || e == NONE) {
+            return new LinkedList<>();
+        }
+        int mark = nextStamp();
+        int head = 0;
+        int tail = 0;
+        work.set(tail++, s);
+        stamps.set(s, mark);
+        parent.set(s, NONE);
+        boolean found = s == e;
+        while (!found && head < tail) {
+            int v = work.get(head++);
+            for (int r = head(v); r != NONE; r = next(r)) {
+                int w = neighbor(r);
+                if (stamps.get(w) != mark) {
+                    stamps.set(w, mark);
+                    parent.set(w, v);
+                    if (w == e) {
+                        found = true;
+                        break;
+                    }
+                    work.set(tail++, w);
+                }
+            }
+        }
+        LinkedList<T> path = new LinkedList<>();
+        if (found) {
+            for (int v = e; v != NONE; v = parent.get(v)) {
+                path.addFirst(nodes.get(v));
+            }
+        }
+        return path;
+    }
+
+    /**
+     * Returnerar ett minimalt spännande träd (en skog om grafen inte är
+     * sammanhängande), byggt med Prims algoritm. Trädet är också en
+     * {@link OffHeapUndirectedGraph} och ska stängas när det inte behövs.
+     *
+     * @return en graf som representerar ett minimalt spännande träd.
+     */
+    @Override
+    public OffHeapUndirectedGraph<T> minimumSpanningTree() {
+        ensureOpen();
+        int n = nodes.size();
+        int mark = nextStamp();
+        IndexedMinHeap heap = new IndexedMinHeap(n);
+        OffHeapUndirectedGraph<T> tree = new OffHeapUndirectedGraph<>();
+        tree.addAll(nodes);
+        for (int root = 0; root < n; root++) {
+            if (stamps.get(root) == mark) {
+                continue;
+            }
+            parent.set(root, NONE);
+            heap.offer(root, 0);
+            while (!heap.isEmpty()) {
+                int v = heap.poll();
+                stamps.set(v, mark);
+                if (parent.get(v) != NONE) {
+                    tree.connectIds(parent.get(v), v, (int) heap.keyOf(v));
+                }
+                for (int r = head(v); r != NONE; r = next(r)) {
+                    int w = neighbor(r);
+                    if (stamps.get(w) != mark && heap.offer(w, cost(r))) {
+                        parent.set(w, v);
+                    }
+                }
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * A compact copy of the graph on the heap, rebuilt lazily after changes. Its ids are the
+     * graph's own, which stay dense.
+     */
+    @Override
+    public CompactUndirectedGraph<T> compact() {
+        ensureOpen();
+        if (compact == null || compactModCount != modCount) {
+            int n = nodes.size();
+            CompactUndirectedGraph.Builder<T> builder = new CompactUndirectedGraph.Builder<>(n, numberOfEdges);
+            for (T node : nodes) {
+                builder.add(node);
+            }
+            for (int v = 0; v < n; v++) {
+                for (int r = head(v); r != NONE; r = next(r)) {
+                    int w = neighbor(r);
+                    if (v <= w) {
+                        builder.connectIds(v, w, cost(r));
+                    }
+                }
+            }
+            compact = builder.build();
+            compactModCount = modCount;
+        }
+        return compact;
+    }
+
+    @Override
+    public long version() {
+        return modCount;
+    }
+
+    /**
+     * Lämnar tillbaka allt minne utanför heapen. Efter det kastar alla
+     * operationer som läser eller ändrar grafen IllegalStateException.
+     * Att stänga en stängd graf gör ingenting.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        nodeTable.free();
+        records.free();
+        edgeTable.free();
+        edgeSlots = 0;
+        stamps.free();
+        parent.free();
+        work.free();
+        cursor.free();
+        ids.clear();
+        nodes.clear();
+        compact = null;
+        numberOfEdges = 0;
+        totalWeight = 0;
+    }
+}
@@ -0,0 +1,47 @@
+// @author joas47
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * En viktad kortaste väg mellan två noder: noderna längs vägen och den
+ * sammanlagda kostnaden.
+ */
+public class ShortestPath<T> {
+
+    private final List<T> nodes;
+    private final long cost;
+
+    ShortestPath(List<T> nodes, long cost) {
+        this.nodes = Collections.unmodifiableList(nodes);
+        this.cost = cost;
+    }
+
+    static <T> ShortestPath<T> none() {
+        return new ShortestPath<>(List.of(), -1);
+    }
+
+    /**
+     * Noderna längs vägen, med start- och slutnoden. Tom om ingen väg finns.
+     */
+    public List<T> getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Summan av kostnaderna för bågarna längs vägen, 0 om start och slut är
+     * samma nod och -1 om ingen väg finns.
+     */
+    public long getCost() {
+        return cost;
+    }
+
+    public boolean exists() {
+        return cost >= 0;
+    }
+
+    @Override
+    public String toString() {
+        return nodes + " costs " + cost;
+    }
+}
@@ -0,0 +1,230 @@
+// @author joas47
+
+import java.util.*;
+
+/**
+ * Ett minimalt spännande träd (eller en skog) som en skrivskyddad graf. Varje
+ * nod lagrar bara sin förälder i trädet och kostnaden för bågen dit, så
+ * trädet tar två int per nod i stället för en hel grannlista. Eftersom vägen
+ * mellan två noder i ett träd är unik går både djupet-först- och
+ * bredden-först-sökning upp mot den gemensamma förfadern.
+ */
+public class SpanningTree<T> implements UndirectedGraph<T>, CompactView<T> {
+
+    private final List<T> nodes;
+    private final Map<T, Integer> ids;
+    private final int[] parent;
+    private final int[] cost;
+    private final int[] depth;
+    private final int numberOfEdges;
+    private final long totalWeight;
+
+    private CompactUndirectedGraph<T> compact;
+
+    /**
+     * @param nodes  noderna i id-ordning.
+     * @param parent föräldern för varje nod, eller -1 för en rot.
+     * @param cost   kostnaden för bågen till föräldern.
+     * @param depth  antal bågar upp till roten.
+     */
+    SpanningTree(List<T> nodes, int[] parent, int[] cost, int[] depth) {
+        this.nodes = nodes;
+        this.parent = parent;
+        this.cost = cost;
+        this.depth = depth;
+        ids = new HashMap<>((int) (nodes.size() / 0.75f) + 1);
+        int edges = 0;
+        long weight = 0;
+        for (int v = 0; v < nodes.size(); v++) {
+            ids.put(nodes.get(v), v);
+            if (parent[v] != -1) {
+                edges++;
+                weight += cost[v];
+            }
+        }
+        numberOfEdges = edges;
+        totalWeight = weight;
+    }
+
+    /**
+     * Som konstruktorn, men för id:n som kan vara lediga: där noden är null
+     * tas platsen bort och de övriga noderna numreras om i samma ordning.
+     */
+    static <T> SpanningTree<T> withoutGaps(List<T> nodes, int[] parent, int[] cost, int[] depth) {
+        int n = nodes.size();
+        int[] dense = new int[n];
+        int live = 0;
+        for (int v = 0; v < n; v++) {
+            dense[v] = nodes.get(v) == null ? -1 : live++;
+        }
+        if (live == n) {
+            return new SpanningTree<>(nodes, parent, cost, depth);
+        }
+        List<T> kept = new ArrayList<>(live);
+        int[] keptParent = new int[live];
+        int[] keptCost = new int[live];
+        int[] keptDepth = new int[live];
+        for (int v = 0; v < n; v++) {
+            int d = dense[v];
+            if (d >= 0) {
+                kept.add(nodes.get(v));
+                keptParent[d] = parent[v] == -1 ? -1 : dense[parent[v]];
+                keptCost[d] = cost[v];
+                keptDepth[d] = depth[v];
+            }
+        }
+        return new SpanningTree<>(kept, keptParent, keptCost, keptDepth);
+    }
+
+    private int idOf(T node) {
+        Integer id = ids.get(node);
+        return id == null ? -1 : id;
+    }
+
+    @Override
+    public int getNumberOfNodes() {
+        return nodes.size();
+    }
+
+    @Override
+    public int getNumberOfEdges() {
+        return numberOfEdges;
+    }
+
+    @Override
+    public long getTotalWeight() {
+        return totalWeight;
+    }
+
+    @Override
+    public boolean add(T newNode) {
+        throw new UnsupportedOperationException("Error: A spanning tree is read-only!");
+    }
+
+    @Override
+    public int addAll(Collection<? extends T> newNodes) {
+        throw new UnsupportedOperationException("Error: A spanning tree is read-only!");
+    }
+
+    @Override
+    public boolean connect(T node1, T node2, int cost) {
+        throw new UnsupportedOperationException("Error: A spanning tree is read-only!");
+    }
+
+    @Override
+    public int connectAll(List<? extends T> from, List<? extends T> to, int[] costs) {
+        throw new UnsupportedOperationException("Error: A spanning tree is read-only!");
+    }
+
+    @Override
+    public boolean remove(T node) {
+        throw new UnsupportedOperationException("Error: A spanning tree is read-only!");
+    }
+
+    @Override
+    public boolean disconnect(T node1, T node2) {
+        throw new UnsupportedOperationException("Error: A spanning tree is read-only!");
+    }
+
+    @Override
+    public boolean isConnected(T node1, T node2) {
+        return getCost(node1, node2) > 0;
+    }
+
+    @Override
+    public int getCost(T node1, T node2) {
+        int a = idOf(node1);
+        int b = idOf(node2);
+        if (a < 0 || b < 0) {
+            return -1;
+        }
+        if (parent[a] == b) {
+            return cost[a];
+        }
+        if (parent[b] == a) {
+            return cost[b];
+        }
+        return -1;
+    }
+
+    /**
+     * Vägen genom trädet mellan två noder. Den är unik, så resultatet är
+     * detsamma som för {@link #breadthFirstSearch}.
+     */
+    @Override
+    public List<T> depthFirstSearch(T start, T end) {
+        return treePath(start, end);
+    }
+
+    /**
+     * Vägen genom trädet mellan två noder, som också är den kortaste.
+     */
+    @Override
+    public List<T> breadthFirstSearch(T start, T end) {
+        return treePath(start, end);
+    }
+
+    private List<T> treePath(T start, T end) {
+        int a = idOf(start);
+        int b = idOf(end);
+        LinkedList<T> path = new LinkedList<>();
+        if (a < 0 || b < 0) {
+            return path;
+        }
+        // Climb from both ends to the lowest common ancestor.
+        CompactUndirectedGraph.IntList tail = new CompactUndirectedGraph.IntList();
+        while (depth[a] > depth[b]) {
+            path.add(nodes.get(a));
+            a = parent[a];
+        }
+        while (depth[b] > depth[a]) {
+            tail.add(b);
+            b = parent[b];
+        }
+        while (a != b) {
+            if (parent[a] == -1) {
+                // Different trees of the forest.
+                return new LinkedList<>();
+            }
+            path.add(nodes.get(a));
+            a = parent[a];
+            tail.add(b);
+            b = parent[b];
+        }
+        path.add(nodes.get(a));
+        for (int i = tail.size() - 1; i >= 0; i--) {
+            path.add(nodes.get(tail.get(i)));
+        }
+        return path;
+    }
+
+    /**
+     * Ett spännande träd är sitt eget minimala spännande träd.
+     */
+    @Override
+    public UndirectedGraph<T> minimumSpanningTree() {
+        return this;
+    }
+
+    @Override
+    public CompactUndirectedGraph<T> compact() {
+        if (compact == null) {
+            CompactUndirectedGraph.Builder<T> builder = new CompactUndirectedGraph.Builder<>(nodes.size(), numberOfEdges);
+            for (T node : nodes) {
+                builder.add(node);
+            }
+            for (int v = 0; v < nodes.size(); v++) {
+                if (parent[v] != -1) {
+                    builder.connectIds(parent[v], v, cost[v]);
+                }
+            }
+            compact = builder.build();
+        }
+        return compact;
+    }
+
+    @Override
+    public long version() {
+        return 0;
+    }
+}
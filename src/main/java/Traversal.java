@@ -0,0 +1,110 @@
+// @author joas47
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * En lat genomgång av en {@link MyUndirectedGraph} från en startnod, i
+ * bredden-först-ordning eller djupet-först-preordning. Noderna tas fram först
+ * när de efterfrågas, så den som bara vill ha de första noderna, eller
+ * avbryter vid den första som uppfyller ett villkor, betalar inte för resten
+ * av komponenten. Utöver fronten behövs bara en post per nod som nåtts, hur
+ * stor grafen än är.
+ * <p>
+ * Genomgången kan begränsas till ett största djup, till noder som uppfyller
+ * ett filter och till ett bestämt antal besökta noder. Ändras grafen medan en
+ * iterator eller ström används kastas ConcurrentModificationException.
+ * <p>
+ * Exempel: de första 100 noderna inom tre steg från {@code a}:
+ * <pre>{@code
+ * graph.traverse(a).maxDepth(3).budget(100).breadthFirst()
+ * }</pre>
+ */
+public class Traversal<T> {
+
+    private final MyUndirectedGraph<T> graph;
+    private final T start;
+    private int maxDepth = Integer.MAX_VALUE;
+    private Predicate<? super T> filter = node -> true;
+    private int budget = Integer.MAX_VALUE;
+
+    Traversal(MyUndirectedGraph<T> graph, T start) {
+        this.graph = graph;
+        this.start = start;
+    }
+
+    /**
+     * Går som mest så här många bågar från startnoden. 0 ger bara startnoden.
+     * Även djupet-först hittar alla noder inom så många steg, också när den
+     * första vägen dit är längre. Varje nod ges ändå bara en gång, och
+     * {@link TraversalIterator#depth()} är djupet längs vägen där den först
+     * nåddes.
+     */
+    public Traversal<T> maxDepth(int maxDepth) {
+        if (maxDepth < 0) {
+            throw new IllegalArgumentException("Error: Max depth can't be negative!");
+        }
+        this.maxDepth = maxDepth;
+        return this;
+    }
+
+    /**
+     * Besöker bara noder som uppfyller filtret, och går inte heller vidare
+     * genom de andra. Uppfyller inte startnoden filtret blir genomgången tom.
+     */
+    public Traversal<T> filter(Predicate<? super T> filter) {
+        this.filter = filter;
+        return this;
+    }
+
+    /**
+     * Besöker som mest så här många noder, startnoden inräknad.
+     */
+    public Traversal<T> budget(int budget) {
+        if (budget < 0) {
+            throw new IllegalArgumentException("Error: Budget can't be negative!");
+        }
+        this.budget = budget;
+        return this;
+    }
+
+    /**
+     * Noderna i bredden-först-ordning. {@link TraversalIterator#depth()} är
+     * då avståndet i antal bågar från startnoden. Finns inte startnoden är
+     * iteratorn tom.
+     */
+    public TraversalIterator<T> breadthFirstIterator() {
+        return graph.breadthFirstIterator(start, maxDepth, filter, budget);
+    }
+
+    /**
+     * Noderna i djupet-först-preordning, i samma ordning som
+     * {@link MyUndirectedGraph#depthFirstSearch} besöker dem. Finns inte
+     * startnoden är iteratorn tom.
+     */
+    public TraversalIterator<T> depthFirstIterator() {
+        return graph.depthFirstIterator(start, maxDepth, filter, budget);
+    }
+
+    /**
+     * En sekventiell ström över {@link #breadthFirstIterator()}.
+     */
+    public Stream<T> breadthFirst() {
+        return stream(breadthFirstIterator());
+    }
+
+    /**
+     * En sekventiell ström över {@link #depthFirstIterator()}.
+     */
+    public Stream<T> depthFirst() {
+        return stream(depthFirstIterator());
+    }
+
+    private static <T> Stream<T> stream(TraversalIterator<T> iterator) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+}
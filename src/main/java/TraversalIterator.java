@@ -0,0 +1,18 @@
+// @author joas47
+
+import java.util.Iterator;
+
+/**
+ * En iterator över noderna i en genomgång av en graf, som också berättar
+ * hur djupt den senast returnerade noden låg. Se {@link Traversal}.
+ */
+public interface TraversalIterator<T> extends Iterator<T> {
+
+    /**
+     * Djupet för noden som {@link #next()} senast returnerade: antalet bågar
+     * från startnoden, längs den väg som genomgången tog sig dit.
+     *
+     * @throws IllegalStateException om {@link #next()} inte har anropats.
+     */
+    int depth();
+}
@@ -2,12 +2,11 @@
 // TODO: include this when turning in assignment.
 //package alda.graph;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface UndirectedGraph<T> {
 
-    // ToDo: metod för att räkna den totala vikten
-
     /**
      * Antalet noder i grafen.
      *
@@ -22,6 +21,13 @@ public interface UndirectedGraph<T> {
      */
     int getNumberOfEdges();
 
+    /**
+     * Den totala vikten, dvs. summan av kostnaderna för alla bågar i grafen.
+     *
+     * @return den totala vikten.
+     */
+    long getTotalWeight();
+
     /**
      * Lägger till en ny nod i grafen.
      *
@@ -31,6 +37,15 @@ public interface UndirectedGraph<T> {
      */
     boolean add(T newNode);
 
+    /**
+     * Lägger till flera noder på en gång. Noder som redan finns hoppas över.
+     *
+     * @param newNodes
+     *            noderna som ska läggas till.
+     * @return antalet noder som faktiskt lades till.
+     */
+    int addAll(Collection<? extends T> newNodes);
+
     /**
      * Kopplar samman tvä noder i grafen. Eftersom grafen är oriktad så spelar
      * det ingen roll vilken av noderna som står först. Det är också
@@ -49,6 +64,47 @@ public interface UndirectedGraph<T> {
      */
     boolean connect(T node1, T node2, int cost);
 
+    /**
+     * Kopplar samman många par av noder på en gång. Bågarna anges i
+     * kolumnform: båge i går mellan {@code from.get(i)} och {@code to.get(i)}
+     * med kostnaden {@code costs[i]}. Resultatet blir detsamma som om
+     * {@link #connect} anropats för varje båge i tur och ordning, så om samma
+     * par förekommer flera gånger gäller den sista kostnaden.
+     *
+     * @param from
+     *            ena änden av varje båge.
+     * @param to
+     *            andra änden av varje båge.
+     * @param costs
+     *            kostnaden för varje båge.
+     * @return antalet bågar som kunde kopplas, dvs. där bägge noderna finns och
+     *         kostnaden är >0.
+     * @throws IllegalArgumentException
+     *             om kolumnerna inte är lika långa.
+     */
+    int connectAll(List<? extends T> from, List<? extends T> to, int[] costs);
+
+    /**
+     * Tar bort en nod och alla bågar till och från den.
+     *
+     * @param node
+     *            noden som ska tas bort.
+     * @return false om noden inte finns.
+     */
+    boolean remove(T node);
+
+    /**
+     * Tar bort bågen mellan två noder. Precis som för {@link #connect} spelar
+     * det ingen roll vilken av noderna som står först.
+     *
+     * @param node1
+     *            den ena noden.
+     * @param node2
+     *            den andra noden.
+     * @return false om noderna inte var kopplade.
+     */
+    boolean disconnect(T node1, T node2);
+
     /**
      * Berättar om två noder är sammanbundan av en båge eller inte.
      *
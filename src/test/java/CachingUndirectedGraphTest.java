@@ -0,0 +1,125 @@
+// @author joas47
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+/**
+ * Kör hela {@link UndirectedGraphTest} genom en {@link CachingUndirectedGraph}
+ * och testar dessutom när cachen används och när den blir inaktuell.
+ */
+public class CachingUndirectedGraphTest extends UndirectedGraphTest {
+
+    @Override
+    protected UndirectedGraph<String> createGraph() {
+        return new CachingUndirectedGraph<>(new MyUndirectedGraph<>(), 8);
+    }
+
+    @Test
+    public void testCacheHitsAndInvalidation() {
+        MyUndirectedGraph<Integer> graph = new MyUndirectedGraph<>();
+        CachingUndirectedGraph<Integer> cache = new CachingUndirectedGraph<>(graph, 2);
+        cache.addAll(List.of(0, 1, 2, 3));
+        cache.connect(0, 1, 1);
+        cache.connect(1, 2, 1);
+
+        assertEquals(List.of(0, 1, 2), cache.breadthFirstSearch(0, 2));
+        List<Integer> again = cache.breadthFirstSearch(0, 2);
+        assertEquals(List.of(0, 1, 2), again);
+        // The caller gets its own copy.
+        again.clear();
+        assertEquals(List.of(0, 1, 2), cache.breadthFirstSearch(0, 2));
+        assertEquals(2, cache.hitCount());
+        assertEquals(1, cache.missCount());
+
+        // A cost update keeps the answers, a new edge does not.
+        cache.connect(1, 2, 5);
+        assertEquals(List.of(0, 1, 2), cache.breadthFirstSearch(0, 2));
+        assertEquals(3, cache.hitCount());
+        cache.connect(0, 2, 1);
+        assertEquals(List.of(0, 2), cache.breadthFirstSearch(0, 2));
+        assertEquals(2, cache.missCount());
+
+        // So does a change made directly on the graph.
+        assertTrue(cache.depthFirstSearch(0, 3).isEmpty());
+        long invalidations = cache.invalidationCount();
+        graph.connect(2, 3, 1);
+        assertFalse(cache.depthFirstSearch(0, 3).isEmpty());
+        assertEquals(4, cache.missCount());
+        assertEquals(invalidations + 1, cache.invalidationCount());
+
+        // Least recently used goes first.
+        cache.breadthFirstSearch(0, 1);
+        cache.breadthFirstSearch(1, 3);
+        cache.breadthFirstSearch(0, 1);
+        cache.breadthFirstSearch(2, 3);
+        assertEquals(2, cache.size());
+        long misses = cache.missCount();
+        cache.breadthFirstSearch(0, 1);
+        assertEquals(misses, cache.missCount());
+        cache.breadthFirstSearch(1, 3);
+        assertEquals(misses + 1, cache.missCount());
+        assertTrue(cache.evictionCount() >= 2);
+    }
+
+    @Test
+    public void testDirectChangeKeepingTheCounts() {
+        MyUndirectedGraph<String> graph = new MyUndirectedGraph<>();
+        CachingUndirectedGraph<String> cache = new CachingUndirectedGraph<>(graph, 4);
+        cache.addAll(List.of("A", "B", "C"));
+        cache.connect("A", "B", 1);
+        cache.connect("B", "C", 1);
+        assertEquals(List.of("A", "B", "C"), cache.breadthFirstSearch("A", "C"));
+
+        // Same number of nodes and edges afterwards, but the cached path is gone.
+        graph.disconnect("B", "C");
+        graph.connect("A", "C", 1);
+        assertEquals(List.of("A", "C"), cache.breadthFirstSearch("A", "C"));
+        assertEquals(2, cache.missCount());
+
+        // A direct cost update also counts as a change, one through the cache does not.
+        graph.connect("A", "C", 2);
+        cache.breadthFirstSearch("A", "C");
+        assertEquals(3, cache.missCount());
+        cache.connect("A", "C", 3);
+        cache.breadthFirstSearch("A", "C");
+        assertEquals(3, cache.missCount());
+    }
+
+    @Test
+    public void testDirectChangesDuringConnectAreNotAbsorbed() {
+        // Another thread's add and remove land between the cache's check and its connect.
+        boolean[] interfere = new boolean[1];
+        ConcurrentUndirectedGraph<String> shared = new ConcurrentUndirectedGraph<>() {
+            @Override
+            public boolean connect(String node1, String node2, int cost) {
+                if (interfere[0]) {
+                    interfere[0] = false;
+                    disconnect("B", "C");
+                    connect("A", "D", 1);
+                }
+                return super.connect(node1, node2, cost);
+            }
+        };
+        CachingUndirectedGraph<String> cache = new CachingUndirectedGraph<>(shared, 4);
+        cache.addAll(List.of("A", "B", "C", "D"));
+        cache.connect("A", "B", 1);
+        cache.connect("B", "C", 1);
+        assertEquals(List.of("A", "B", "C"), cache.breadthFirstSearch("A", "C"));
+
+        // Only a cost update through the cache, but the edge count is unchanged too.
+        interfere[0] = true;
+        assertTrue(cache.connect("A", "B", 2));
+        assertTrue(cache.breadthFirstSearch("A", "C").isEmpty());
+        assertEquals(List.of("A", "D"), cache.breadthFirstSearch("A", "D"));
+
+        // A bulk cost update is checked the same way.
+        shared.connect("B", "C", 1);
+        assertEquals(List.of("A", "B", "C"), cache.breadthFirstSearch("A", "C"));
+        interfere[0] = true;
+        assertEquals(1, cache.connectAll(List.of("A"), List.of("B"), new int[]{3}));
+        assertTrue(cache.breadthFirstSearch("A", "C").isEmpty());
+    }
+}
@@ -0,0 +1,274 @@
+// @author joas47
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Kör hela {@link UndirectedGraphTest} mot {@link CompactUndirectedGraph} och
+ * testar dessutom byggvägarna.
+ */
+public class CompactUndirectedGraphTest extends UndirectedGraphTest {
+
+    @Override
+    protected UndirectedGraph<String> createGraph() {
+        return new CompactUndirectedGraph<>();
+    }
+
+    @Test
+    public void testFromMyUndirectedGraph() {
+        MyUndirectedGraph<String> source = new MyUndirectedGraph<>();
+        for (String node : List.of("A", "B", "C", "D")) {
+            source.add(node);
+        }
+        source.connect("A", "A", 1);
+        source.connect("A", "B", 2);
+        source.connect("B", "C", 3);
+        source.connect("C", "A", 4);
+
+        CompactUndirectedGraph<String> compact = CompactUndirectedGraph.from(source);
+        assertEquals(4, compact.getNumberOfNodes());
+        assertEquals(4, compact.getNumberOfEdges());
+        assertEquals(1, compact.getCost("A", "A"));
+        assertEquals(3, compact.getCost("C", "B"));
+        assertEquals(4, compact.getCost("A", "C"));
+        assertEquals(-1, compact.getCost("A", "D"));
+    }
+
+    @Test
+    public void testBuilderLastCostWins() {
+        CompactUndirectedGraph.Builder<String> builder = new CompactUndirectedGraph.Builder<>();
+        assertTrue(builder.add("A"));
+        assertTrue(builder.add("B"));
+        assertFalse(builder.add("A"));
+        assertTrue(builder.connect("A", "B", 5));
+        assertTrue(builder.connect("B", "A", 2));
+        assertFalse(builder.connect("A", "Z", 2));
+        assertFalse(builder.connect("A", "B", 0));
+
+        CompactUndirectedGraph<String> compact = builder.build();
+        assertEquals(1, compact.getNumberOfEdges());
+        assertEquals(2, compact.getCost("A", "B"));
+        assertEquals(2, compact.getCost("B", "A"));
+    }
+
+    @Test
+    public void testLongChainDoesNotOverflowStack() {
+        CompactUndirectedGraph.Builder<Integer> builder = new CompactUndirectedGraph.Builder<>();
+        int n = 200_000;
+        for (int i = 0; i < n; i++) {
+            builder.add(i);
+        }
+        for (int i = 1; i < n; i++) {
+            builder.connect(i - 1, i, 1);
+        }
+        CompactUndirectedGraph<Integer> chain = builder.build();
+        assertEquals(n, chain.depthFirstSearch(0, n - 1).size());
+        assertEquals(n, chain.breadthFirstSearch(n - 1, 0).size());
+        assertEquals(n - 1, chain.minimumSpanningTree().getNumberOfEdges());
+    }
+
+    @Test
+    public void testTombstonesAndCompaction() {
+        CompactUndirectedGraph.Builder<Integer> builder = new CompactUndirectedGraph.Builder<>();
+        int n = 100;
+        for (int i = 0; i < n; i++) {
+            builder.add(i);
+        }
+        for (int i = 1; i < n; i++) {
+            builder.connect(i - 1, i, i);
+        }
+        CompactUndirectedGraph<Integer> chain = builder.build();
+        int slots = chain.neighbors().length;
+
+        // A few removals stay as tombstones that the searches step over.
+        assertTrue(chain.disconnect(10, 11));
+        assertTrue(chain.remove(50));
+        assertEquals(n - 1, chain.getNumberOfNodes());
+        assertEquals(n - 4, chain.getNumberOfEdges());
+        assertTrue(chain.breadthFirstSearch(0, 20).isEmpty());
+        assertTrue(chain.depthFirstSearch(40, 60).isEmpty());
+        assertFalse(chain.shortestPath(0, 20).exists());
+        assertEquals(-1, chain.parallelBreadthFirstSearch(0).distance(20));
+        assertEquals(11, chain.breadthFirstSearch(11, 21).size());
+        assertEquals(-1, chain.getCost(49, 50));
+
+        // Reconnecting reuses the slot.
+        assertTrue(chain.connect(11, 10, 3));
+        assertEquals(21, chain.depthFirstSearch(0, 20).size());
+
+        // Past a quarter of the slots the tombstones are squeezed out, small enough to happen
+        // in one step. The removed node keeps its id until the next add takes it.
+        for (int i = 60; i < 90; i++) {
+            chain.disconnect(i, i + 1);
+        }
+        assertEquals(67, chain.getNumberOfEdges());
+        assertTrue(chain.neighbors().length < slots);
+        assertEquals(n, chain.offsets().length - 1);
+        assertEquals(10, chain.breadthFirstSearch(99, 90).size());
+        assertEquals(List.of(49, 48), chain.depthFirstSearch(49, 48));
+        assertEquals(chain.getTotalWeight(), chain.minimumSpanningTree().getTotalWeight());
+        assertEquals(99, chain.compact().getNumberOfNodes());
+        assertEquals(99, chain.compact().offsets().length - 1);
+        assertTrue(chain.add(-1));
+        assertEquals(50, chain.idOf(-1));
+        assertEquals(99, chain.idOf(99));
+    }
+
+    @Test
+    public void testCompactionIsIncremental() {
+        int n = 20_000;
+        CompactUndirectedGraph.Builder<Integer> builder = new CompactUndirectedGraph.Builder<>();
+        MyUndirectedGraph<Integer> expected = new MyUndirectedGraph<>();
+        for (int i = 0; i < n; i++) {
+            builder.add(i);
+            expected.add(i);
+        }
+        for (int i = 1; i < n; i++) {
+            builder.connect(i - 1, i, 1 + i % 5);
+            expected.connect(i - 1, i, 1 + i % 5);
+        }
+        CompactUndirectedGraph<Integer> graph = builder.build();
+        int slots = graph.neighbors().length;
+
+        // Just over a quarter of the slots, at the end so the copy reaches them last.
+        for (int i = n - 1; i >= n - 5001; i--) {
+            graph.disconnect(i - 1, i);
+            expected.disconnect(i - 1, i);
+        }
+        assertEquals(slots, graph.neighbors().length);
+
+        // Changes while the copy runs, in rows it has passed and rows it has not.
+        graph.connect(0, 1, 9);
+        expected.connect(0, 1, 9);
+        graph.disconnect(2, 3);
+        expected.disconnect(2, 3);
+        // Bringing an edge back makes the copy start over.
+        graph.connect(2, 3, 4);
+        expected.connect(2, 3, 4);
+        graph.disconnect(5, 6);
+        expected.disconnect(5, 6);
+        graph.disconnect(12_000, 12_001);
+        expected.disconnect(12_000, 12_001);
+        graph.remove(100);
+        expected.remove(100);
+        assertEquals(slots, graph.neighbors().length);
+
+        // Each read copies a bounded number of rows, so it takes several to finish.
+        int reads = 0;
+        while (graph.neighbors().length == slots && reads < 1000) {
+            reads++;
+        }
+        assertTrue(reads > 1);
+        assertTrue(graph.neighbors().length < slots);
+        for (int i = 0; i < n; i++) {
+            assertEquals(i == 100 ? -1 : i, graph.idOf(i));
+        }
+        assertEquals(expected.getNumberOfEdges(), graph.getNumberOfEdges());
+        assertEquals(expected.getTotalWeight(), graph.getTotalWeight());
+        for (int i = 1; i < n; i++) {
+            assertEquals(expected.getCost(i - 1, i), graph.getCost(i, i - 1));
+        }
+        assertEquals(expected.breadthFirstSearch(6, 11_000), graph.depthFirstSearch(6, 11_000));
+        assertEquals(List.of(), graph.breadthFirstSearch(0, 6));
+        assertEquals(expected.minimumSpanningTree().getTotalWeight(), graph.minimumSpanningTree().getTotalWeight());
+        assertTrue(graph.add(-1));
+        assertEquals(100, graph.idOf(-1));
+    }
+
+    @Test
+    public void testBatchSearchesReuseScratch() {
+        CompactUndirectedGraph<Integer> graph = new CompactUndirectedGraph<>();
+        int n = 2000;
+        for (int i = 0; i < n; i++) {
+            graph.add(i);
+        }
+        for (int i = 1; i < n; i++) {
+            graph.connect(i - 1, i, 1);
+        }
+        List<Integer> starts = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            starts.add(i % n);
+            ends.add((i * 7) % n);
+        }
+        int limit = ForkJoinPool.getCommonPoolParallelism() + 1;
+        for (int round = 0; round < 5; round++) {
+            List<List<Integer>> paths = graph.breadthFirstSearchAll(starts, ends);
+            assertEquals(Math.abs(starts.get(4321) - ends.get(4321)) + 1, paths.get(4321).size());
+            assertTrue(graph.pooledScratch() > 0);
+            assertTrue(graph.pooledScratch() <= limit);
+        }
+
+        // After the graph grows, the pooled state is too small and is replaced.
+        graph.add(n);
+        graph.connect(n - 1, n, 1);
+        starts.set(0, n);
+        List<List<Integer>> paths = graph.depthFirstSearchAll(starts, ends);
+        assertEquals(n + 1, paths.get(0).size());
+        assertTrue(graph.pooledScratch() <= limit);
+    }
+
+    @Test
+    public void testContractionHierarchyIsDetached() {
+        CompactUndirectedGraph<String> graph = new CompactUndirectedGraph<>();
+        for (String node : List.of("A", "B", "C", "D")) {
+            graph.add(node);
+        }
+        graph.connect("A", "B", 1);
+        graph.connect("B", "C", 1);
+        graph.connect("C", "D", 1);
+        ContractionHierarchy<String> hierarchy = ContractionHierarchy.build(graph);
+
+        // Renumbers the live graph, the hierarchy keeps its own ids.
+        graph.remove("A");
+        graph.add("Z");
+        graph.connect("Z", "B", 1);
+        assertFalse(hierarchy.shortestPath("Z", "D").exists());
+        ShortestPath<String> path = hierarchy.shortestPath("A", "D");
+        assertEquals(List.of("A", "B", "C", "D"), path.getNodes());
+        assertEquals(3, path.getCost());
+    }
+
+    @Test
+    public void testHopDistancesSurviveRenumbering() {
+        CompactUndirectedGraph<Integer> graph = new CompactUndirectedGraph<>();
+        // The isolated nodes take the low ids, removing them shifts the chain down.
+        for (int i = 100; i < 105; i++) {
+            graph.add(i);
+        }
+        for (int i = 0; i < 12; i++) {
+            graph.add(i);
+        }
+        for (int i = 1; i < 12; i++) {
+            graph.connect(i - 1, i, 1);
+        }
+        HopDistances<Integer> single = graph.parallelBreadthFirstSearch(0);
+        HopDistanceMatrix<Integer> matrix = graph.multiSourceBreadthFirstSearch(List.of(0, 11));
+
+        for (int i = 100; i < 105; i++) {
+            graph.remove(i);
+        }
+        graph.add(50);
+        graph.connect(50, 0, 1);
+        assertEquals(1, graph.getCost(0, 50));
+
+        assertEquals(0, single.getSource());
+        assertEquals(9, single.distance(9));
+        assertEquals(8, single.parent(9));
+        assertEquals(10, single.pathTo(9).size());
+        assertEquals(-1, single.distance(50));
+        assertEquals(-1, single.distance(100));
+        assertEquals(9, matrix.distance(0, 9));
+        assertEquals(2, matrix.distance(1, 9));
+        assertEquals(-1, matrix.distance(0, 50));
+        assertEquals(12, matrix.getNumberOfReachableNodes(1));
+
+        // A new search sees the change.
+        assertEquals(1, graph.parallelBreadthFirstSearch(0).distance(50));
+        assertEquals(1, graph.multiSourceBreadthFirstSearch(List.of(0)).distance(0, 50));
+    }
+}
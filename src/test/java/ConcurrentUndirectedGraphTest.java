@@ -0,0 +1,211 @@
+// @author joas47
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Kör hela {@link UndirectedGraphTest} mot {@link ConcurrentUndirectedGraph}
+ * och testar dessutom samtidiga skrivningar och läsningar.
+ */
+public class ConcurrentUndirectedGraphTest extends UndirectedGraphTest {
+
+    @Override
+    protected UndirectedGraph<String> createGraph() {
+        return new ConcurrentUndirectedGraph<>();
+    }
+
+    @Test
+    public void testConcurrentConnect() throws Exception {
+        int n = 2000;
+        int threads = 8;
+        ConcurrentUndirectedGraph<Integer> graph = new ConcurrentUndirectedGraph<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads + 1);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int offset = t;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < n; i++) {
+                        graph.add(i);
+                    }
+                    // Every thread connects the same chain, in its own direction and cost.
+                    for (int i = 1; i < n; i++) {
+                        if (offset % 2 == 0) {
+                            graph.connect(i - 1, i, 1 + offset);
+                        } else {
+                            graph.connect(i, i - 1, 1 + offset);
+                        }
+                    }
+                }));
+            }
+            Future<?> reader = executor.submit(() -> {
+                while (graph.getNumberOfEdges() < n - 1) {
+                    int i = ThreadLocalRandom.current().nextInt(1, n);
+                    assertEquals(graph.getCost(i - 1, i), graph.getCost(i, i - 1));
+                    List<Integer> path = graph.breadthFirstSearch(0, i);
+                    for (int k = 1; k < path.size(); k++) {
+                        assertEquals(path.get(k - 1) + 1, path.get(k));
+                    }
+                }
+            });
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+            reader.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(n, graph.getNumberOfNodes());
+        assertEquals(n - 1, graph.getNumberOfEdges());
+        long weight = 0;
+        for (int i = 1; i < n; i++) {
+            int cost = graph.getCost(i - 1, i);
+            assertEquals(cost, graph.getCost(i, i - 1));
+            weight += cost;
+        }
+        assertEquals(weight, graph.getTotalWeight());
+        assertEquals(n, graph.depthFirstSearch(0, n - 1).size());
+        assertEquals(n - 1, graph.compact().getNumberOfEdges());
+    }
+
+    @Test
+    public void testConcurrentRemoveAndConnect() throws Exception {
+        int n = 200;
+        ConcurrentUndirectedGraph<Integer> graph = new ConcurrentUndirectedGraph<>();
+        for (int i = 0; i < n; i++) {
+            graph.add(i);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < 3; t++) {
+                workers.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < 20_000; i++) {
+                        graph.connect(random.nextInt(n), random.nextInt(n), 1 + random.nextInt(5));
+                    }
+                }));
+            }
+            workers.add(executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 2000; i++) {
+                    int node = random.nextInt(n);
+                    graph.remove(node);
+                    graph.add(node);
+                    graph.disconnect(random.nextInt(n), random.nextInt(n));
+                }
+            }));
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        int edges = 0;
+        long weight = 0;
+        for (int a = 0; a < n; a++) {
+            for (int b = a; b < n; b++) {
+                assertEquals(graph.getCost(a, b), graph.getCost(b, a));
+                if (graph.isConnected(a, b)) {
+                    edges++;
+                    weight += graph.getCost(a, b);
+                    assertFalse(graph.breadthFirstSearch(a, b).isEmpty());
+                }
+            }
+        }
+        assertEquals(edges, graph.getNumberOfEdges());
+        assertEquals(weight, graph.getTotalWeight());
+        assertEquals(edges, graph.compact().getNumberOfEdges());
+    }
+
+    @Test
+    public void testConcurrentMinimumSpanningTrees() throws Exception {
+        int n = 5000;
+        ConcurrentUndirectedGraph<Integer> graph = new ConcurrentUndirectedGraph<>();
+        MyUndirectedGraph<Integer> reference = new MyUndirectedGraph<>();
+        Random random = new Random(3);
+        for (int i = 0; i < n; i++) {
+            graph.add(i);
+            reference.add(i);
+        }
+        for (int i = 1; i < n; i++) {
+            int other = random.nextInt(i);
+            int cost = 1 + random.nextInt(100);
+            graph.connect(i, other, cost);
+            reference.connect(i, other, cost);
+        }
+        for (int i = 0; i < 3 * n; i++) {
+            int a = random.nextInt(n);
+            int b = random.nextInt(n);
+            int cost = 1 + random.nextInt(100);
+            graph.connect(a, b, cost);
+            reference.connect(a, b, cost);
+        }
+        long expected = reference.minimumSpanningTree().getTotalWeight();
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Long>> trees = new ArrayList<>();
+            for (int t = 0; t < 4 * threads; t++) {
+                trees.add(executor.submit(() -> graph.minimumSpanningTree().getTotalWeight()));
+            }
+            for (Future<Long> tree : trees) {
+                assertEquals(expected, tree.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertNotSame(graph.compact(), graph.compact());
+    }
+
+    @Test
+    public void testSearchWhileRemoving() throws Exception {
+        int n = 500;
+        ConcurrentUndirectedGraph<Integer> graph = new ConcurrentUndirectedGraph<>();
+        for (int i = 0; i < n; i++) {
+            graph.add(i);
+        }
+        for (int i = 1; i < n; i++) {
+            graph.connect(i - 1, i, 1);
+            graph.connect(i, (i * 7) % n, 1);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Future<?> remover = executor.submit(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                for (int i = 0; i < 5000; i++) {
+                    int node = 1 + random.nextInt(n - 1);
+                    graph.remove(node);
+                    graph.add(node);
+                    graph.connect(node, node - 1, 1);
+                    graph.connect(node, random.nextInt(n), 1);
+                }
+            });
+            List<Future<?>> searchers = new ArrayList<>();
+            for (int t = 0; t < 2; t++) {
+                boolean depthFirst = t == 0;
+                searchers.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (!remover.isDone()) {
+                        int end = random.nextInt(n);
+                        List<Integer> path = depthFirst ? graph.depthFirstSearch(0, end) : graph.breadthFirstSearch(0, end);
+                        if (!path.isEmpty()) {
+                            assertEquals(0, path.get(0));
+                            assertEquals(end, path.get(path.size() - 1));
+                        }
+                    }
+                }));
+            }
+            remover.get();
+            for (Future<?> searcher : searchers) {
+                searcher.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
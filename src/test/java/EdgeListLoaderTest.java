@@ -0,0 +1,66 @@
+// @author joas47
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class EdgeListLoaderTest {
+
+    @TempDir
+    Path directory;
+
+    private Path write(String content) throws IOException {
+        Path file = directory.resolve("edges.txt");
+        Files.writeString(file, content);
+        return file;
+    }
+
+    @Test
+    public void testLoad() throws IOException {
+        Path file = write("# kommentar\nA B 3\nB\tC  5\r\n\nC A 2\nA A 1\nB A 7\nÅ C 4");
+        CompactUndirectedGraph<String> graph = EdgeListLoader.load(file);
+        assertEquals(4, graph.getNumberOfNodes());
+        assertEquals(5, graph.getNumberOfEdges());
+        assertEquals(7, graph.getCost("A", "B"));
+        assertEquals(5, graph.getCost("C", "B"));
+        assertEquals(1, graph.getCost("A", "A"));
+        assertEquals(4, graph.getCost("C", "Å"));
+    }
+
+    @Test
+    public void testLoadOnManyThreadsMatchesOneThread() throws IOException {
+        StringBuilder content = new StringBuilder();
+        Random random = new Random(3);
+        for (int i = 0; i < 20_000; i++) {
+            content.append("n").append(random.nextInt(2000)).append(' ')
+                    .append("n").append(random.nextInt(2000)).append(' ')
+                    .append(1 + random.nextInt(50)).append('\n');
+        }
+        Path file = write(content.toString());
+        CompactUndirectedGraph<String> single = EdgeListLoader.load(file, 1);
+        CompactUndirectedGraph<String> parallel = EdgeListLoader.load(file, 8);
+        MyUndirectedGraph<String> loaded = EdgeListLoader.loadInto(file, new MyUndirectedGraph<>(), 4);
+        assertEquals(single.getNumberOfNodes(), parallel.getNumberOfNodes());
+        assertEquals(single.getNumberOfEdges(), parallel.getNumberOfEdges());
+        assertEquals(single.getNumberOfEdges(), loaded.getNumberOfEdges());
+        for (int i = 0; i < 2000; i += 17) {
+            for (int j = 0; j < 2000; j += 13) {
+                assertEquals(single.getCost("n" + i, "n" + j), parallel.getCost("n" + i, "n" + j));
+                assertEquals(single.getCost("n" + i, "n" + j), loaded.getCost("n" + i, "n" + j));
+            }
+        }
+    }
+
+    @Test
+    public void testMalformedLine() throws IOException {
+        assertThrows(IOException.class, () -> EdgeListLoader.load(write("A B 3\nA B\n")));
+        assertThrows(IOException.class, () -> EdgeListLoader.load(write("A B 0\n")));
+        assertThrows(IOException.class, () -> EdgeListLoader.load(write("A B 3 4\n")));
+    }
+}
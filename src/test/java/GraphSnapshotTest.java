@@ -0,0 +1,68 @@
+// @author joas47
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class GraphSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void testSaveAndOpen() throws IOException {
+        MyUndirectedGraph<String> graph = new MyUndirectedGraph<>();
+        graph.addAll(List.of("A", "B", "C", "D", "E", "Ö"));
+        graph.connect("A", "B", 2);
+        graph.connect("B", "C", 3);
+        graph.connect("C", "D", 4);
+        graph.connect("A", "C", 9);
+        graph.connect("E", "E", 1);
+        Path file = directory.resolve("graph.bin");
+        graph.save(file, NodeCodec.STRING);
+
+        MappedUndirectedGraph<String> mapped = GraphSnapshot.open(file, NodeCodec.STRING);
+        assertEquals(6, mapped.getNumberOfNodes());
+        assertEquals(5, mapped.getNumberOfEdges());
+        assertEquals(19, mapped.getTotalWeight());
+        assertEquals(9, mapped.getCost("C", "A"));
+        assertEquals(1, mapped.getCost("E", "E"));
+        assertEquals(-1, mapped.getCost("A", "D"));
+        assertEquals(-1, mapped.getCost("A", "Z"));
+        assertFalse(mapped.isConnected("Ö", "A"));
+        assertEquals(List.of("A", "C", "D"), mapped.breadthFirstSearch("A", "D"));
+        assertEquals("D", mapped.depthFirstSearch("A", "D").get(mapped.depthFirstSearch("A", "D").size() - 1));
+        assertEquals(List.of(), mapped.breadthFirstSearch("A", "E"));
+        assertEquals(3, mapped.minimumSpanningTree().getNumberOfEdges());
+        assertThrows(UnsupportedOperationException.class, () -> mapped.connect("A", "D", 1));
+    }
+
+    @Test
+    public void testIntegerNodes() throws IOException {
+        CompactUndirectedGraph.Builder<Integer> builder = new CompactUndirectedGraph.Builder<>();
+        for (int i = 0; i < 1000; i++) {
+            builder.add(i * 7);
+        }
+        for (int i = 1; i < 1000; i++) {
+            builder.connect((i - 1) * 7, i * 7, i);
+        }
+        Path file = directory.resolve("ints.bin");
+        builder.build().save(file, NodeCodec.INTEGER);
+        MappedUndirectedGraph<Integer> mapped = GraphSnapshot.open(file, NodeCodec.INTEGER);
+        assertEquals(500, mapped.getCost(499 * 7, 500 * 7));
+        assertEquals(1000, mapped.depthFirstSearch(0, 999 * 7).size());
+    }
+
+    @Test
+    public void testRejectsOtherFiles() throws IOException {
+        Path file = directory.resolve("other.bin");
+        Files.write(file, new byte[128]);
+        assertThrows(IOException.class, () -> GraphSnapshot.open(file, NodeCodec.STRING));
+    }
+}
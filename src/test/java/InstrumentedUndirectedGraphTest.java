@@ -0,0 +1,103 @@
+// @author joas47
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * Kör hela {@link UndirectedGraphTest} genom en
+ * {@link InstrumentedUndirectedGraph} och testar dessutom mätningarna och
+ * händelserna till Flight Recorder.
+ */
+public class InstrumentedUndirectedGraphTest extends UndirectedGraphTest {
+
+    @Override
+    protected UndirectedGraph<String> createGraph() {
+        return new InstrumentedUndirectedGraph<>(new MyUndirectedGraph<>());
+    }
+
+    @Test
+    public void testCountsAndLatencies() {
+        InstrumentedUndirectedGraph<Integer> graph = new InstrumentedUndirectedGraph<>(new MyUndirectedGraph<>());
+        graph.addAll(List.of(0, 1, 2));
+        graph.connect(0, 1, 1);
+        graph.connect(1, 2, 1);
+        graph.isConnected(0, 2);
+        graph.getCost(0, 1);
+        assertEquals(List.of(0, 1, 2), graph.breadthFirstSearch(0, 2));
+        graph.breadthFirstSearch(2, 0);
+        graph.depthFirstSearch(0, 2);
+        assertEquals(2, graph.minimumSpanningTree().getNumberOfEdges());
+
+        assertEquals(1, graph.getCount(InstrumentedUndirectedGraph.Operation.ADD));
+        assertEquals(2, graph.getCount(InstrumentedUndirectedGraph.Operation.CONNECT));
+        assertEquals(1, graph.getCount(InstrumentedUndirectedGraph.Operation.IS_CONNECTED));
+        assertEquals(1, graph.getCount(InstrumentedUndirectedGraph.Operation.GET_COST));
+        assertEquals(2, graph.getCount(InstrumentedUndirectedGraph.Operation.BREADTH_FIRST_SEARCH));
+        assertEquals(1, graph.getCount(InstrumentedUndirectedGraph.Operation.DEPTH_FIRST_SEARCH));
+        assertEquals(1, graph.getCount(InstrumentedUndirectedGraph.Operation.MINIMUM_SPANNING_TREE));
+        assertEquals(0, graph.getCount(InstrumentedUndirectedGraph.Operation.REMOVE));
+
+        LatencyHistogram bfs = graph.getLatency(InstrumentedUndirectedGraph.Operation.BREADTH_FIRST_SEARCH);
+        assertTrue(bfs.getMean() > 0);
+        assertTrue(bfs.getValueAtPercentile(50) <= bfs.getMax());
+    }
+
+    @Test
+    public void testHistogramPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value * 1000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500_500, histogram.getMean(), 1e-6);
+        // Each bucket is at most 1/32 of its value wide.
+        long median = histogram.getValueAtPercentile(50);
+        assertTrue(median >= 500_000 && median <= 500_000 * 33 / 32, "median " + median);
+        long max = histogram.getMax();
+        assertTrue(max >= 1_000_000 && max <= 1_000_000 * 33 / 32, "max " + max);
+        assertEquals(max, histogram.getValueAtPercentile(100));
+
+        histogram.record(7);
+        assertEquals(7, histogram.getValueAtPercentile(0));
+        assertThrows(IllegalArgumentException.class, () -> histogram.getValueAtPercentile(101));
+    }
+
+    @Test
+    public void testFlightRecorderEvents(@TempDir Path dir) throws Exception {
+        InstrumentedUndirectedGraph<Integer> graph = new InstrumentedUndirectedGraph<>(new MyUndirectedGraph<>());
+        graph.addAll(List.of(0, 1, 2, 3));
+        graph.connect(0, 1, 1);
+        graph.connect(1, 2, 1);
+        graph.connect(2, 3, 1);
+
+        Path file = dir.resolve("graph.jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("graph.Operation").withThreshold(java.time.Duration.ZERO);
+            recording.start();
+            graph.breadthFirstSearch(0, 3);
+            graph.isConnected(0, 3);
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        assertEquals(2, events.size());
+        RecordedEvent search = events.stream()
+                .filter(e -> e.getString("operation").equals("BREADTH_FIRST_SEARCH"))
+                .findFirst().orElseThrow();
+        assertEquals(4, search.getInt("pathLength"));
+        RecordedEvent query = events.stream()
+                .filter(e -> e.getString("operation").equals("IS_CONNECTED"))
+                .findFirst().orElseThrow();
+        assertEquals(-1, query.getInt("pathLength"));
+    }
+}
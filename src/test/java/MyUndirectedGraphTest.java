@@ -0,0 +1,714 @@
+// @author joas47
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Tester för det som är specifikt för {@link MyUndirectedGraph}, utöver
+ * gränssnittet som täcks av {@link UndirectedGraphTest}.
+ */
+public class MyUndirectedGraphTest {
+
+    private static MyUndirectedGraph<Integer> chain(int n) {
+        MyUndirectedGraph<Integer> graph = new MyUndirectedGraph<>();
+        for (int i = 0; i < n; i++) {
+            graph.add(i);
+        }
+        for (int i = 1; i < n; i++) {
+            graph.connect(i - 1, i, 1);
+        }
+        return graph;
+    }
+
+    @Test
+    public void testDepthFirstSearchOnLongChain() {
+        int n = 1_000_000;
+        MyUndirectedGraph<Integer> graph = chain(n);
+        List<Integer> path = graph.depthFirstSearch(0, n - 1);
+        assertEquals(n, path.size());
+        assertEquals(0, path.get(0));
+        assertEquals(n - 1, path.get(n - 1));
+    }
+
+    @Test
+    public void testDepthFirstSearchIsRepeatable() {
+        MyUndirectedGraph<Integer> graph = chain(10);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(List.of(2, 3, 4, 5), graph.depthFirstSearch(2, 5));
+            assertEquals(List.of(5, 4, 3, 2), graph.depthFirstSearch(5, 2));
+        }
+        graph.add(10);
+        assertEquals(List.of(), graph.depthFirstSearch(0, 10));
+    }
+
+    private static MyUndirectedGraph<Integer> randomGraph(int n, int edges, long seed) {
+        Random random = new Random(seed);
+        MyUndirectedGraph<Integer> graph = new MyUndirectedGraph<>();
+        for (int i = 0; i < n; i++) {
+            graph.add(i);
+        }
+        for (int i = 0; i < edges; i++) {
+            graph.connect(random.nextInt(n), random.nextInt(n), 1 + random.nextInt(20));
+        }
+        return graph;
+    }
+
+    private static void assertValidPath(MyUndirectedGraph<Integer> graph, int start, int end, List<Integer> path) {
+        assertEquals(start, path.get(0));
+        assertEquals(end, path.get(path.size() - 1));
+        for (int i = 1; i < path.size(); i++) {
+            assertTrue(graph.isConnected(path.get(i - 1), path.get(i)));
+        }
+        assertEquals(path.size(), new HashSet<>(path).size());
+    }
+
+    @Test
+    public void testBidirectionalBreadthFirstSearchFindsShortestPaths() {
+        MyUndirectedGraph<Integer> graph = randomGraph(300, 360, 1);
+        for (int start = 0; start < 300; start += 7) {
+            for (int end = 0; end < 300; end += 11) {
+                List<Integer> expected = graph.breadthFirstSearch(start, end);
+                List<Integer> path = graph.bidirectionalBreadthFirstSearch(start, end);
+                assertEquals(expected.size(), path.size());
+                if (!path.isEmpty()) {
+                    assertValidPath(graph, start, end, path);
+                }
+            }
+        }
+        assertEquals(List.of(), graph.bidirectionalBreadthFirstSearch(0, 1000));
+        assertEquals(List.of(5), graph.bidirectionalBreadthFirstSearch(5, 5));
+    }
+
+    @Test
+    public void testParallelBreadthFirstSearchMatchesBreadthFirstSearch() {
+        // Stor nog för att både top-down- och bottom-up-stegen ska användas.
+        MyUndirectedGraph<Integer> graph = randomGraph(50_000, 150_000, 2);
+        graph.add(-1);
+        HopDistances<Integer> distances = graph.parallelBreadthFirstSearch(0);
+        assertEquals(0, distances.distance(0));
+        assertNull(distances.parent(0));
+        assertEquals(-1, distances.distance(-1));
+        assertEquals(List.of(), distances.pathTo(-1));
+        for (int end = 0; end < 50_000; end += 997) {
+            List<Integer> expected = graph.breadthFirstSearch(0, end);
+            assertEquals(expected.size() - 1, distances.distance(end));
+            if (!expected.isEmpty()) {
+                assertValidPath(graph, 0, end, distances.pathTo(end));
+                assertEquals(expected.size(), distances.pathTo(end).size());
+            }
+        }
+    }
+
+    /**
+     * Kortaste avstånd från start till alla noder med Bellman-Ford, som
+     * facit för de snabbare algoritmerna.
+     */
+    static long[] bellmanFord(MyUndirectedGraph<Integer> graph, int n, int start) {
+        long[] distance = new long[n];
+        Arrays.fill(distance, Long.MAX_VALUE);
+        distance[start] = 0;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int v = 0; v < n; v++) {
+                if (distance[v] == Long.MAX_VALUE) {
+                    continue;
+                }
+                for (int w = 0; w < n; w++) {
+                    int cost = graph.getCost(v, w);
+                    if (cost > 0 && distance[v] + cost < distance[w]) {
+                        distance[w] = distance[v] + cost;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return distance;
+    }
+
+    @Test
+    public void testMultiSourceBreadthFirstSearchMatchesSingleSource() {
+        int n = 1500;
+        MyUndirectedGraph<Integer> graph = randomGraph(n, 1800, 14);
+        Random random = new Random(15);
+        List<Integer> sources = new ArrayList<>();
+        for (int i = 0; i < 150; i++) {
+            sources.add(random.nextInt(n));
+        }
+        // A duplicate and a missing node, in different groups of 64.
+        sources.set(70, sources.get(3));
+        sources.set(140, -1);
+        HopDistanceMatrix<Integer> matrix = graph.multiSourceBreadthFirstSearch(sources);
+        assertEquals(sources, matrix.getSources());
+        for (int j = 0; j < sources.size(); j++) {
+            HopDistances<Integer> expected = graph.parallelBreadthFirstSearch(sources.get(j));
+            for (int v = 0; v < n; v++) {
+                assertEquals(expected.distance(v), matrix.distance(j, v));
+            }
+            assertEquals(j == 140 ? 0 : expected.getNumberOfReachableNodes(), matrix.getNumberOfReachableNodes(j));
+        }
+        assertEquals(-1, matrix.distance(0, n));
+    }
+
+    @Test
+    public void testBatchSearchesMatchSingleSearches() {
+        int n = 2000;
+        MyUndirectedGraph<Integer> graph = randomGraph(n, 2500, 12);
+        Random random = new Random(13);
+        List<Integer> starts = new ArrayList<>();
+        List<Integer> ends = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            starts.add(random.nextInt(n + 10));
+            ends.add(random.nextInt(n + 10));
+        }
+        List<List<Integer>> breadth = graph.breadthFirstSearchAll(starts, ends);
+        List<List<Integer>> depth = graph.depthFirstSearchAll(starts, ends);
+        assertEquals(starts.size(), breadth.size());
+        for (int i = 0; i < starts.size(); i++) {
+            List<Integer> expected = graph.breadthFirstSearch(starts.get(i), ends.get(i));
+            assertEquals(expected.size(), breadth.get(i).size());
+            assertEquals(expected.isEmpty(), depth.get(i).isEmpty());
+            List<Integer> path = depth.get(i);
+            if (!path.isEmpty()) {
+                assertEquals(starts.get(i), path.get(0));
+                assertEquals(ends.get(i), path.get(path.size() - 1));
+                for (int k = 1; k < path.size(); k++) {
+                    assertTrue(graph.isConnected(path.get(k - 1), path.get(k)));
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        List<Integer>[] streamed = (List<Integer>[]) new List<?>[starts.size()];
+        graph.compact().breadthFirstSearchAll(starts, ends, (path, i) -> streamed[i] = path);
+        assertEquals(breadth, Arrays.asList(streamed));
+        assertThrows(IllegalArgumentException.class, () -> graph.depthFirstSearchAll(starts, ends.subList(1, ends.size())));
+    }
+
+    @Test
+    public void testShortestPath() {
+        MyUndirectedGraph<String> graph = new MyUndirectedGraph<>();
+        graph.addAll(List.of("A", "B", "C", "D"));
+        graph.connect("A", "B", 2);
+        graph.connect("B", "C", 3);
+        graph.connect("A", "C", 9);
+        ShortestPath<String> path = graph.shortestPath("A", "C");
+        assertEquals(5, path.getCost());
+        assertEquals(List.of("A", "B", "C"), path.getNodes());
+        assertEquals(0, graph.shortestPath("D", "D").getCost());
+        assertFalse(graph.shortestPath("A", "D").exists());
+        assertEquals(-1, graph.shortestPath("A", "Z").getCost());
+        graph.connect("A", "C", 4);
+        assertEquals(List.of("A", "C"), graph.shortestPath("A", "C").getNodes());
+    }
+
+    @Test
+    public void testShortestPathMatchesBellmanFord() {
+        int n = 120;
+        MyUndirectedGraph<Integer> graph = randomGraph(n, 240, 4);
+        for (int start = 0; start < n; start += 13) {
+            long[] expected = bellmanFord(graph, n, start);
+            for (int end = 0; end < n; end++) {
+                ShortestPath<Integer> path = graph.shortestPath(start, end);
+                if (expected[end] == Long.MAX_VALUE) {
+                    assertFalse(path.exists());
+                    continue;
+                }
+                assertEquals(expected[end], path.getCost());
+                long cost = 0;
+                List<Integer> nodes = path.getNodes();
+                for (int i = 1; i < nodes.size(); i++) {
+                    cost += graph.getCost(nodes.get(i - 1), nodes.get(i));
+                }
+                assertEquals(expected[end], cost);
+            }
+        }
+    }
+
+    @Test
+    public void testLandmarkIndexMatchesBellmanFord(@TempDir Path directory) throws IOException {
+        int n = 150;
+        MyUndirectedGraph<Integer> graph = randomGraph(n, 300, 5);
+        LandmarkIndex<Integer> index = LandmarkIndex.build(graph, 6);
+        assertEquals(6, index.getLandmarks().size());
+        for (int start = 0; start < n; start += 11) {
+            long[] expected = bellmanFord(graph, n, start);
+            for (int end = 0; end < n; end += 3) {
+                long cost = index.shortestPath(start, end).getCost();
+                assertEquals(expected[end] == Long.MAX_VALUE ? -1 : expected[end], cost);
+            }
+        }
+
+        graph.connect(0, 1, 1);
+        assertTrue(index.isStale());
+        assertEquals(1, index.shortestPath(0, 1).getCost());
+        assertFalse(index.isStale());
+
+        Path file = directory.resolve("landmarks.bin");
+        index.save(file);
+        LandmarkIndex<Integer> loaded = LandmarkIndex.load(file, graph);
+        assertEquals(index.getLandmarks(), loaded.getLandmarks());
+        long[] expected = bellmanFord(graph, n, 7);
+        for (int end = 0; end < n; end++) {
+            assertEquals(expected[end] == Long.MAX_VALUE ? -1 : expected[end], loaded.shortestPath(7, end).getCost());
+        }
+    }
+
+    @Test
+    public void testContractionHierarchyLongShortcutCosts() {
+        int n = 8;
+        MyUndirectedGraph<Integer> graph = new MyUndirectedGraph<>();
+        for (int i = 0; i < n; i++) {
+            graph.add(i);
+        }
+        for (int i = 1; i < n; i++) {
+            graph.connect(i - 1, i, Integer.MAX_VALUE - i);
+        }
+        ContractionHierarchy<Integer> hierarchy = ContractionHierarchy.build(graph);
+        // Shortcuts over a chain this expensive cost more than an int can hold.
+        assertTrue(hierarchy.getNumberOfShortcuts() > 0);
+        for (int start = 0; start < n; start++) {
+            long[] expected = bellmanFord(graph, n, start);
+            for (int end = 0; end < n; end++) {
+                assertEquals(expected[end], hierarchy.shortestPath(start, end).getCost());
+            }
+        }
+    }
+
+    @Test
+    public void testContractionHierarchyMatchesBellmanFord() {
+        int n = 200;
+        MyUndirectedGraph<Integer> graph = randomGraph(n, 400, 6);
+        ContractionHierarchy<Integer> hierarchy = ContractionHierarchy.build(graph);
+        for (int start = 0; start < n; start += 9) {
+            long[] expected = bellmanFord(graph, n, start);
+            for (int end = 0; end < n; end++) {
+                ShortestPath<Integer> path = hierarchy.shortestPath(start, end);
+                if (expected[end] == Long.MAX_VALUE) {
+                    assertFalse(path.exists());
+                    continue;
+                }
+                assertEquals(expected[end], path.getCost());
+                // The unpacked path must use original edges only.
+                long cost = 0;
+                List<Integer> nodes = path.getNodes();
+                assertEquals(start, nodes.get(0));
+                assertEquals(end, nodes.get(nodes.size() - 1));
+                for (int i = 1; i < nodes.size(); i++) {
+                    cost += graph.getCost(nodes.get(i - 1), nodes.get(i));
+                }
+                assertEquals(expected[end], cost);
+            }
+        }
+        assertFalse(hierarchy.shortestPath(0, 999).exists());
+    }
+
+    private static long treeWeight(UndirectedGraph<Integer> tree, MyUndirectedGraph<Integer> graph, int n) {
+        long weight = 0;
+        for (int v = 0; v < n; v++) {
+            for (int w = v + 1; w < n; w++) {
+                int cost = tree.getCost(v, w);
+                if (cost > 0) {
+                    assertEquals(graph.getCost(v, w), cost);
+                    weight += cost;
+                }
+            }
+        }
+        return weight;
+    }
+
+    @Test
+    public void testParallelMinimumSpanningTreeMatchesPrim() {
+        // Sparse enough to leave several components, so both results are spanning forests.
+        int n = 600;
+        MyUndirectedGraph<Integer> graph = randomGraph(n, 700, 7);
+        UndirectedGraph<Integer> expected = graph.compact().minimumSpanningTree();
+        UndirectedGraph<Integer> forest = graph.parallelMinimumSpanningTree();
+        assertEquals(n, forest.getNumberOfNodes());
+        assertEquals(expected.getNumberOfEdges(), forest.getNumberOfEdges());
+        assertEquals(treeWeight(expected, graph, n), treeWeight(forest, graph, n));
+
+        MyUndirectedGraph<Integer> large = randomGraph(20_000, 80_000, 8);
+        assertEquals(large.compact().minimumSpanningTree().getNumberOfEdges(), large.parallelMinimumSpanningTree().getNumberOfEdges());
+    }
+
+    @Test
+    public void testMinimumSpanningTreeView() {
+        MyUndirectedGraph<String> graph = new MyUndirectedGraph<>();
+        graph.addAll(List.of("A", "B", "C", "D", "E", "F"));
+        graph.connect("A", "B", 1);
+        graph.connect("B", "C", 2);
+        graph.connect("A", "C", 5);
+        graph.connect("B", "D", 3);
+        graph.connect("E", "F", 4);
+        UndirectedGraph<String> tree = graph.minimumSpanningTree();
+        assertEquals(6, tree.getNumberOfNodes());
+        assertEquals(4, tree.getNumberOfEdges());
+        assertEquals(10, tree.getTotalWeight());
+        assertEquals(-1, tree.getCost("A", "C"));
+        assertEquals(List.of("C", "B", "D"), tree.breadthFirstSearch("C", "D"));
+        assertEquals(List.of("D", "B", "A"), tree.depthFirstSearch("D", "A"));
+        assertEquals(List.of("A"), tree.breadthFirstSearch("A", "A"));
+        assertTrue(tree.breadthFirstSearch("A", "F").isEmpty());
+        assertSame(tree, tree.minimumSpanningTree());
+        assertThrows(UnsupportedOperationException.class, () -> tree.connect("A", "C", 1));
+
+        // Vyn är en kopia, senare ändringar i grafen syns inte.
+        graph.connect("A", "E", 1);
+        assertEquals(4, tree.getNumberOfEdges());
+        assertEquals(11, graph.minimumSpanningTree().getTotalWeight());
+    }
+
+    @Test
+    public void testDynamicSpanningForestMatchesPrim() {
+        int n = 300;
+        Random random = new Random(9);
+        MyUndirectedGraph<Integer> graph = new MyUndirectedGraph<>();
+        DynamicSpanningForest<Integer> forest = new DynamicSpanningForest<>(graph);
+        for (int i = 0; i < n; i++) {
+            forest.add(i);
+        }
+        for (int i = 0; i < 2000; i++) {
+            int a = random.nextInt(n);
+            int b = random.nextInt(n);
+            // Mostly new edges and lower costs, now and then a higher cost that forces a rebuild.
+            int cost = i % 97 == 0 ? 50 : 1 + random.nextInt(30);
+            forest.connect(a, b, cost);
+            if (i % 50 == 0) {
+                UndirectedGraph<Integer> expected = graph.minimumSpanningTree();
+                assertEquals(expected.getTotalWeight(), forest.getTotalWeight());
+                assertEquals(expected.getNumberOfEdges(), forest.getNumberOfEdges());
+            }
+        }
+        UndirectedGraph<Integer> tree = forest.minimumSpanningTree();
+        assertEquals(graph.minimumSpanningTree().getTotalWeight(), tree.getTotalWeight());
+        for (int v = 1; v < n; v++) {
+            assertEquals(!graph.breadthFirstSearch(0, v).isEmpty(), forest.sameTree(0, v));
+        }
+
+        // Changes made directly on the graph are picked up on the next call.
+        graph.add(n);
+        graph.connect(n, 0, 1);
+        assertEquals(graph.minimumSpanningTree().getTotalWeight(), forest.getTotalWeight());
+        assertEquals(1, forest.getCost(0, n));
+    }
+
+    @Test
+    public void testComponents() {
+        MyUndirectedGraph<Integer> graph = chain(5);
+        graph.addAll(List.of(10, 11, 12));
+        assertEquals(4, graph.componentCount());
+        assertEquals(5, graph.componentSize(3));
+        assertEquals(1, graph.componentSize(12));
+        assertEquals(0, graph.componentSize(99));
+        assertTrue(graph.sameComponent(0, 4));
+        assertFalse(graph.sameComponent(0, 10));
+        assertFalse(graph.sameComponent(0, 99));
+        assertTrue(graph.depthFirstSearch(0, 11).isEmpty());
+        assertTrue(graph.breadthFirstSearch(0, 11).isEmpty());
+        assertTrue(graph.bidirectionalBreadthFirstSearch(0, 11).isEmpty());
+        assertFalse(graph.shortestPath(0, 11).exists());
+
+        graph.connect(10, 11, 2);
+        graph.connect(11, 4, 2);
+        // A cost update and a self-loop leave the components as they are.
+        graph.connect(10, 11, 3);
+        graph.connect(12, 12, 1);
+        assertEquals(2, graph.componentCount());
+        assertEquals(7, graph.componentSize(10));
+        assertEquals(List.of(0, 1, 2, 3, 4, 11), graph.breadthFirstSearch(0, 11));
+
+        MyUndirectedGraph<Integer> random = randomGraph(500, 400, 10);
+        for (int v = 1; v < 500; v++) {
+            assertEquals(!random.breadthFirstSearch(0, v).isEmpty(), random.sameComponent(0, v));
+        }
+    }
+
+    @Test
+    public void testSnapshotIsUnaffectedByLaterChanges() {
+        int n = 3000;
+        MyUndirectedGraph<Integer> graph = chain(n);
+        graph.connect(0, 0, 4);
+        UndirectedGraph<Integer> snapshot = graph.snapshot();
+        assertSame(snapshot, graph.snapshot());
+        long weight = graph.getTotalWeight();
+        long treeWeight = graph.minimumSpanningTree().getTotalWeight();
+
+        // New nodes, new edges on old nodes, cost updates and a self-loop update, spread over
+        // several pages.
+        graph.addAll(List.of(n, n + 1));
+        graph.connect(n, 0, 1);
+        graph.connect(0, n - 1, 1);
+        graph.connect(1, 2, 9);
+        graph.connect(2000, 2001, 7);
+        graph.connect(0, 0, 5);
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.connect(0, 5, 1));
+
+        assertEquals(n, snapshot.getNumberOfNodes());
+        assertEquals(n, snapshot.getNumberOfEdges());
+        assertEquals(weight, snapshot.getTotalWeight());
+        assertEquals(1, snapshot.getCost(2, 1));
+        assertEquals(1, snapshot.getCost(2001, 2000));
+        assertEquals(4, snapshot.getCost(0, 0));
+        assertFalse(snapshot.isConnected(0, n - 1));
+        assertFalse(snapshot.isConnected(n, 0));
+        assertTrue(snapshot.breadthFirstSearch(0, n).isEmpty());
+        assertEquals(n, snapshot.breadthFirstSearch(0, n - 1).size());
+        assertEquals(n, snapshot.depthFirstSearch(n - 1, 0).size());
+        assertEquals(treeWeight, snapshot.minimumSpanningTree().getTotalWeight());
+
+        assertEquals(9, graph.getCost(2, 1));
+        assertEquals(5, graph.getCost(0, 0));
+        assertEquals(List.of(0, n - 1), graph.breadthFirstSearch(0, n - 1));
+        UndirectedGraph<Integer> later = graph.snapshot();
+        assertNotSame(snapshot, later);
+        assertEquals(graph.getNumberOfEdges(), later.getNumberOfEdges());
+        assertEquals(List.of(n - 1, 0, n), later.breadthFirstSearch(n - 1, n));
+        assertEquals(graph.minimumSpanningTree().getTotalWeight(), later.minimumSpanningTree().getTotalWeight());
+    }
+
+    @Test
+    public void testSnapshotReadWhileGraphGrows() throws Exception {
+        int n = 5000;
+        MyUndirectedGraph<Integer> graph = chain(n);
+        UndirectedGraph<Integer> snapshot = graph.snapshot();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> reader = executor.submit(() -> {
+                for (int round = 0; round < 20; round++) {
+                    assertEquals(n, snapshot.breadthFirstSearch(0, n - 1).size());
+                    assertEquals(n - 1, snapshot.minimumSpanningTree().getTotalWeight());
+                }
+            });
+            Random random = new Random(11);
+            for (int i = 0; i < 20_000; i++) {
+                graph.add(n + i);
+                graph.connect(random.nextInt(n + i), n + i, 1 + random.nextInt(5));
+                graph.connect(random.nextInt(n), random.nextInt(n), 1 + random.nextInt(5));
+                if (i % 1000 == 0) {
+                    graph.snapshot();
+                }
+            }
+            reader.get();
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(n - 1, snapshot.getNumberOfEdges());
+    }
+
+    @Test
+    public void testRemovalMatchesRebuiltGraph() {
+        int n = 400;
+        MyUndirectedGraph<Integer> graph = randomGraph(n, 900, 16);
+        UndirectedGraph<Integer> before = graph.snapshot();
+        Random random = new Random(17);
+        Set<Integer> removed = new HashSet<>();
+        for (int i = 0; i < 300; i++) {
+            int a = random.nextInt(n);
+            if (i % 3 == 0) {
+                graph.remove(a);
+                removed.add(a);
+            } else {
+                graph.disconnect(a, random.nextInt(n));
+            }
+        }
+        MyUndirectedGraph<Integer> rebuilt = new MyUndirectedGraph<>();
+        for (int v = 0; v < n; v++) {
+            if (!removed.contains(v)) {
+                rebuilt.add(v);
+            }
+        }
+        for (int a = 0; a < n; a++) {
+            for (int b = a; b < n; b++) {
+                if (graph.isConnected(a, b)) {
+                    assertEquals(graph.getCost(a, b), graph.getCost(b, a));
+                    rebuilt.connect(a, b, graph.getCost(a, b));
+                }
+            }
+        }
+        assertEquals(rebuilt.getNumberOfNodes(), graph.getNumberOfNodes());
+        assertEquals(rebuilt.getNumberOfEdges(), graph.getNumberOfEdges());
+        assertEquals(rebuilt.getTotalWeight(), graph.getTotalWeight());
+        assertEquals(rebuilt.componentCount(), graph.componentCount());
+        assertEquals(rebuilt.minimumSpanningTree().getTotalWeight(), graph.minimumSpanningTree().getTotalWeight());
+        assertEquals(rebuilt.compact().getNumberOfEdges(), graph.compact().getNumberOfEdges());
+        for (int v = 1; v < n; v++) {
+            assertEquals(rebuilt.breadthFirstSearch(0, v).size(), graph.breadthFirstSearch(0, v).size());
+            assertEquals(rebuilt.sameComponent(0, v), graph.sameComponent(0, v));
+            assertEquals(rebuilt.shortestPath(0, v).getCost(), graph.shortestPath(0, v).getCost());
+        }
+
+        // The snapshot taken before still has every node, whatever reused their ids since.
+        MyUndirectedGraph<Integer> original = randomGraph(n, 900, 16);
+        assertEquals(n, before.getNumberOfNodes());
+        assertEquals(original.getNumberOfEdges(), before.getNumberOfEdges());
+        assertEquals(original.getTotalWeight(), before.getTotalWeight());
+        for (int v = 0; v < n; v++) {
+            assertEquals(original.getCost(v, (v * 7) % n), before.getCost(v, (v * 7) % n));
+            assertEquals(original.breadthFirstSearch(0, v).size(), before.breadthFirstSearch(0, v).size());
+        }
+    }
+
+    @Test
+    public void testRemoveFreesTheIdWithoutMovingOthers() {
+        MyUndirectedGraph<Integer> graph = new MyUndirectedGraph<>();
+        graph.add(0);
+        for (int i = 1; i <= 1000; i++) {
+            graph.add(i);
+            graph.connect(0, i, i);
+        }
+        assertTrue(graph.remove(1));
+        // The last leaf keeps its id instead of filling the hole.
+        assertEquals(1000, graph.idOf(1000));
+        assertEquals(1000, graph.getNumberOfNodes());
+        UndirectedGraph<Integer> withGap = graph.snapshot();
+        assertEquals(999, graph.minimumSpanningTree().getNumberOfEdges());
+        assertEquals(1000, graph.minimumSpanningTree().getNumberOfNodes());
+        assertEquals(1000, graph.compact().getNumberOfNodes());
+        assertEquals(1, graph.componentCount());
+        assertEquals(1000, graph.traverse(0).breadthFirst().count());
+        DynamicSpanningForest<Integer> forest = new DynamicSpanningForest<>(graph);
+        assertEquals(graph.getTotalWeight(), forest.getTotalWeight());
+        assertEquals(1000, forest.minimumSpanningTree().getNumberOfNodes());
+
+        // The next add takes the free id.
+        assertTrue(graph.add(2000));
+        assertEquals(1, graph.idOf(2000));
+        assertTrue(graph.connect(2000, 1000, 5));
+        assertEquals(List.of(2000, 1000, 0), graph.breadthFirstSearch(2000, 0));
+        assertEquals(1, graph.componentCount());
+        assertEquals(1001, graph.minimumSpanningTree().getNumberOfNodes());
+
+        assertEquals(1000, withGap.getNumberOfNodes());
+        assertEquals(-1, withGap.getCost(2000, 1000));
+        assertEquals(-1, withGap.getCost(1, 0));
+        assertEquals(999, withGap.minimumSpanningTree().getNumberOfEdges());
+        assertEquals(List.of(1000, 0), withGap.depthFirstSearch(1000, 0));
+    }
+
+    @Test
+    public void testLazyBreadthFirstTraversal() {
+        MyUndirectedGraph<Integer> graph = randomGraph(300, 500, 17);
+        Set<Integer> visited = new HashSet<>();
+        TraversalIterator<Integer> it = graph.traverse(0).breadthFirstIterator();
+        assertThrows(IllegalStateException.class, it::depth);
+        int lastDepth = 0;
+        while (it.hasNext()) {
+            int node = it.next();
+            assertTrue(visited.add(node));
+            // Depth is the hop distance and never decreases.
+            assertEquals(graph.breadthFirstSearch(0, node).size() - 1, it.depth());
+            assertTrue(it.depth() >= lastDepth);
+            lastDepth = it.depth();
+        }
+        assertThrows(NoSuchElementException.class, it::next);
+        for (int v = 0; v < 300; v++) {
+            assertEquals(!graph.breadthFirstSearch(0, v).isEmpty(), visited.contains(v));
+        }
+        Set<Integer> depthFirst = new HashSet<>();
+        graph.traverse(0).depthFirst().forEach(depthFirst::add);
+        assertEquals(visited, depthFirst);
+        assertEquals(0, graph.traverse(-1).breadthFirst().count());
+    }
+
+    @Test
+    public void testTraversalLimits() {
+        MyUndirectedGraph<Integer> graph = chain(10);
+        assertEquals(List.of(0, 1, 2, 3), graph.traverse(0).maxDepth(3).breadthFirst().toList());
+        assertEquals(Set.of(3, 4, 5, 6, 7), new HashSet<>(graph.traverse(5).maxDepth(2).breadthFirst().toList()));
+        assertEquals(List.of(5, 6, 7), graph.traverse(5).maxDepth(2).depthFirst().filter(v -> v > 4).toList());
+        assertEquals(List.of(0, 1, 2, 3, 4), graph.traverse(0).budget(5).depthFirst().toList());
+        assertEquals(List.of(), graph.traverse(0).budget(0).breadthFirst().toList());
+        // The filter prunes, nothing behind a rejected node is reached.
+        assertEquals(List.of(0, 1, 2), graph.traverse(0).filter(v -> v != 3).breadthFirst().toList());
+        assertEquals(List.of(), graph.traverse(3).filter(v -> v != 3).depthFirst().toList());
+
+        TraversalIterator<Integer> it = graph.traverse(9).depthFirstIterator();
+        for (int expected = 9; expected >= 0; expected--) {
+            assertEquals(expected, it.next());
+            assertEquals(9 - expected, it.depth());
+        }
+        assertFalse(it.hasNext());
+        assertThrows(IllegalArgumentException.class, () -> graph.traverse(0).maxDepth(-1));
+        assertThrows(IllegalArgumentException.class, () -> graph.traverse(0).budget(-1));
+    }
+
+    @Test
+    public void testDepthFirstTraversalFindsEverythingWithinMaxDepth() {
+        // Whichever of 1 and 2 is tried first, 3 is two steps away through 0-2.
+        MyUndirectedGraph<Integer> graph = new MyUndirectedGraph<>();
+        graph.addAll(List.of(0, 1, 2, 3));
+        graph.connect(0, 1, 1);
+        graph.connect(1, 2, 1);
+        graph.connect(2, 3, 1);
+        graph.connect(0, 2, 1);
+        assertEquals(Set.of(0, 1, 2, 3), new HashSet<>(graph.traverse(0).maxDepth(2).depthFirst().toList()));
+        assertEquals(Set.of(0, 1, 2), new HashSet<>(graph.traverse(0).maxDepth(1).depthFirst().toList()));
+
+        MyUndirectedGraph<Integer> random = randomGraph(300, 500, 23);
+        for (int depth = 0; depth <= 6; depth++) {
+            List<Integer> depthFirst = random.traverse(0).maxDepth(depth).depthFirst().toList();
+            assertEquals(depthFirst.size(), new HashSet<>(depthFirst).size());
+            assertEquals(new HashSet<>(random.traverse(0).maxDepth(depth).breadthFirst().toList()),
+                    new HashSet<>(depthFirst));
+        }
+    }
+
+    @Test
+    public void testTraversalStateGrowsWithVisitedNodes() {
+        MyUndirectedGraph.IntIntMap map = new MyUndirectedGraph.IntIntMap();
+        assertEquals(MyUndirectedGraph.IntIntMap.MISSING, map.get(7));
+        for (int key = 0; key < 100_000; key += 3) {
+            map.put(key, -key);
+        }
+        map.put(3, 1);
+        assertEquals(33_334, map.size());
+        for (int key = 0; key < 100_000; key++) {
+            assertEquals(key % 3 == 0, map.containsKey(key));
+        }
+        assertEquals(1, map.get(3));
+        assertEquals(-99_999, map.get(99_999));
+        assertEquals(MyUndirectedGraph.IntIntMap.MISSING, map.get(100_000));
+    }
+
+    @Test
+    public void testTraversalIsLazy() {
+        MyUndirectedGraph<Integer> graph = new MyUndirectedGraph<>();
+        graph.add(0);
+        for (int i = 1; i <= 1000; i++) {
+            graph.add(i);
+            graph.connect(0, i, 1);
+        }
+        int[] tested = new int[1];
+        Optional<Integer> first = graph.traverse(0)
+                .filter(v -> {
+                    tested[0]++;
+                    return true;
+                })
+                .breadthFirst()
+                .filter(v -> v != 0)
+                .findFirst();
+        assertTrue(first.isPresent());
+        // The centre is expanded once the consumer asks for a second node, not before.
+        assertEquals(1001, tested[0]);
+        tested[0] = 0;
+        graph.traverse(0).filter(v -> {
+            tested[0]++;
+            return true;
+        }).breadthFirst().findFirst();
+        assertEquals(1, tested[0]);
+
+        Iterator<Integer> it = graph.traverse(0).depthFirstIterator();
+        it.next();
+        graph.connect(1, 2, 1);
+        assertThrows(ConcurrentModificationException.class, it::hasNext);
+    }
+}
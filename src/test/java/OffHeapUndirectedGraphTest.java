@@ -0,0 +1,207 @@
+// @author joas47
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+/**
+ * Kör hela {@link UndirectedGraphTest} mot {@link OffHeapUndirectedGraph}
+ * och testar dessutom att id:n och bågposter hålls rätt vid borttagning och
+ * att grafen inte går att använda efter {@link OffHeapUndirectedGraph#close}.
+ */
+public class OffHeapUndirectedGraphTest extends UndirectedGraphTest {
+
+    // Set from createGraph, which runs before this class's field initializers would.
+    private OffHeapUndirectedGraph<String> created;
+
+    @Override
+    protected UndirectedGraph<String> createGraph() {
+        created = new OffHeapUndirectedGraph<>();
+        return created;
+    }
+
+    @AfterEach
+    public void closeGraph() {
+        created.close();
+    }
+
+    @Test
+    public void testRemoveMovesLastNode() {
+        try (OffHeapUndirectedGraph<Integer> graph = new OffHeapUndirectedGraph<>()) {
+            graph.addAll(List.of(0, 1, 2, 3, 4));
+            graph.connect(0, 1, 1);
+            graph.connect(1, 4, 2);
+            graph.connect(4, 4, 3);
+            graph.connect(4, 2, 4);
+            graph.connect(2, 3, 5);
+            // 4 has the last id and moves into 1's.
+            assertTrue(graph.remove(1));
+            assertEquals(4, graph.getNumberOfNodes());
+            assertEquals(3, graph.getNumberOfEdges());
+            assertEquals(12, graph.getTotalWeight());
+            assertEquals(3, graph.getCost(4, 4));
+            assertEquals(4, graph.getCost(2, 4));
+            assertEquals(List.of(4, 2, 3), graph.breadthFirstSearch(4, 3));
+            assertTrue(graph.depthFirstSearch(0, 3).isEmpty());
+
+            // The freed records are reused.
+            graph.connect(0, 4, 6);
+            graph.connect(0, 3, 7);
+            assertEquals(5, graph.getNumberOfEdges());
+            assertEquals(List.of(0, 3), graph.breadthFirstSearch(0, 3));
+            try (OffHeapUndirectedGraph<Integer> tree = graph.minimumSpanningTree()) {
+                assertEquals(3, tree.getNumberOfEdges());
+                assertEquals(15, tree.getTotalWeight());
+            }
+        }
+    }
+
+    @Test
+    public void testGrowsAcrossChunks() {
+        int n = 100_000;
+        try (OffHeapUndirectedGraph<Integer> graph = new OffHeapUndirectedGraph<>()) {
+            for (int i = 0; i < n; i++) {
+                graph.add(i);
+            }
+            for (int i = 1; i < n; i++) {
+                graph.connect(i - 1, i, 1 + i % 7);
+            }
+            assertEquals(n - 1, graph.getNumberOfEdges());
+            assertEquals(n, graph.breadthFirstSearch(0, n - 1).size());
+            assertEquals(n, graph.depthFirstSearch(0, n - 1).size());
+            assertEquals(1 + (n - 1) % 7, graph.getCost(n - 2, n - 1));
+            try (OffHeapUndirectedGraph<Integer> tree = graph.minimumSpanningTree()) {
+                assertEquals(graph.getTotalWeight(), tree.getTotalWeight());
+            }
+        }
+    }
+
+    @Test
+    public void testEdgeTableAgreesUnderChurn() {
+        // Two hubs joined to everything, so a walk of either list would be long.
+        int n = 300;
+        Random random = new Random(7);
+        MyUndirectedGraph<Integer> expected = new MyUndirectedGraph<>();
+        try (OffHeapUndirectedGraph<Integer> graph = new OffHeapUndirectedGraph<>()) {
+            for (int i = 0; i < n; i++) {
+                graph.add(i);
+                expected.add(i);
+            }
+            for (int i = 2; i < n; i++) {
+                graph.connect(0, i, i);
+                graph.connect(1, i, i + 1);
+                expected.connect(0, i, i);
+                expected.connect(1, i, i + 1);
+            }
+            List<Integer> live = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                live.add(i);
+            }
+            int next = n;
+            for (int step = 0; step < 5000; step++) {
+                int a = live.get(random.nextInt(live.size()));
+                int b = live.get(random.nextInt(live.size()));
+                switch (random.nextInt(5)) {
+                    case 0, 1 -> {
+                        int cost = 1 + random.nextInt(9);
+                        assertEquals(expected.connect(a, b, cost), graph.connect(a, b, cost));
+                    }
+                    case 2 -> assertEquals(expected.disconnect(a, b), graph.disconnect(a, b));
+                    case 3 -> {
+                        if (a > 1 && live.size() > 10) {
+                            assertEquals(expected.remove(a), graph.remove(a));
+                            live.remove(Integer.valueOf(a));
+                        }
+                    }
+                    default -> {
+                        expected.add(next);
+                        graph.add(next);
+                        live.add(next++);
+                    }
+                }
+                assertEquals(expected.getCost(a, b), graph.getCost(b, a));
+            }
+            assertEquals(expected.getNumberOfNodes(), graph.getNumberOfNodes());
+            assertEquals(expected.getNumberOfEdges(), graph.getNumberOfEdges());
+            assertEquals(expected.getTotalWeight(), graph.getTotalWeight());
+            for (int a : live) {
+                for (int b : live) {
+                    assertEquals(expected.getCost(a, b), graph.getCost(a, b));
+                }
+                assertEquals(expected.breadthFirstSearch(0, a).size(), graph.breadthFirstSearch(0, a).size());
+            }
+        }
+    }
+
+    @Test
+    public void testLandmarkIndexOverOffHeapAndWrappers() {
+        int n = 60;
+        Random random = new Random(3);
+        MyUndirectedGraph<Integer> expected = new MyUndirectedGraph<>();
+        try (OffHeapUndirectedGraph<Integer> graph = new OffHeapUndirectedGraph<>()) {
+            for (int i = 0; i < n; i++) {
+                graph.add(i);
+                expected.add(i);
+            }
+            for (int k = 0; k < 150; k++) {
+                int a = random.nextInt(n);
+                int b = random.nextInt(n);
+                int cost = 1 + random.nextInt(20);
+                graph.connect(a, b, cost);
+                expected.connect(a, b, cost);
+            }
+            CachingUndirectedGraph<Integer> caching = new CachingUndirectedGraph<>(graph, 16);
+            InstrumentedUndirectedGraph<Integer> instrumented = new InstrumentedUndirectedGraph<>(caching);
+            for (UndirectedGraph<Integer> source : List.<UndirectedGraph<Integer>>of(graph, caching, instrumented)) {
+                LandmarkIndex<Integer> index = LandmarkIndex.build(source, 4);
+                for (int end = 0; end < n; end++) {
+                    assertEquals(expected.shortestPath(5, end).getCost(), index.shortestPath(5, end).getCost());
+                }
+                // A change through any of them is seen through the wrapped graph's version.
+                instrumented.connect(5, 6, 1);
+                expected.connect(5, 6, 1);
+                assertTrue(index.isStale());
+                assertEquals(1, index.shortestPath(5, 6).getCost());
+            }
+        }
+    }
+
+    @Test
+    public void testContractionHierarchyOverOffHeapAndWrappers() {
+        try (OffHeapUndirectedGraph<String> graph = new OffHeapUndirectedGraph<>()) {
+            graph.addAll(List.of("A", "B", "C", "D", "E"));
+            graph.connect("A", "B", 2);
+            graph.connect("B", "C", 2);
+            graph.connect("A", "C", 5);
+            graph.connect("C", "D", 1);
+            // Moves E into B's id, so the copy has to follow the relinked records.
+            graph.connect("E", "D", 9);
+            graph.remove("B");
+            graph.add("B");
+            graph.connect("A", "B", 1);
+            graph.connect("B", "D", 1);
+            UndirectedGraph<String> caching = new CachingUndirectedGraph<>(graph, 4);
+            for (UndirectedGraph<String> source : List.of(graph, caching, new InstrumentedUndirectedGraph<>(caching))) {
+                ContractionHierarchy<String> hierarchy = ContractionHierarchy.build(source);
+                ShortestPath<String> path = hierarchy.shortestPath("A", "C");
+                assertEquals(List.of("A", "B", "D", "C"), path.getNodes());
+                assertEquals(3, path.getCost());
+                assertEquals(11, hierarchy.shortestPath("E", "A").getCost());
+            }
+        }
+    }
+
+    @Test
+    public void testClosed() {
+        OffHeapUndirectedGraph<String> graph = new OffHeapUndirectedGraph<>();
+        graph.add("A");
+        graph.close();
+        graph.close();
+        assertEquals(0, graph.getNumberOfNodes());
+        assertThrows(IllegalStateException.class, () -> graph.add("B"));
+        assertThrows(IllegalStateException.class, () -> graph.getCost("A", "A"));
+        assertThrows(IllegalStateException.class, () -> graph.breadthFirstSearch("A", "A"));
+    }
+}
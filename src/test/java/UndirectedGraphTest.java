@@ -17,7 +17,11 @@ public class UndirectedGraphTest {
 
     private static final String[] STANDARD_NODES = {"A", "B", "C", "D", "E", "F", "G", "H", "I", "J"};
 
-    private UndirectedGraph<String> graph = new MyUndirectedGraph<>();
+    private UndirectedGraph<String> graph = createGraph();
+
+    protected UndirectedGraph<String> createGraph() {
+        return new MyUndirectedGraph<>();
+    }
 
     private void add(String... nodes) {
         for (String node : nodes) {
@@ -43,6 +47,100 @@ public class UndirectedGraphTest {
         assertTrue(graph.add("K"));
     }
 
+    @Test
+    public void testAddAll() {
+        add("A", "B");
+        assertEquals(3, graph.addAll(List.of("B", "C", "D", "E", "C")));
+        assertEquals(5, graph.getNumberOfNodes());
+        assertFalse(graph.add("E"));
+    }
+
+    @Test
+    public void testConnectAll() {
+        addExampleNodes();
+        List<String> from = List.of("A", "B", "A", "C", "Z", "D", "G");
+        List<String> to = List.of("B", "C", "A", "D", "A", "E", "A");
+        int[] costs = {4, 2, 1, 0, 3, 6, 7};
+        assertEquals(5, graph.connectAll(from, to, costs));
+        assertEquals(5, graph.getNumberOfEdges());
+        assertEquals(4, graph.getCost("B", "A"));
+        assertEquals(1, graph.getCost("A", "A"));
+        assertFalse(graph.isConnected("C", "D"));
+
+        // Sista kostnaden vinner, både inom anropet och mot befintliga bågar.
+        assertEquals(3, graph.connectAll(List.of("A", "B", "D"), List.of("B", "A", "E"), new int[]{9, 8, 5}));
+        assertEquals(5, graph.getNumberOfEdges());
+        assertEquals(8, graph.getCost("A", "B"));
+        assertEquals(5, graph.getCost("E", "D"));
+
+        assertThrows(IllegalArgumentException.class, () -> graph.connectAll(List.of("A"), List.of("B"), new int[]{1, 2}));
+    }
+
+    @Test
+    public void testDisconnect() {
+        addExampleNodes();
+        connect("A", "B", 4);
+        connect("B", "C", 2);
+        connect("C", "C", 3);
+        assertTrue(graph.disconnect("B", "A"));
+        assertFalse(graph.disconnect("A", "B"));
+        assertFalse(graph.disconnect("A", "Z"));
+        assertFalse(graph.isConnected("A", "B"));
+        assertEquals(-1, graph.getCost("B", "A"));
+        assertTrue(graph.disconnect("C", "C"));
+        assertEquals(1, graph.getNumberOfEdges());
+        assertEquals(2, graph.getTotalWeight());
+        assertTrue(graph.breadthFirstSearch("A", "C").isEmpty());
+        assertTrue(graph.depthFirstSearch("C", "A").isEmpty());
+
+        connect("A", "B", 5);
+        assertEquals(2, graph.getNumberOfEdges());
+        assertEquals(List.of("A", "B", "C"), graph.breadthFirstSearch("A", "C"));
+    }
+
+    @Test
+    public void testRemove() {
+        addExampleNodes();
+        connect("A", "B", 1);
+        connect("B", "C", 2);
+        connect("C", "D", 3);
+        connect("B", "B", 4);
+        connect("J", "A", 5);
+        assertTrue(graph.remove("B"));
+        assertFalse(graph.remove("B"));
+        assertFalse(graph.remove("Z"));
+        assertEquals(9, graph.getNumberOfNodes());
+        assertEquals(2, graph.getNumberOfEdges());
+        assertEquals(8, graph.getTotalWeight());
+        assertFalse(graph.isConnected("A", "B"));
+        assertEquals(-1, graph.getCost("C", "B"));
+        assertEquals(5, graph.getCost("A", "J"));
+        assertTrue(graph.breadthFirstSearch("A", "D").isEmpty());
+        assertTrue(graph.depthFirstSearch("B", "B").isEmpty());
+        assertFalse(graph.connect("A", "B", 1));
+        assertEquals(List.of("J", "A"), graph.depthFirstSearch("J", "A"));
+
+        // Noden kan läggas till igen, utan sina gamla bågar.
+        assertTrue(graph.add("B"));
+        assertFalse(graph.isConnected("B", "B"));
+        connect("B", "D", 6);
+        assertEquals(List.of("C", "D", "B"), graph.breadthFirstSearch("C", "B"));
+        assertEquals(3, graph.getNumberOfEdges());
+        assertEquals(3, graph.minimumSpanningTree().getNumberOfEdges());
+    }
+
+    @Test
+    public void testTotalWeight() {
+        addExampleNodes();
+        assertEquals(0, graph.getTotalWeight());
+        connect("A", "B", 4);
+        connect("B", "C", 2);
+        connect("C", "C", 3);
+        assertEquals(9, graph.getTotalWeight());
+        connect("A", "B", 1);
+        assertEquals(6, graph.getTotalWeight());
+    }
+
     @Test
     public void testConnect() {
         addExampleNodes();
@@ -177,7 +275,7 @@ public class UndirectedGraphTest {
     @Test
     public void testDepthFirstSearchToSameNode() {
         for (String node : STANDARD_NODES) {
-            graph = new MyUndirectedGraph<>();
+            graph = createGraph();
             testDepthFirstSearch(node, node, 1);
         }
     }
@@ -209,7 +307,7 @@ public class UndirectedGraphTest {
     @Test
     public void testBreadthFirstSearchToSameNode() {
         for (String node : STANDARD_NODES) {
-            graph = new MyUndirectedGraph<>();
+            graph = createGraph();
             testBreadthFirstSearch(node, node, 1);
         }
     }
@@ -234,6 +332,7 @@ public class UndirectedGraphTest {
 
         assertEquals(9, totalEdges);
         assertEquals(45, totalCost);
+        assertEquals(45, mst.getTotalWeight());
     }
 
     // Här börjar vi använda andra grafer